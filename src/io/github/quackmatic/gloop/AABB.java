@@ -10,30 +10,168 @@ public class AABB {
 		this.height = height;
 	}
 	
+	public AABB() {
+		this(0.0, 0.0, 0.0, 0.0);
+	}
+	
+	public AABB set(double x, double y, double width, double height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		return this;
+	}
+	
+	public AABB set(AABB aabb) {
+		return set(aabb.x, aabb.y, aabb.width, aabb.height);
+	}
+	
+	public AABB setBounds(double minX, double minY, double maxX, double maxY) {
+		return set((minX + maxX) / 2, (minY + maxY) / 2, maxX - minX, maxY - minY);
+	}
+	
+	public double getMinX() {
+		return x - width / 2;
+	}
+	
+	public double getMinY() {
+		return y - height / 2;
+	}
+	
+	public double getMaxX() {
+		return x + width / 2;
+	}
+	
+	public double getMaxY() {
+		return y + height / 2;
+	}
+	
+	public Vec2 getCenter(Vec2 out) {
+		return out.set(x, y);
+	}
+	
+	public boolean contains(Vec2 v) {
+		return Math.abs(v.x - this.x) * 2 <= this.width &&
+				Math.abs(v.y - this.y) * 2 <= this.height;
+	}
+	
 	public boolean colliding(AABB aabb) {
-		double horizontalDistance = Math.abs(this.x - aabb.x) - Math.abs(this.width - aabb.width) / 2; 
-		double verticalDistance = Math.abs(this.y - aabb.y) - Math.abs(this.height - aabb.height) / 2;
-		return (horizontalDistance < 0 || verticalDistance < 0);
+		return getOverlapX(aabb) > 0 && getOverlapY(aabb) > 0;
+	}
+	
+	public double getOverlapX(AABB aabb) {
+		return (this.width + aabb.width) / 2 - Math.abs(this.x - aabb.x);
+	}
+	
+	public double getOverlapY(AABB aabb) {
+		return (this.height + aabb.height) / 2 - Math.abs(this.y - aabb.y);
+	}
+	
+	public Vec2 getPenetration(AABB aabb, Vec2 out) {
+		double horizontalOverlap = getOverlapX(aabb);
+		double verticalOverlap = getOverlapY(aabb);
+		
+		if(horizontalOverlap <= 0 || verticalOverlap <= 0) {
+			return out.set(0.0, 0.0);
+		} else if(horizontalOverlap < verticalOverlap) {
+			return out.set(this.x < aabb.x ? -horizontalOverlap : horizontalOverlap, 0.0);
+		} else {
+			return out.set(0.0, this.y < aabb.y ? -verticalOverlap : verticalOverlap);
+		}
 	}
 	
 	public void deintersect(AABB aabb) {
-		double horizontalDistance = Math.abs(this.x - aabb.x) - Math.abs(this.width - aabb.width) / 2; 
-		double verticalDistance = Math.abs(this.y - aabb.y) - Math.abs(this.height - aabb.height) / 2;
+		// push out along whichever axis is least overlapping, away from the other box
+		double horizontalOverlap = getOverlapX(aabb);
+		double verticalOverlap = getOverlapY(aabb);
 		
-		if(horizontalDistance < 0) {
-			if(this.x > aabb.x) {
-				this.x += horizontalDistance;
+		if(horizontalOverlap > 0 && verticalOverlap > 0) {
+			if(horizontalOverlap < verticalOverlap) {
+				if(this.x < aabb.x) {
+					this.x -= horizontalOverlap;
+				} else {
+					this.x += horizontalOverlap;
+				}
 			} else {
-				this.x -= horizontalDistance;
+				if(this.y < aabb.y) {
+					this.y -= verticalOverlap;
+				} else {
+					this.y += verticalOverlap;
+				}
 			}
 		}
+	}
+	
+	public boolean sweep(Vec2 displacement, AABB other, AABB.Impact impact) {
+		// sweeping this box against the other is the same as casting its centre
+		// against the other box grown by this box's size
+		double halfWidth = (this.width + other.width) / 2, halfHeight = (this.height + other.height) / 2;
+		return AABB.sweepBounds(
+				this.x, this.y, displacement.x, displacement.y,
+				other.x - halfWidth, other.y - halfHeight, other.x + halfWidth, other.y + halfHeight,
+				1.0, impact) != Double.POSITIVE_INFINITY;
+	}
+	
+	static double sweepBounds(
+			double x, double y, double dx, double dy,
+			double minX, double minY, double maxX, double maxY,
+			double maxTime, AABB.Impact impact) {
+		// slab test shared by sweeps and rays; returns the time of entry, 0 if already inside,
+		// or infinity for a miss. Only touching the box, along a face or at a corner, is a miss,
+		// the same as for colliding. The impact is only filled in if it isn't null.
+		double enterX, exitX, enterY, exitY;
+		if(dx != 0) {
+			double t1 = (minX - x) / dx, t2 = (maxX - x) / dx;
+			enterX = Math.min(t1, t2);
+			exitX = Math.max(t1, t2);
+		} else if(x > minX && x < maxX) {
+			enterX = Double.NEGATIVE_INFINITY;
+			exitX = Double.POSITIVE_INFINITY;
+		} else {
+			return Double.POSITIVE_INFINITY; // sliding along or beside the box
+		}
+		if(dy != 0) {
+			double t1 = (minY - y) / dy, t2 = (maxY - y) / dy;
+			enterY = Math.min(t1, t2);
+			exitY = Math.max(t1, t2);
+		} else if(y > minY && y < maxY) {
+			enterY = Double.NEGATIVE_INFINITY;
+			exitY = Double.POSITIVE_INFINITY;
+		} else {
+			return Double.POSITIVE_INFINITY;
+		}
 		
-		if(verticalDistance < 0) {
-			if(this.y > aabb.y) {
-				this.y += verticalDistance;
+		double enter = Math.max(enterX, enterY), exit = Math.min(exitX, exitY);
+		if(enter >= exit || exit <= 0 || enter > maxTime) return Double.POSITIVE_INFINITY;
+		if(impact == null) return Math.max(enter, 0);
+		if(enter < 0) {
+			// already inside, so push out of the nearest face
+			double left = x - minX, right = maxX - x, bottom = y - minY, top = maxY - y;
+			if(Math.min(left, right) < Math.min(bottom, top)) {
+				impact.normal.set(left < right ? -1 : 1, 0);
 			} else {
-				this.y -= verticalDistance;
+				impact.normal.set(0, bottom < top ? -1 : 1);
 			}
+			impact.time = 0;
+			return 0;
+		} else {
+			if(enterX > enterY) {
+				impact.normal.set(dx > 0 ? -1 : 1, 0);
+			} else {
+				impact.normal.set(0, dy > 0 ? -1 : 1);
+			}
+			impact.time = enter;
+			return enter;
+		}
+	}
+	
+	public static class Impact {
+		public double time;
+		public Vec2 normal;
+		
+		public Impact() {
+			normal = Vec2.zero();
+			time = 0;
 		}
 	}
 }
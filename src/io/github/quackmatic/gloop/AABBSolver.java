@@ -0,0 +1,336 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * Pushes overlapping {@link AABB}s apart, all at once. Given the pairs found by a broadphase
+ * such as {@link SpatialHash}, {@link AABBTree} or {@link SweepAndPrune}, it builds a contact
+ * for each pair along the axis of least overlap, then relaxes every contact a fixed number of
+ * times, sharing each correction between the two boxes by their inverse masses. Unlike calling
+ * {@link AABB#deintersect(AABB)} on each pair, the result doesn't depend on which box of a pair
+ * comes first, and stacks and crowds settle in a bounded amount of work per tick.<br>
+ * Boxes that touch, directly or through other boxes, form an island. Islands can't affect each
+ * other, so they are solved in parallel across {@link GameWorkers}. Contacts in an island are
+ * always solved in the order of the pair list, so the result is the same however many threads
+ * there are.<br>
+ * Contacts are stored in flat arrays that are reused between calls.
+ * @author Quackmatic
+ */
+public class AABBSolver {
+	/**
+	 * The default number of times each contact is relaxed per solve.
+	 */
+	public static final int DEFAULT_ITERATIONS = 4;
+	
+	private int iterations;
+	private double relaxation, slop;
+	
+	// contacts
+	private int[] contactAs, contactBs;
+	private double[] normalXs, normalYs, extents, depths;
+	private int contactCount;
+	
+	// bodies, indexed by handle and only valid where bodyMarks is the current mark
+	private int[] bodyMarks, parents, islandIds;
+	private double[] xs, ys;
+	private int bodyMark;
+	private final IntList bodies;
+	
+	// islands, with the contacts of island i at islandContacts[islandStarts[i]] up to islandStarts[i + 1]
+	private int[] islandStarts, islandContacts;
+	private int islandCount;
+	
+	/**
+	 * Create a new AABBSolver.
+	 */
+	public AABBSolver() {
+		this.iterations = DEFAULT_ITERATIONS;
+		this.relaxation = 1.0;
+		this.slop = 0.0;
+		this.contactAs = new int[64];
+		this.contactBs = new int[64];
+		this.normalXs = new double[64];
+		this.normalYs = new double[64];
+		this.extents = new double[64];
+		this.depths = new double[64];
+		this.bodyMarks = new int[64];
+		this.parents = new int[64];
+		this.islandIds = new int[64];
+		this.xs = new double[64];
+		this.ys = new double[64];
+		this.bodies = new IntList(64);
+		this.islandStarts = new int[64];
+		this.islandContacts = new int[64];
+	}
+	
+	/**
+	 * Sets the number of times each contact is relaxed per solve. More iterations settle
+	 * tall stacks and dense crowds more fully, at a proportional cost.
+	 * @param iterations The number of iterations. Must be at least 1.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public AABBSolver setIterations(int iterations) {
+		if(iterations < 1) throw new Error("AABBSolver iterations must be >= 1.");
+		this.iterations = iterations;
+		return this;
+	}
+	
+	/**
+	 * Sets the fraction of each overlap corrected per iteration. Values below 1 push boxes
+	 * apart more gently, spreading the correction over several ticks.
+	 * @param relaxation The fraction of each overlap to correct, between 0 and 1.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public AABBSolver setRelaxation(double relaxation) {
+		if(!(relaxation > 0 && relaxation <= 1)) throw new Error("AABBSolver relaxation must be > 0 and <= 1.");
+		this.relaxation = relaxation;
+		return this;
+	}
+	
+	/**
+	 * Sets how far boxes may overlap before they are pushed apart. A little slop stops resting
+	 * boxes from jittering as they are pushed apart and fall back together every tick.
+	 * @param slop The allowed overlap.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public AABBSolver setSlop(double slop) {
+		if(slop < 0) throw new Error("AABBSolver slop must be >= 0.");
+		this.slop = slop;
+		return this;
+	}
+	
+	/**
+	 * Pushes apart every overlapping pair of boxes, moving the boxes in place.
+	 * @param boxes The boxes, indexed by the handles in <b>pairs</b>.
+	 * @param inverseMasses The inverse mass of each box, indexed the same way, where 0 means the box
+	 * never moves. If null, every box has the same mass.
+	 * @param pairs The pairs of boxes that may overlap, two handles at a time.
+	 * @return The number of contacts found.
+	 */
+	public int solve(AABB[] boxes, double[] inverseMasses, IntList pairs) {
+		buildContacts(boxes, inverseMasses, pairs);
+		buildIslands(inverseMasses);
+		solveIslands(inverseMasses);
+		for(int i = 0, size = bodies.size(); i < size; i++) {
+			int body = bodies.get(i);
+			if(inverseMasses == null || inverseMasses[body] > 0) {
+				boxes[body].x = xs[body];
+				boxes[body].y = ys[body];
+			}
+		}
+		return contactCount;
+	}
+	
+	/**
+	 * Gets the number of contacts found by the last solve.
+	 * @return The number of contacts.
+	 */
+	public int getContactCount() {
+		return contactCount;
+	}
+	
+	/**
+	 * Gets the number of islands found by the last solve.
+	 * @return The number of islands.
+	 */
+	public int getIslandCount() {
+		return islandCount;
+	}
+	
+	/**
+	 * Gets the handle of the first box of a contact.
+	 * @param contact The index of the contact.
+	 * @return The handle of the box.
+	 */
+	public int getContactA(int contact) {
+		return contactAs[checkContact(contact)];
+	}
+	
+	/**
+	 * Gets the handle of the second box of a contact.
+	 * @param contact The index of the contact.
+	 * @return The handle of the box.
+	 */
+	public int getContactB(int contact) {
+		return contactBs[checkContact(contact)];
+	}
+	
+	/**
+	 * Gets the normal of a contact, which points from the first box to the second.
+	 * @param contact The index of the contact.
+	 * @param out The vector to store the normal in.
+	 * @return Returns <b>out</b>.
+	 */
+	public Vec2 getNormal(int contact, Vec2 out) {
+		checkContact(contact);
+		return out.set(normalXs[contact], normalYs[contact]);
+	}
+	
+	/**
+	 * Gets how far the boxes of a contact overlapped before they were pushed apart.
+	 * @param contact The index of the contact.
+	 * @return The depth of the contact.
+	 */
+	public double getDepth(int contact) {
+		return depths[checkContact(contact)];
+	}
+	
+	private void buildContacts(AABB[] boxes, double[] inverseMasses, IntList pairs) {
+		contactCount = 0;
+		if(++bodyMark == 0) {
+			Arrays.fill(bodyMarks, 0);
+			bodyMark = 1;
+		}
+		bodies.clear();
+		for(int i = 0, size = pairs.size(); i + 1 < size; i += 2) {
+			int a = pairs.get(i), b = pairs.get(i + 1);
+			if(inverseMasses != null && inverseMasses[a] == 0 && inverseMasses[b] == 0) continue;
+			AABB boxA = boxes[a], boxB = boxes[b];
+			double overlapX = boxA.getOverlapX(boxB), overlapY = boxA.getOverlapY(boxB);
+			if(overlapX <= 0 || overlapY <= 0) continue;
+			
+			if(contactCount == contactAs.length) {
+				growContacts();
+			}
+			int contact = contactCount++;
+			contactAs[contact] = a;
+			contactBs[contact] = b;
+			if(overlapX < overlapY) {
+				normalXs[contact] = boxA.x < boxB.x ? 1 : -1;
+				normalYs[contact] = 0;
+				extents[contact] = (boxA.width + boxB.width) / 2;
+				depths[contact] = overlapX;
+			} else {
+				normalXs[contact] = 0;
+				normalYs[contact] = boxA.y < boxB.y ? 1 : -1;
+				extents[contact] = (boxA.height + boxB.height) / 2;
+				depths[contact] = overlapY;
+			}
+			addBody(boxes, a);
+			addBody(boxes, b);
+		}
+	}
+	
+	private void addBody(AABB[] boxes, int body) {
+		if(body >= bodyMarks.length) {
+			int capacity = Math.max(body + 1, bodyMarks.length * 2);
+			bodyMarks = Arrays.copyOf(bodyMarks, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			islandIds = Arrays.copyOf(islandIds, capacity);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+		}
+		if(bodyMarks[body] != bodyMark) {
+			bodyMarks[body] = bodyMark;
+			parents[body] = body;
+			islandIds[body] = -1;
+			xs[body] = boxes[body].x;
+			ys[body] = boxes[body].y;
+			bodies.add(body);
+		}
+	}
+	
+	private int find(int body) {
+		while(parents[body] != body) {
+			parents[body] = parents[parents[body]];
+			body = parents[body];
+		}
+		return body;
+	}
+	
+	private void buildIslands(double[] inverseMasses) {
+		// join the bodies of each contact, except static ones, which would otherwise
+		// join everything resting on the same floor into one island
+		for(int contact = 0; contact < contactCount; contact++) {
+			int a = contactAs[contact], b = contactBs[contact];
+			if(inverseMasses != null && (inverseMasses[a] == 0 || inverseMasses[b] == 0)) continue;
+			int rootA = find(a), rootB = find(b);
+			if(rootA != rootB) {
+				parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+			}
+		}
+		
+		// count the contacts in each island, sum those into where each island ends, then
+		// fill each island backwards so that its entry ends up where the island starts
+		islandCount = 0;
+		if(islandStarts.length < contactCount + 1) {
+			islandStarts = new int[Math.max(contactCount + 1, islandStarts.length * 2)];
+			islandContacts = new int[islandStarts.length];
+		}
+		for(int contact = 0; contact < contactCount; contact++) {
+			islandStarts[islandOf(contact, inverseMasses)]++;
+		}
+		for(int island = 1; island < islandCount; island++) {
+			islandStarts[island] += islandStarts[island - 1];
+		}
+		islandStarts[islandCount] = contactCount;
+		for(int contact = contactCount - 1; contact >= 0; contact--) {
+			islandContacts[--islandStarts[islandOf(contact, inverseMasses)]] = contact;
+		}
+	}
+	
+	private int islandOf(int contact, double[] inverseMasses) {
+		int body = contactAs[contact];
+		if(inverseMasses != null && inverseMasses[body] == 0) {
+			body = contactBs[contact];
+		}
+		int root = find(body);
+		if(islandIds[root] < 0) {
+			islandStarts[islandCount] = 0;
+			islandIds[root] = islandCount++;
+		}
+		return islandIds[root];
+	}
+	
+	private void solveIslands(final double[] inverseMasses) {
+		int grain = Math.max(1, islandCount / (GameWorkers.getParallelism() * 8));
+		GameWorkers.forRange(0, islandCount, grain, new GameWorkers.RangeTask() {
+			@Override
+			public void run(int start, int end) {
+				for(int island = start; island < end; island++) {
+					solveIsland(island, inverseMasses);
+				}
+			}
+		});
+	}
+	
+	private void solveIsland(int island, double[] inverseMasses) {
+		int start = islandStarts[island], end = islandStarts[island + 1];
+		for(int iteration = 0; iteration < iterations; iteration++) {
+			for(int i = start; i < end; i++) {
+				int contact = islandContacts[i];
+				int a = contactAs[contact], b = contactBs[contact];
+				double nx = normalXs[contact], ny = normalYs[contact];
+				double overlap = extents[contact] - ((xs[b] - xs[a]) * nx + (ys[b] - ys[a]) * ny) - slop;
+				if(overlap <= 0) continue;
+				double inverseA = inverseMasses == null ? 1 : inverseMasses[a];
+				double inverseB = inverseMasses == null ? 1 : inverseMasses[b];
+				double correction = overlap * relaxation / (inverseA + inverseB);
+				// static boxes may be shared with other islands, so must not be written to
+				if(inverseA > 0) {
+					xs[a] -= nx * correction * inverseA;
+					ys[a] -= ny * correction * inverseA;
+				}
+				if(inverseB > 0) {
+					xs[b] += nx * correction * inverseB;
+					ys[b] += ny * correction * inverseB;
+				}
+			}
+		}
+	}
+	
+	private void growContacts() {
+		int capacity = contactAs.length * 2;
+		contactAs = Arrays.copyOf(contactAs, capacity);
+		contactBs = Arrays.copyOf(contactBs, capacity);
+		normalXs = Arrays.copyOf(normalXs, capacity);
+		normalYs = Arrays.copyOf(normalYs, capacity);
+		extents = Arrays.copyOf(extents, capacity);
+		depths = Arrays.copyOf(depths, capacity);
+	}
+	
+	private int checkContact(int contact) {
+		if(contact < 0 || contact >= contactCount) throw new Error("AABBSolver contact " + contact + " out of bounds for " + contactCount + " contacts.");
+		return contact;
+	}
+}
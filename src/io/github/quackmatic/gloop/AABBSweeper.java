@@ -0,0 +1,199 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * Moves {@link AABB}s in a {@link SpatialHash} by their velocities, stopping each one where it
+ * first touches another box instead of only checking where it ends up. This means fast boxes
+ * can't pass through thin walls or each other, so one tick per frame is enough however fast
+ * things move, with no need to split the tick into smaller steps.<br>
+ * Each moving box is swept against every box near its path using
+ * {@link AABB#sweep(Vec2, AABB, AABB.Impact)}. When it hits something, the part of its movement
+ * and velocity heading into the surface is removed and the rest of the movement slides along
+ * the surface, up to a set number of times per tick.<br>
+ * Boxes are moved one after another in the order given, so a moving box is swept against the
+ * others where they are at that point in the tick. The results of the last sweep are stored in
+ * flat arrays that are reused between calls.
+ * @author Quackmatic
+ */
+public class AABBSweeper {
+	/**
+	 * The default number of times a box may slide along a surface per sweep.
+	 */
+	public static final int DEFAULT_MAX_SLIDES = 3;
+	
+	private final SpatialHash world;
+	private int maxSlides;
+	
+	// results, indexed by the position of each box in the list of moving boxes
+	private int[] hits;
+	private double[] times, normalXs, normalYs;
+	private int count;
+	
+	private final IntList candidates;
+	private final AABB region;
+	private final AABB.Impact impact;
+	private final Vec2 displacement;
+	
+	/**
+	 * Create a new AABBSweeper.
+	 * @param world The spatial hash containing the moving boxes and everything they can hit.
+	 */
+	public AABBSweeper(SpatialHash world) {
+		this.world = world;
+		this.maxSlides = DEFAULT_MAX_SLIDES;
+		this.hits = new int[64];
+		this.times = new double[64];
+		this.normalXs = new double[64];
+		this.normalYs = new double[64];
+		this.candidates = new IntList(64);
+		this.region = new AABB();
+		this.impact = new AABB.Impact();
+		this.displacement = Vec2.zero();
+	}
+	
+	/**
+	 * Sets the number of times a box may slide along a surface after hitting it in a single
+	 * sweep. With 0, boxes stop dead where they first hit something.
+	 * @param maxSlides The number of slides. Must be at least 0.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public AABBSweeper setMaxSlides(int maxSlides) {
+		if(maxSlides < 0) throw new Error("AABBSweeper max slides must be >= 0.");
+		this.maxSlides = maxSlides;
+		return this;
+	}
+	
+	/**
+	 * Moves each box by its velocity over the given time, stopping or sliding where it hits
+	 * another box in the spatial hash. The boxes are moved in place and the spatial hash is
+	 * updated. Any part of a velocity heading into a surface that was hit is removed.
+	 * @param movers The handles of the boxes to move.
+	 * @param velocities The velocity of each box, in the same order as <b>movers</b>.
+	 * @param dt The length of the tick.
+	 * @return The number of boxes that hit something.
+	 */
+	public int sweep(IntList movers, Vec2Array velocities, double dt) {
+		count = movers.size();
+		if(velocities.size() < count) throw new Error("AABBSweeper needs a velocity for every moving box.");
+		ensureCapacity(count);
+		int hitCount = 0;
+		for(int i = 0; i < count; i++) {
+			int handle = movers.get(i);
+			AABB box = world.get(handle);
+			hits[i] = -1;
+			times[i] = 1;
+			normalXs[i] = normalYs[i] = 0;
+			double dx = velocities.xs[i] * dt, dy = velocities.ys[i] * dt;
+			if(dx == 0 && dy == 0) continue;
+			
+			// sliding never leaves the bounds of the original path, so one query covers every slide
+			region.setBounds(
+					Math.min(box.getMinX(), box.getMinX() + dx), Math.min(box.getMinY(), box.getMinY() + dy),
+					Math.max(box.getMaxX(), box.getMaxX() + dx), Math.max(box.getMaxY(), box.getMaxY() + dy));
+			world.queryRegion(region, candidates);
+			for(int slide = 0; ; slide++) {
+				displacement.set(dx, dy);
+				int hit = -1;
+				double time = 1, normalX = 0, normalY = 0;
+				for(int j = 0, size = candidates.size(); j < size; j++) {
+					int other = candidates.get(j);
+					if(other == handle || !box.sweep(displacement, world.get(other), impact)) continue;
+					// ignore boxes we are already inside but moving out of
+					if(dx * impact.normal.x + dy * impact.normal.y >= 0) continue;
+					if(hit < 0 || impact.time < time) {
+						hit = other;
+						time = impact.time;
+						normalX = impact.normal.x;
+						normalY = impact.normal.y;
+					}
+				}
+				if(hit < 0) {
+					box.x += dx;
+					box.y += dy;
+					break;
+				}
+				
+				// move up to the surface, placing the box exactly against it so it can slide along
+				// it, and along neighbouring boxes lined up with it, without catching on their edges
+				AABB surface = world.get(hit);
+				if(normalX != 0) {
+					box.x = surface.x + normalX * (surface.width + box.width) / 2;
+					box.y += dy * time;
+				} else {
+					box.x += dx * time;
+					box.y = surface.y + normalY * (surface.height + box.height) / 2;
+				}
+				if(hits[i] < 0) {
+					hits[i] = hit;
+					times[i] = time;
+					normalXs[i] = normalX;
+					normalYs[i] = normalY;
+					hitCount++;
+				}
+				double velocityInto = velocities.xs[i] * normalX + velocities.ys[i] * normalY;
+				if(velocityInto < 0) {
+					velocities.xs[i] -= velocityInto * normalX;
+					velocities.ys[i] -= velocityInto * normalY;
+				}
+				
+				// slide the rest of the way along the surface
+				double rest = 1 - time;
+				dx *= rest;
+				dy *= rest;
+				double into = dx * normalX + dy * normalY;
+				dx -= into * normalX;
+				dy -= into * normalY;
+				if(slide >= maxSlides || (dx == 0 && dy == 0)) break;
+			}
+			world.move(handle);
+		}
+		return hitCount;
+	}
+	
+	/**
+	 * Gets the box that a moving box first hit in the last sweep.
+	 * @param index The position of the moving box in the list passed to the last sweep.
+	 * @return The handle of the box it hit, or -1 if it didn't hit anything.
+	 */
+	public int getHit(int index) {
+		checkIndex(index);
+		return hits[index];
+	}
+	
+	/**
+	 * Gets when a moving box first hit something in the last sweep.
+	 * @param index The position of the moving box in the list passed to the last sweep.
+	 * @return The fraction of the tick at which it hit, from 0 to 1, or 1 if it didn't hit anything.
+	 */
+	public double getTime(int index) {
+		checkIndex(index);
+		return times[index];
+	}
+	
+	/**
+	 * Gets the normal of the surface a moving box first hit in the last sweep, pointing away
+	 * from the surface towards the moving box.
+	 * @param index The position of the moving box in the list passed to the last sweep.
+	 * @param out The vector to store the normal in, which is zero if it didn't hit anything.
+	 * @return <b>out</b>.
+	 */
+	public Vec2 getNormal(int index, Vec2 out) {
+		checkIndex(index);
+		return out.set(normalXs[index], normalYs[index]);
+	}
+	
+	private void checkIndex(int index) {
+		if(index < 0 || index >= count) throw new Error("Index " + index + " is not a box from the last sweep.");
+	}
+	
+	private void ensureCapacity(int size) {
+		if(hits.length < size) {
+			int capacity = Math.max(hits.length * 2, size);
+			hits = Arrays.copyOf(hits, capacity);
+			times = Arrays.copyOf(times, capacity);
+			normalXs = Arrays.copyOf(normalXs, capacity);
+			normalYs = Arrays.copyOf(normalYs, capacity);
+		}
+	}
+}
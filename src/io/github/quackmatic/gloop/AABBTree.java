@@ -0,0 +1,490 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * A broadphase that keeps {@link AABB}s in a dynamic bounding volume hierarchy. Unlike a
+ * {@link SpatialHash}, it copes with boxes of very different sizes, such as large static
+ * level geometry mixed with small moving objects.<br>
+ * Each box is stored in a leaf whose bounds are fattened by a margin, so a box can move a
+ * little without the tree changing. New leaves are placed where they grow the tree's
+ * perimeter the least, and the tree is rebalanced with rotations as it changes, so it stays
+ * shallow however boxes are added and moved. Nodes are stored in flat arrays and reused.<br>
+ * Queries reuse an internal stack, so a tree must only be used from one thread at a time.
+ * @author Quackmatic
+ */
+public class AABBTree {
+	private static final int NULL = -1;
+	
+	private final double margin;
+	
+	private AABB[] boxes;
+	private double[] minXs, minYs, maxXs, maxYs;
+	private int[] parents, child1s, child2s, heights;
+	private int root, capacity, freeNode, proxyCount;
+	private final IntList stack;
+	
+	/**
+	 * Create a new, empty AABBTree.
+	 * @param margin How far to fatten each leaf's bounds on every side. Boxes moving less
+	 * than this don't change the tree.
+	 */
+	public AABBTree(double margin) {
+		if(margin < 0) throw new Error("AABBTree margin must be >= 0.");
+		this.margin = margin;
+		this.root = NULL;
+		this.freeNode = NULL;
+		this.stack = new IntList(64);
+		allocateNodes(16);
+	}
+	
+	/**
+	 * Gets the number of boxes in this tree.
+	 * @return The number of boxes in this tree.
+	 */
+	public int size() {
+		return proxyCount;
+	}
+	
+	/**
+	 * Gets the height of this tree, which is the number of levels below the root.
+	 * @return The height of this tree, or -1 if it is empty.
+	 */
+	public int getHeight() {
+		return root == NULL ? -1 : heights[root];
+	}
+	
+	/**
+	 * Gets the box for a handle.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return The box.
+	 */
+	public AABB get(int handle) {
+		checkHandle(handle);
+		return boxes[handle];
+	}
+	
+	/**
+	 * Adds a box to this tree. The box is not copied; if it changes, call {@link #move(int)}.
+	 * @param box The box to add.
+	 * @return A handle for the box, which may be reused once the box is removed.
+	 */
+	public int insert(AABB box) {
+		int leaf = allocateNode();
+		boxes[leaf] = box;
+		heights[leaf] = 0;
+		fatten(leaf);
+		insertLeaf(leaf);
+		proxyCount++;
+		return leaf;
+	}
+	
+	/**
+	 * Updates the tree after a box has moved or changed size. If the box is still inside
+	 * its fattened bounds, nothing happens.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return Whether the box had to be reinserted.
+	 */
+	public boolean move(int handle) {
+		checkHandle(handle);
+		AABB box = boxes[handle];
+		double halfWidth = box.width / 2, halfHeight = box.height / 2;
+		if(minXs[handle] <= box.x - halfWidth && box.x + halfWidth <= maxXs[handle] &&
+				minYs[handle] <= box.y - halfHeight && box.y + halfHeight <= maxYs[handle]) {
+			return false;
+		}
+		removeLeaf(handle);
+		fatten(handle);
+		insertLeaf(handle);
+		return true;
+	}
+	
+	/**
+	 * Removes a box from this tree.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public AABBTree remove(int handle) {
+		checkHandle(handle);
+		removeLeaf(handle);
+		freeNode(handle);
+		proxyCount--;
+		return this;
+	}
+	
+	/**
+	 * Finds every box in this tree overlapping a region.
+	 * @param region The region.
+	 * @param out The list to write the handles to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryRegion(AABB region, IntList out) {
+		out.clear();
+		double minX = region.getMinX(), minY = region.getMinY();
+		double maxX = region.getMaxX(), maxY = region.getMaxY();
+		if(root == NULL) return out;
+		stack.clear().add(root);
+		while(!stack.isEmpty()) {
+			int node = stack.pop();
+			if(maxXs[node] < minX || minXs[node] > maxX || maxYs[node] < minY || minYs[node] > maxY) continue;
+			if(heights[node] == 0) {
+				if(boxes[node].getOverlapX(region) > 0 && boxes[node].getOverlapY(region) > 0) {
+					out.add(node);
+				}
+			} else {
+				stack.add(child1s[node], child2s[node]);
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds every box in this tree containing a point.
+	 * @param point The point.
+	 * @param out The list to write the handles to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryPoint(Vec2 point, IntList out) {
+		out.clear();
+		double x = point.x, y = point.y;
+		if(root == NULL) return out;
+		stack.clear().add(root);
+		while(!stack.isEmpty()) {
+			int node = stack.pop();
+			if(x < minXs[node] || x > maxXs[node] || y < minYs[node] || y > maxYs[node]) continue;
+			if(heights[node] == 0) {
+				if(boxes[node].contains(point)) {
+					out.add(node);
+				}
+			} else {
+				stack.add(child1s[node], child2s[node]);
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds every pair of boxes in this tree that overlap. Each pair is reported once,
+	 * as two consecutive handles, the lower first.
+	 * @param out The list to write the pairs to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList findPairs(IntList out) {
+		out.clear();
+		if(root == NULL) return out;
+		// walk the tree against itself, so that each pair of subtrees is only compared once
+		stack.clear().add(root, root);
+		while(!stack.isEmpty()) {
+			int b = stack.pop(), a = stack.pop();
+			if(a == b) {
+				if(heights[a] > 0) {
+					int child1 = child1s[a], child2 = child2s[a];
+					stack.add(child1, child1);
+					stack.add(child2, child2);
+					stack.add(child1, child2);
+				}
+				continue;
+			}
+			if(maxXs[a] < minXs[b] || minXs[a] > maxXs[b] || maxYs[a] < minYs[b] || minYs[a] > maxYs[b]) continue;
+			if(heights[a] == 0 && heights[b] == 0) {
+				AABB boxA = boxes[a], boxB = boxes[b];
+				if(boxA.getOverlapX(boxB) > 0 && boxA.getOverlapY(boxB) > 0) {
+					if(a < b) out.add(a, b);
+					else out.add(b, a);
+				}
+			} else if(heights[b] == 0 || (heights[a] > 0 &&
+					perimeter(minXs[a], minYs[a], maxXs[a], maxYs[a]) >
+					perimeter(minXs[b], minYs[b], maxXs[b], maxYs[b]))) {
+				// split the larger subtree
+				stack.add(child1s[a], b);
+				stack.add(child2s[a], b);
+			} else {
+				stack.add(a, child1s[b]);
+				stack.add(a, child2s[b]);
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds the nearest box hit by a ray.
+	 * @param ray The ray.
+	 * @param maxDistance How far along the ray to look.
+	 * @param intersection Where to store the point and distance of the hit, if there is one.
+	 * @return The handle of the nearest box hit, or -1 if none was.
+	 */
+	public int raycast(Ray ray, double maxDistance, Ray.RayIntersection intersection) {
+		int hit = NULL;
+		// misses come back as infinity, so cap the search just short of it
+		double best = Math.min(maxDistance, Double.MAX_VALUE);
+		if(root == NULL) return hit;
+		if(ray.intersectBounds(minXs[root], minYs[root], maxXs[root], maxYs[root]) > best) return hit;
+		stack.clear().add(root);
+		while(!stack.isEmpty()) {
+			int node = stack.pop();
+			if(heights[node] == 0) {
+				AABB box = boxes[node];
+				double t = ray.intersectBounds(box.getMinX(), box.getMinY(), box.getMaxX(), box.getMaxY());
+				if(t <= best) {
+					best = t;
+					hit = node;
+				}
+			} else {
+				// only visit children the ray reaches before the best hit so far, nearer first,
+				// so that farther subtrees are more often skipped
+				int child1 = child1s[node], child2 = child2s[node];
+				double t1 = ray.intersectBounds(minXs[child1], minYs[child1], maxXs[child1], maxYs[child1]);
+				double t2 = ray.intersectBounds(minXs[child2], minYs[child2], maxXs[child2], maxYs[child2]);
+				if(t1 < t2) {
+					if(t2 <= best) stack.add(child2);
+					if(t1 <= best) stack.add(child1);
+				} else {
+					if(t1 <= best) stack.add(child1);
+					if(t2 <= best) stack.add(child2);
+				}
+			}
+		}
+		if(hit != NULL) {
+			intersection.pos.set(ray.pos.x + ray.dir.x * best, ray.pos.y + ray.dir.y * best);
+			intersection.distance = best;
+			intersection.lineAlpha = 0;
+		}
+		return hit;
+	}
+	
+	private void fatten(int leaf) {
+		AABB box = boxes[leaf];
+		double halfWidth = box.width / 2 + margin, halfHeight = box.height / 2 + margin;
+		minXs[leaf] = box.x - halfWidth;
+		minYs[leaf] = box.y - halfHeight;
+		maxXs[leaf] = box.x + halfWidth;
+		maxYs[leaf] = box.y + halfHeight;
+	}
+	
+	private void insertLeaf(int leaf) {
+		if(root == NULL) {
+			root = leaf;
+			parents[leaf] = NULL;
+			return;
+		}
+		
+		// walk down to the sibling that grows the total perimeter the least
+		double leafMinX = minXs[leaf], leafMinY = minYs[leaf], leafMaxX = maxXs[leaf], leafMaxY = maxYs[leaf];
+		int index = root;
+		while(heights[index] > 0) {
+			int child1 = child1s[index], child2 = child2s[index];
+			double perimeter = perimeter(minXs[index], minYs[index], maxXs[index], maxYs[index]);
+			double combined = perimeter(
+					Math.min(minXs[index], leafMinX), Math.min(minYs[index], leafMinY),
+					Math.max(maxXs[index], leafMaxX), Math.max(maxYs[index], leafMaxY));
+			double cost = 2 * combined;
+			double inheritance = 2 * (combined - perimeter);
+			double cost1 = descendCost(child1, leaf) + inheritance;
+			double cost2 = descendCost(child2, leaf) + inheritance;
+			if(cost < cost1 && cost < cost2) break;
+			index = cost1 < cost2 ? child1 : child2;
+		}
+		
+		int sibling = index;
+		int oldParent = parents[sibling];
+		int newParent = allocateNode();
+		parents[newParent] = oldParent;
+		boxes[newParent] = null;
+		heights[newParent] = heights[sibling] + 1;
+		child1s[newParent] = sibling;
+		child2s[newParent] = leaf;
+		parents[sibling] = newParent;
+		parents[leaf] = newParent;
+		union(newParent, sibling, leaf);
+		if(oldParent != NULL) {
+			replaceChild(oldParent, sibling, newParent);
+		} else {
+			root = newParent;
+		}
+		refit(parents[leaf]);
+	}
+	
+	private double descendCost(int child, int leaf) {
+		double combined = perimeter(
+				Math.min(minXs[child], minXs[leaf]), Math.min(minYs[child], minYs[leaf]),
+				Math.max(maxXs[child], maxXs[leaf]), Math.max(maxYs[child], maxYs[leaf]));
+		if(heights[child] == 0) {
+			return combined;
+		} else {
+			return combined - perimeter(minXs[child], minYs[child], maxXs[child], maxYs[child]);
+		}
+	}
+	
+	private void removeLeaf(int leaf) {
+		if(leaf == root) {
+			root = NULL;
+			return;
+		}
+		int parent = parents[leaf];
+		int grandParent = parents[parent];
+		int sibling = child1s[parent] == leaf ? child2s[parent] : child1s[parent];
+		freeNode(parent);
+		parents[sibling] = grandParent;
+		if(grandParent != NULL) {
+			replaceChild(grandParent, parent, sibling);
+			refit(grandParent);
+		} else {
+			root = sibling;
+		}
+	}
+	
+	private void refit(int index) {
+		// walk back up to the root, rebalancing and recomputing bounds and heights
+		while(index != NULL) {
+			index = balance(index);
+			int child1 = child1s[index], child2 = child2s[index];
+			heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+			union(index, child1, child2);
+			index = parents[index];
+		}
+	}
+	
+	private int balance(int a) {
+		if(heights[a] < 2) return a;
+		int b = child1s[a], c = child2s[a];
+		int balance = heights[c] - heights[b];
+		
+		if(balance > 1) {
+			// rotate c up above a
+			int f = child1s[c], g = child2s[c];
+			child1s[c] = a;
+			parents[c] = parents[a];
+			parents[a] = c;
+			if(parents[c] != NULL) {
+				replaceChild(parents[c], a, c);
+			} else {
+				root = c;
+			}
+			if(heights[f] > heights[g]) {
+				child2s[c] = f;
+				child2s[a] = g;
+				parents[g] = a;
+				union(a, b, g);
+				union(c, a, f);
+				heights[a] = 1 + Math.max(heights[b], heights[g]);
+				heights[c] = 1 + Math.max(heights[a], heights[f]);
+			} else {
+				child2s[c] = g;
+				child2s[a] = f;
+				parents[f] = a;
+				union(a, b, f);
+				union(c, a, g);
+				heights[a] = 1 + Math.max(heights[b], heights[f]);
+				heights[c] = 1 + Math.max(heights[a], heights[g]);
+			}
+			return c;
+		}
+		
+		if(balance < -1) {
+			// rotate b up above a
+			int d = child1s[b], e = child2s[b];
+			child1s[b] = a;
+			parents[b] = parents[a];
+			parents[a] = b;
+			if(parents[b] != NULL) {
+				replaceChild(parents[b], a, b);
+			} else {
+				root = b;
+			}
+			if(heights[d] > heights[e]) {
+				child2s[b] = d;
+				child1s[a] = e;
+				parents[e] = a;
+				union(a, c, e);
+				union(b, a, d);
+				heights[a] = 1 + Math.max(heights[c], heights[e]);
+				heights[b] = 1 + Math.max(heights[a], heights[d]);
+			} else {
+				child2s[b] = e;
+				child1s[a] = d;
+				parents[d] = a;
+				union(a, c, d);
+				union(b, a, e);
+				heights[a] = 1 + Math.max(heights[c], heights[d]);
+				heights[b] = 1 + Math.max(heights[a], heights[e]);
+			}
+			return b;
+		}
+		return a;
+	}
+	
+	private void replaceChild(int parent, int oldChild, int newChild) {
+		if(child1s[parent] == oldChild) {
+			child1s[parent] = newChild;
+		} else {
+			child2s[parent] = newChild;
+		}
+	}
+	
+	private void union(int target, int a, int b) {
+		minXs[target] = Math.min(minXs[a], minXs[b]);
+		minYs[target] = Math.min(minYs[a], minYs[b]);
+		maxXs[target] = Math.max(maxXs[a], maxXs[b]);
+		maxYs[target] = Math.max(maxYs[a], maxYs[b]);
+	}
+	
+	private static double perimeter(double minX, double minY, double maxX, double maxY) {
+		return 2 * ((maxX - minX) + (maxY - minY));
+	}
+	
+	private int allocateNode() {
+		if(freeNode == NULL) {
+			allocateNodes(capacity * 2);
+		}
+		int node = freeNode;
+		freeNode = parents[node];
+		parents[node] = NULL;
+		child1s[node] = child2s[node] = NULL;
+		return node;
+	}
+	
+	private void freeNode(int node) {
+		boxes[node] = null;
+		heights[node] = -1;
+		parents[node] = freeNode;
+		freeNode = node;
+	}
+	
+	private void allocateNodes(int newCapacity) {
+		int start = capacity;
+		if(boxes == null) {
+			boxes = new AABB[newCapacity];
+			minXs = new double[newCapacity];
+			minYs = new double[newCapacity];
+			maxXs = new double[newCapacity];
+			maxYs = new double[newCapacity];
+			parents = new int[newCapacity];
+			child1s = new int[newCapacity];
+			child2s = new int[newCapacity];
+			heights = new int[newCapacity];
+		} else {
+			boxes = Arrays.copyOf(boxes, newCapacity);
+			minXs = Arrays.copyOf(minXs, newCapacity);
+			minYs = Arrays.copyOf(minYs, newCapacity);
+			maxXs = Arrays.copyOf(maxXs, newCapacity);
+			maxYs = Arrays.copyOf(maxYs, newCapacity);
+			parents = Arrays.copyOf(parents, newCapacity);
+			child1s = Arrays.copyOf(child1s, newCapacity);
+			child2s = Arrays.copyOf(child2s, newCapacity);
+			heights = Arrays.copyOf(heights, newCapacity);
+		}
+		// thread the new nodes onto the free list, lowest first
+		for(int node = newCapacity - 1; node >= start; node--) {
+			heights[node] = -1;
+			parents[node] = freeNode;
+			freeNode = node;
+		}
+		capacity = newCapacity;
+	}
+	
+	private void checkHandle(int handle) {
+		if(handle < 0 || handle >= capacity || heights[handle] != 0) {
+			throw new Error("AABBTree handle " + handle + " is not in use.");
+		}
+	}
+}
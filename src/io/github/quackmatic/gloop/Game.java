@@ -49,6 +49,27 @@ public abstract class Game {
 	 */
 	protected boolean[] keyboard;
 	
+	/**
+	 * The latest state snapshot, set by the game container before each draw.
+	 */
+	Object drawState;
+	
+	/**
+	 * The arguments of the frame being drawn, for the tile handler.
+	 */
+	private double tileDelta, tileTotal, tileAlpha;
+	private boolean tileSlow;
+	
+	/**
+	 * Passes each tile on to <i>drawTile</i>. This is made once, rather than for every frame.
+	 */
+	private final GameScreenTileHandler tileHandler = new GameScreenTileHandler() {
+		@Override
+		public void drawTile(int x, int y, int width, int height, BufferedImage buffer, Graphics2D graphics) {
+			Game.this.drawTile(tileDelta, tileTotal, tileSlow, tileAlpha, x, y, width, height, buffer, graphics);
+		}
+	};
+	
 	/**
 	 * Creates a new instance of this game.
 	 */
@@ -58,7 +79,7 @@ public abstract class Game {
 		mouseButtons = new boolean[3];
 		keyboard = new boolean[1024];
 	}
-
+	
 	/**
 	 * Resizes the game screen.
 	 * @param componentWidth The width of the parent's render target component.
@@ -70,13 +91,15 @@ public abstract class Game {
 			gameScreen = new GameScreen(
 				componentWidth / pixelScale,
 				componentHeight / pixelScale,
-				pixelScale);
+				pixelScale,
+				3,
+				isAccelerated());
 		} else {
 			// reinit framebuffers
-			gameScreen.setWidth((int)Math.ceil((double)componentWidth / pixelScale));
-			gameScreen.setHeight((int)Math.ceil((double)componentHeight / pixelScale));
-			gameScreen.setScale(pixelScale);
-			gameScreen.recreateBuffers();
+			gameScreen.resize(
+				(int)Math.ceil((double)componentWidth / pixelScale),
+				(int)Math.ceil((double)componentHeight / pixelScale),
+				pixelScale);
 		}
 	}
 	
@@ -101,6 +124,65 @@ public abstract class Game {
 		return 1;
 	}
 	
+	/**
+	 * Gets whether the game screen's buffers should be accelerated.
+	 * @return Whether to use accelerated buffers.
+	 * @see GameScreen#setAccelerated(boolean)
+	 */
+	public boolean isAccelerated() {
+		return false;
+	}
+	
+	/**
+	 * Gets the size of the tiles that the game screen is split into for {@link #drawTile}.
+	 * @return The width and height of each tile in pixels, or 0 to not draw in tiles.
+	 */
+	public int getDrawTileSize() {
+		return 0;
+	}
+	
+	/**
+	 * Gets whether this game draws by recording {@link GameRenderCommands} on the tick thread,
+	 * rather than by drawing directly in <i>draw</i>.
+	 * @return Whether this game records render commands.
+	 * @see #record(GameRenderCommands)
+	 */
+	public boolean isRecordingCommands() {
+		return false;
+	}
+	
+	/**
+	 * Creates an empty snapshot of the game state that <i>draw</i> needs. If this returns an
+	 * object, the game container creates three snapshots and hands them from the tick thread
+	 * to the draw thread through a {@link GameStateExchange}, so <i>draw</i> never sees a
+	 * half-updated game.
+	 * @return A new, empty snapshot, or null to not use snapshots.
+	 * @see #saveState(Object)
+	 * @see #getDrawState()
+	 */
+	public Object createState() {
+		return null;
+	}
+	
+	/**
+	 * Copies the current game state into a snapshot. This is called on the tick thread after
+	 * every tick if {@link #createState()} returns an object. The snapshot may hold a state
+	 * from several ticks ago, so all of it should be overwritten.
+	 * @param state A snapshot created by {@link #createState()}.
+	 */
+	public void saveState(Object state) {
+		
+	}
+	
+	/**
+	 * Gets the most recent snapshot saved by {@link #saveState(Object)}. This should only be
+	 * called while drawing, and the snapshot must not be changed.
+	 * @return The snapshot to draw, or null if {@link #createState()} returns null.
+	 */
+	protected final Object getDrawState() {
+		return drawState;
+	}
+	
 	/**
 	 * Perform any resource loading for this game.
 	 */
@@ -130,6 +212,26 @@ public abstract class Game {
 	 */
 	public abstract double getTickTime();
 	
+	/**
+	 * Gets whether the game tick timer should run in fixed-step mode. In fixed-step mode,
+	 * <i>tick</i> is always passed a delta equal to {@link #getTickTime()}, and slow ticks
+	 * are made up for with catch-up ticks.
+	 * @return Whether the game tick timer should run in fixed-step mode.
+	 * @see GameTimer#setFixedStep(boolean)
+	 */
+	public boolean isFixedStep() {
+		return false;
+	}
+	
+	/**
+	 * Gets the maximum number of catch-up ticks run in a single frame in fixed-step mode.
+	 * @return The maximum number of ticks per frame.
+	 * @see GameTimer#setMaxCatchUpTicks(int)
+	 */
+	public int getMaxCatchUpTicks() {
+		return 5;
+	}
+	
 	/**
 	 * Called when a mouse button is pressed.
 	 * @param button The mouse button.
@@ -193,6 +295,17 @@ public abstract class Game {
 	 */
 	public abstract void tick(double delta, double total, boolean slow);
 	
+	/**
+	 * Records the commands to draw the current game state. If {@link #isRecordingCommands()}
+	 * is true, this is called on the tick thread after every tick, with an empty list, and the
+	 * commands are replayed onto the game screen by the draw thread instead of calling <i>draw</i>.
+	 * The commands should cover the whole frame.
+	 * @param commands The list to record into.
+	 */
+	public void record(GameRenderCommands commands) {
+		
+	}
+	
 	/**
 	 * Perform any drawing operations.
 	 * @param delta The time step in seconds since the last draw.
@@ -202,4 +315,60 @@ public abstract class Game {
 	 * @param graphics The {@link Graphics2D} associated with the buffer being drawn to.
 	 */
 	public abstract void draw(double delta, double total, boolean slow, BufferedImage buffer, Graphics2D graphics);
+	
+	/**
+	 * Perform any drawing operations, interpolating between game ticks. By default, this
+	 * ignores <b>alpha</b> and calls {@link #draw(double, double, boolean, BufferedImage, Graphics2D)}.
+	 * @param delta The time step in seconds since the last draw.
+	 * @param total The total time elapsed since the game draw timer started.
+	 * @param slow Whether or not the game draw timer is running slowly - ie. if delta is greater than the interval.
+	 * @param alpha How far between the previous and the current game tick to draw, from 0 to 1.
+	 * This is always 1 unless the game runs in fixed-step mode.
+	 * @param buffer The buffer being drawn to.
+	 * @param graphics The {@link Graphics2D} associated with the buffer being drawn to.
+	 * @see GameTimer#getAlpha()
+	 */
+	public void draw(double delta, double total, boolean slow, double alpha, BufferedImage buffer, Graphics2D graphics) {
+		draw(delta, total, slow, buffer, graphics);
+	}
+	
+	/**
+	 * Perform any drawing operations for one tile of the game screen. If {@link #getDrawTileSize()}
+	 * is not 0, this is called for every tile after <i>draw</i>, in parallel on several threads,
+	 * so it must only touch pixels inside its own tile and be safe to call concurrently.
+	 * @param delta The time step in seconds since the last draw.
+	 * @param total The total time elapsed since the game draw timer started.
+	 * @param slow Whether or not the game draw timer is running slowly - ie. if delta is greater than the interval.
+	 * @param alpha How far between the previous and the current game tick to draw, from 0 to 1.
+	 * @param x The x co-ordinate of the left of the tile.
+	 * @param y The y co-ordinate of the top of the tile.
+	 * @param width The width of the tile.
+	 * @param height The height of the tile.
+	 * @param buffer The buffer being drawn to.
+	 * @param graphics A {@link Graphics2D} for the buffer, clipped to the tile.
+	 * @see GameScreen#drawTiled(int, GameScreenTileHandler)
+	 */
+	public void drawTile(double delta, double total, boolean slow, double alpha,
+			int x, int y, int width, int height, BufferedImage buffer, Graphics2D graphics) {
+		
+	}
+	
+	/**
+	 * Draws a whole frame into the current game screen buffer, including any tiles.
+	 * @param delta The time step in seconds since the last draw.
+	 * @param total The total time elapsed since the game draw timer started.
+	 * @param slow Whether or not the game draw timer is running slowly.
+	 * @param alpha How far between the previous and the current game tick to draw, from 0 to 1.
+	 */
+	final void drawFrame(double delta, double total, boolean slow, double alpha) {
+		draw(delta, total, slow, alpha, gameScreen.getImage(), gameScreen.getGraphics());
+		int tileSize = getDrawTileSize();
+		if(tileSize > 0) {
+			tileDelta = delta;
+			tileTotal = total;
+			tileSlow = slow;
+			tileAlpha = alpha;
+			gameScreen.drawTiled(tileSize, tileHandler);
+		}
+	}
 }
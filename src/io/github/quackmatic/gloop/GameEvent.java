@@ -1,21 +1,33 @@
 package io.github.quackmatic.gloop;
 
-import java.util.HashMap;
-
 /**
  * Provides a means of subscribing multiple handlers to an event that can be
- * raised, in a thread-safe manner.
+ * raised, in a thread-safe manner.<br>
+ * Handlers are called in the order they were added. Adding a handler with a
+ * key that is already in use replaces the old handler in the same place.<br>
+ * Adding and removing handlers copies the list of handlers, so raising the
+ * event takes no lock and allocates nothing. Each raise calls the handlers
+ * that were subscribed when it started; handlers added or removed while an
+ * event is being raised, including by the handlers themselves, take effect
+ * from the next raise. A handler may raise this or any other event, which
+ * runs the whole list again before returning. If a handler throws, the
+ * handlers after it are not called for that raise.
  * @author Quackmatic
  */
 public class GameEvent {
-	private HashMap<Object, Runnable> subscribed;
+	private static final Object[] NO_KEYS = new Object[0];
+	private static final Runnable[] NO_SUBSCRIBERS = new Runnable[0];
+	
+	private Object[] keys;
+	private volatile Runnable[] subscribers;
 	private Object lock;
 	
 	/**
 	 * Create a new GameEvent with no handlers.
 	 */
 	public GameEvent() {
-		this.subscribed = new HashMap<Object, Runnable>();
+		this.keys = NO_KEYS;
+		this.subscribers = NO_SUBSCRIBERS;
 		this.lock = new Object();
 	}
 	
@@ -29,7 +41,21 @@ public class GameEvent {
 	 */
 	public GameEvent add(Object key, Runnable subscriber) {
 		synchronized (lock) {
-			subscribed.put(key, subscriber);
+			int index = indexOf(key);
+			Runnable[] newSubscribers;
+			if(index >= 0) {
+				newSubscribers = subscribers.clone();
+			} else {
+				index = keys.length;
+				Object[] newKeys = new Object[index + 1];
+				System.arraycopy(keys, 0, newKeys, 0, index);
+				newKeys[index] = key;
+				keys = newKeys;
+				newSubscribers = new Runnable[index + 1];
+				System.arraycopy(subscribers, 0, newSubscribers, 0, index);
+			}
+			newSubscribers[index] = subscriber;
+			subscribers = newSubscribers;
 		}
 		return this;
 	}
@@ -41,7 +67,23 @@ public class GameEvent {
 	 */
 	public GameEvent remove(Object key) {
 		synchronized (lock) {
-			subscribed.remove(key);
+			int index = indexOf(key);
+			if(index >= 0) {
+				int count = keys.length - 1;
+				if(count == 0) {
+					keys = NO_KEYS;
+					subscribers = NO_SUBSCRIBERS;
+				} else {
+					Object[] newKeys = new Object[count];
+					Runnable[] newSubscribers = new Runnable[count];
+					System.arraycopy(keys, 0, newKeys, 0, index);
+					System.arraycopy(keys, index + 1, newKeys, index, count - index);
+					System.arraycopy(subscribers, 0, newSubscribers, 0, index);
+					System.arraycopy(subscribers, index + 1, newSubscribers, index, count - index);
+					keys = newKeys;
+					subscribers = newSubscribers;
+				}
+			}
 		}
 		return this;
 	}
@@ -52,21 +94,32 @@ public class GameEvent {
 	 */
 	public GameEvent removeAll() {
 		synchronized (lock) {
-			subscribed.clear();
+			keys = NO_KEYS;
+			subscribers = NO_SUBSCRIBERS;
 		}
 		return this;
 	}
 	
 	/**
-	 * Raises this event in a thread-safe manner.
+	 * Raises this event in a thread-safe manner. Any number of threads may
+	 * raise the event at once, and none of them wait for each other or for
+	 * handlers being added or removed.
 	 * @return Returns this, so you can chain these calls.
 	 */
 	public GameEvent raise() {
-		synchronized (lock) {
-			for(Runnable subscriber : subscribed.values()) {
-				subscriber.run();
-			}
+		Runnable[] subscribers = this.subscribers;
+		for(int i = 0; i < subscribers.length; i++) {
+			subscribers[i].run();
 		}
 		return this;
 	}
+	
+	private int indexOf(Object key) {
+		for(int i = 0; i < keys.length; i++) {
+			if(key == null ? keys[i] == null : key.equals(keys[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
 }
@@ -1,5 +1,7 @@
 package io.github.quackmatic.gloop;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
@@ -14,6 +16,7 @@ import java.awt.event.WindowEvent;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * A JFrame implementation that displays a game.
@@ -21,9 +24,18 @@ import javax.swing.SwingUtilities;
  */
 public class GameFrame extends JFrame {
 	private static final long serialVersionUID = -6105164417764443781L;
+	
+	/**
+	 * The time, in milliseconds, to wait after the frame stops being resized before
+	 * resizing the game screen.
+	 */
+	public static final int RESIZE_DELAY = 150;
+	
 	private Game game;
+	private Timer resizeTimer;
 	private GameTimer tickTimer, drawTimer;
 	private GameScreenPanelRenderer panelRenderer;
+	private GameScreenCanvasRenderer canvasRenderer;
 
 	/**
 	 * Create a new GameFrame.
@@ -33,16 +45,40 @@ public class GameFrame extends JFrame {
 	 * @param initialHeight The initial height of the GameFrame.
 	 */
 	public GameFrame(String title, final Game game, int initialWidth, int initialHeight) {
+		this(title, game, initialWidth, initialHeight, false);
+	}
+
+	/**
+	 * Create a new GameFrame.
+	 * @param title The title of the game frame.
+	 * @param game The game to render.
+	 * @param initialWidth The initial width of the GameFrame.
+	 * @param initialHeight The initial height of the GameFrame.
+	 * @param activeRendering Whether to show frames directly from the draw thread with a
+	 * {@link GameScreenCanvasRenderer}, rather than asking Swing to repaint a
+	 * {@link GameScreenPanelRenderer} on the event dispatch thread.
+	 */
+	public GameFrame(String title, final Game game, int initialWidth, int initialHeight, boolean activeRendering) {
 		super(title);
 		this.game = game;
 		this.game.load();
 		
+		// resizing the buffers while the frame is being dragged makes a lot of garbage,
+		// so wait until the size has settled first
+		this.resizeTimer = new Timer(RESIZE_DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				resizeGame();
+				game.resized(game.gameScreen.getWidth(), game.gameScreen.getHeight());
+			}
+		});
+		this.resizeTimer.setRepeats(false);
+		
 		this.addComponentListener(new ComponentAdapter() {
 			@Override
 			public void componentResized(ComponentEvent e) {
 				super.componentResized(e);
-				resizeGame();
-				game.resized(game.gameScreen.getWidth(), game.gameScreen.getHeight());
+				resizeTimer.restart();
 			}
 		});
 		
@@ -60,7 +96,7 @@ public class GameFrame extends JFrame {
 			}
 		});
 		
-		this.addMouseListener(new MouseAdapter() {
+		MouseAdapter mouseAdapter = new MouseAdapter() {
 			@Override
 			public void mouseMoved(MouseEvent e) {
 				super.mouseMoved(e);
@@ -109,7 +145,8 @@ public class GameFrame extends JFrame {
 				super.mouseWheelMoved(e);
 				game.mouseScroll(e.getWheelRotation());
 			}
-		});
+		};
+		this.addMouseListener(mouseAdapter);
 		
 		this.addKeyListener(new KeyAdapter() {
 			@Override
@@ -137,8 +174,18 @@ public class GameFrame extends JFrame {
 		this.setVisible(true); // get actual w/h
 		resizeGame(); // set buffer size
 		
-		panelRenderer = createPanelRenderer();
-		this.add(panelRenderer);
+		if(activeRendering) {
+			// the draw thread paints the canvas itself, so Swing never needs to
+			canvasRenderer = new GameScreenCanvasRenderer(game.gameScreen);
+			canvasRenderer.setFocusable(false); // keep key events going to the frame
+			canvasRenderer.addMouseListener(mouseAdapter);
+			this.setIgnoreRepaint(true);
+			this.add(canvasRenderer);
+			this.validate();
+		} else {
+			panelRenderer = createPanelRenderer();
+			this.add(panelRenderer);
+		}
 		this.setDefaultCloseOperation(EXIT_ON_CLOSE);
 	}
 	
@@ -165,12 +212,40 @@ public class GameFrame extends JFrame {
 		return this.game;
 	}
 	
+	/**
+	 * Gets the canvas that frames are actively rendered to.
+	 * @return The {@link GameScreenCanvasRenderer}, or null if this GameFrame isn't using active rendering.
+	 */
+	public GameScreenCanvasRenderer getCanvasRenderer() {
+		return this.canvasRenderer;
+	}
+	
 	/**
 	 * Starts the game tick and draw loops.
 	 * @returns Returns this, so you can chain these calls.
 	 */
 	public GameFrame start() {
 		final GameFrame thisGameFrame = this;
+		final GameStateExchange<GameRenderCommands> commands = game.isRecordingCommands() ?
+				new GameStateExchange<GameRenderCommands>(
+					new GameRenderCommands(),
+					new GameRenderCommands(),
+					new GameRenderCommands()) :
+				null;
+		final Object firstState = game.createState();
+		final GameStateExchange<Object> states = firstState != null ?
+				new GameStateExchange<Object>(firstState, game.createState(), game.createState()) :
+				null;
+		final GameRenderCommandPlayer player = commands != null ? new GameRenderCommandPlayer() : null;
+		if(player != null) {
+			game.gameScreen.getResizedEvent().add(player, new Runnable() {
+				@Override
+				public void run() {
+					player.invalidate(); // the new buffers are blank
+				}
+			});
+		}
+		
 		tickTimer =
 			new GameTimer()
 			.setTickHandler(new GameTimerTickHandler() {
@@ -178,8 +253,17 @@ public class GameFrame extends JFrame {
 				public void tick(double delta, double total, boolean slow) {
 					if(isVisible()) {
 						game.tick(delta, total, slow);
+						if(states != null) {
+							game.saveState(states.getWriteState());
+							states.publish();
+						}
+						if(commands != null) {
+							GameRenderCommands frame = commands.getWriteState();
+							frame.clear();
+							game.record(frame);
+							commands.publish();
+						}
 					}
-					game.gameScreen.nextBuffer();
 				}
 			})
 			.setErrorHandler(new GameTimerErrorHandler() {
@@ -200,14 +284,33 @@ public class GameFrame extends JFrame {
 				}
 			})
 			.setInterval(game.getTickTime())
+			.setFixedStep(game.isFixedStep())
+			.setMaxCatchUpTicks(game.getMaxCatchUpTicks())
+			.setPacer(new GameTimerHybridPacer(GameTimerHybridPacer.Mode.SLEEP_SPIN))
 			.start(false);
 		
 		drawTimer = new GameTimer()
 			.setTickHandler(new GameTimerTickHandler() {
 				@Override
 				public void tick(double delta, double total, boolean slow) {
-					game.draw(delta, total, slow, game.gameScreen.getImage(), game.gameScreen.getGraphics());
-					panelRenderer.repaint();
+					if(commands != null) {
+						if(!player.play(commands.getReadState(), game.gameScreen.getGraphics())) {
+							return; // nothing has changed since the last frame
+						}
+					} else {
+						if(states != null) {
+							game.drawState = states.getReadState();
+						}
+						game.drawFrame(delta, total, slow, tickTimer.getAlpha());
+					}
+					if(game.gameScreen.nextBuffer() && player != null) {
+						player.invalidate(); // only the last frame was copied into the new buffers
+					}
+					if(canvasRenderer != null) {
+						canvasRenderer.present();
+					} else {
+						panelRenderer.repaintDirty();
+					}
 				}
 			})
 			.setErrorHandler(new GameTimerErrorHandler() {
@@ -222,6 +325,7 @@ public class GameFrame extends JFrame {
 				}
 			}) // no cleanup needed as handled by tickTimer
 			.setInterval(game.getFrameTime())
+			.setPacer(new GameTimerHybridPacer(GameTimerHybridPacer.Mode.SLEEP_SPIN))
 			.start(false);
 		return this;
 	}
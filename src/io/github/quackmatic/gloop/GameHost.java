@@ -0,0 +1,293 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many {@link Game}s without a display, on a shared pool of worker threads rather
+ * than a {@link GameTimer} thread per game. Each game is ticked at its own rate, and can
+ * optionally be drawn into an off-screen {@link GameScreen} after every tick. Nothing here
+ * touches the screen, so this works with <b>java.awt.headless=true</b>.
+ * @author Quackmatic
+ */
+public class GameHost {
+	/**
+	 * The default {@link GameTimerErrorHandler} for new hosts.
+	 * This prints the throwable's stack trace.
+	 */
+	public static final GameTimerErrorHandler DEFAULT_ERROR_HANDLER = GameTimer.DEFAULT_ERROR_HANDLER;
+	
+	private static final AtomicInteger hostCount = new AtomicInteger();
+	
+	private final ScheduledThreadPoolExecutor executor;
+	// instances and retiredTicks change together under the instances lock, so a removed
+	// game's ticks are never missing from or counted twice in the total
+	private final Set<Instance> instances;
+	private long retiredTicks;
+	private GameTimerErrorHandler errorHandler;
+	private long sampleTime, sampleTicks;
+	
+	/**
+	 * Create a new GameHost with one worker thread for each available processor.
+	 */
+	public GameHost() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Create a new GameHost.
+	 * @param threads The number of worker threads to run games on.
+	 */
+	public GameHost(int threads) {
+		if(threads < 1) throw new Error("GameHost must have at least one thread.");
+		final int hostNumber = hostCount.incrementAndGet();
+		this.executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "GameHost-" + hostNumber + "-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		this.instances = Collections.newSetFromMap(new ConcurrentHashMap<Instance, Boolean>());
+		this.retiredTicks = 0;
+		this.errorHandler = DEFAULT_ERROR_HANDLER;
+		this.sampleTime = System.nanoTime();
+	}
+	
+	/**
+	 * Sets the error handler. After a game throws, it is removed from this host.
+	 * @param handler The error handler called whenever an exception is thrown by a hosted game.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameHost setErrorHandler(GameTimerErrorHandler handler) {
+		this.errorHandler = handler;
+		return this;
+	}
+	
+	/**
+	 * Loads, initialises and starts ticking a game at the rate given by its {@link Game#getTickTime()}.
+	 * @param game The game to host.
+	 * @return The {@link Instance} representing the hosted game.
+	 */
+	public Instance add(Game game) {
+		return add(game, game.getTickTime());
+	}
+	
+	/**
+	 * Loads, initialises and starts ticking a game.
+	 * @param game The game to host.
+	 * @param interval The interval, in seconds, between ticks of the game.
+	 * @return The {@link Instance} representing the hosted game.
+	 */
+	public Instance add(Game game, double interval) {
+		return add(game, interval, 0, 0);
+	}
+	
+	/**
+	 * Loads, initialises and starts ticking a game, drawing it into an off-screen
+	 * {@link GameScreen} after every tick.
+	 * @param game The game to host.
+	 * @param interval The interval, in seconds, between ticks of the game.
+	 * @param drawWidth The width of the off-screen render target, or 0 to not draw the game.
+	 * @param drawHeight The height of the off-screen render target, or 0 to not draw the game.
+	 * @return The {@link Instance} representing the hosted game.
+	 */
+	public Instance add(Game game, double interval, int drawWidth, int drawHeight) {
+		if(interval <= 0) throw new Error("GameHost interval must be > 0.");
+		if(executor.isShutdown()) throw new Error("GameHost has been shut down.");
+		
+		boolean drawing = drawWidth > 0 && drawHeight > 0;
+		game.load();
+		if(drawing) {
+			game.componentResize(drawWidth, drawHeight);
+		}
+		game.init();
+		
+		Instance instance = new Instance(game, interval, drawing);
+		synchronized(instances) {
+			instances.add(instance);
+		}
+		long step = (long)(interval * 1e+9);
+		synchronized(instance) {
+			// holding the lock stops the first tick from running before the future is set
+			instance.future = executor.scheduleAtFixedRate(instance.task, step, step, TimeUnit.NANOSECONDS);
+		}
+		return instance;
+	}
+	
+	/**
+	 * Stops ticking and destroys a hosted game. If a tick is already taking place, it will finish first.
+	 * @param instance The hosted game to remove.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameHost remove(Instance instance) {
+		long ticks = instance.stop();
+		if(ticks >= 0) {
+			synchronized(instances) {
+				instances.remove(instance);
+				retiredTicks += ticks;
+			}
+			instance.game.destroy();
+		}
+		return this;
+	}
+	
+	/**
+	 * Removes every hosted game and stops the worker threads.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameHost shutdown() {
+		for(Instance instance : instances) {
+			remove(instance);
+		}
+		executor.shutdown();
+		return this;
+	}
+	
+	/**
+	 * Gets the number of games currently being hosted.
+	 * @return The number of hosted games.
+	 */
+	public int getInstanceCount() {
+		return instances.size();
+	}
+	
+	/**
+	 * Gets the total number of ticks run by every game this host has run.
+	 * @return The total number of ticks.
+	 */
+	public long getTotalTicks() {
+		synchronized(instances) {
+			long total = retiredTicks;
+			for(Instance instance : instances) {
+				total += instance.ticks;
+			}
+			return total;
+		}
+	}
+	
+	/**
+	 * Gets the aggregate number of ticks per second run across all hosted games,
+	 * since the last time this was called.
+	 * @return The throughput in ticks per second.
+	 */
+	public synchronized double getTicksPerSecond() {
+		long now = System.nanoTime();
+		long ticks = getTotalTicks();
+		double rate = (double)(ticks - sampleTicks) / ((double)(now - sampleTime) / 1e+9);
+		sampleTime = now;
+		sampleTicks = ticks;
+		return rate;
+	}
+	
+	/**
+	 * A {@link Game} hosted by a {@link GameHost}.
+	 * @author Quackmatic
+	 */
+	public final class Instance {
+		private final Game game;
+		private final double interval;
+		private final boolean drawing;
+		private final Runnable task;
+		private final Object state;
+		private ScheduledFuture<?> future;
+		private volatile long ticks;
+		private boolean running;
+		private long beginTime, previousTime;
+		private boolean runningSlowly;
+		
+		private Instance(Game game, double interval, boolean drawing) {
+			this.game = game;
+			this.interval = interval;
+			this.drawing = drawing;
+			// ticking and drawing happen on the same thread, so one snapshot is enough
+			this.state = drawing ? game.createState() : null;
+			this.running = true;
+			this.beginTime = this.previousTime = System.nanoTime();
+			this.task = new Runnable() {
+				@Override
+				public void run() {
+					tick();
+				}
+			};
+		}
+		
+		/**
+		 * Gets the hosted game.
+		 * @return The hosted game.
+		 */
+		public Game getGame() {
+			return game;
+		}
+		
+		/**
+		 * Gets the interval, in seconds, between ticks of the hosted game.
+		 * @return The tick interval in seconds.
+		 */
+		public double getInterval() {
+			return interval;
+		}
+		
+		/**
+		 * Gets the number of ticks run by the hosted game.
+		 * @return The number of ticks.
+		 */
+		public long getTicks() {
+			return ticks;
+		}
+		
+		/**
+		 * Determine if the hosted game is still being ticked.
+		 * @return Whether or not the game is still running.
+		 */
+		public synchronized boolean isRunning() {
+			return running;
+		}
+		
+		private synchronized void tick() {
+			if(!running) return;
+			try {
+				long frameStartTime = System.nanoTime();
+				double delta = (double)(frameStartTime - previousTime) / 1e+9;
+				double total = (double)(frameStartTime - beginTime) / 1e+9;
+				previousTime = frameStartTime;
+				
+				game.tick(delta, total, runningSlowly);
+				if(drawing) {
+					if(state != null) {
+						game.saveState(state);
+						game.drawState = state;
+					}
+					game.drawFrame(delta, total, runningSlowly, 1.0);
+					game.gameScreen.nextBuffer();
+				}
+				ticks = ticks + 1; // only one worker runs an instance at a time
+				runningSlowly = System.nanoTime() - frameStartTime > (long)(interval * 1e+9);
+			} catch(Throwable e) {
+				errorHandler.handle(e);
+				remove(this);
+			}
+		}
+		
+		/**
+		 * Stops ticking the game, waiting for any tick taking place to finish.
+		 * @return The final number of ticks, or -1 if the game had already been stopped.
+		 */
+		private synchronized long stop() {
+			if(!running) return -1;
+			running = false;
+			future.cancel(false);
+			return ticks;
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package io.github.quackmatic.gloop;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * A view of an <b>int[]</b> of packed RGB or ARGB pixels, with fast bulk drawing operations.
+ * Writing to pixels directly avoids the per-call overhead of {@link java.awt.Graphics2D}, which
+ * helps most for full-screen fills and per-pixel effects; for small rectangles and sprites the
+ * difference is modest. All operations are clipped to the bounds of the view.
+ * @see GameScreen#getPixels()
+ * @author Quackmatic
+ */
+public final class GamePixels {
+	/**
+	 * The pixel data. Pixel (x, y) is at <b>data[offset + y * stride + x]</b>.
+	 */
+	public final int[] data;
+	
+	/**
+	 * The index in <b>data</b> of the top-left pixel.
+	 */
+	public final int offset;
+	
+	/**
+	 * The distance in <b>data</b> between the start of one row and the next.
+	 */
+	public final int stride;
+	
+	/**
+	 * The width of the view, in pixels.
+	 */
+	public final int width;
+	
+	/**
+	 * The height of the view, in pixels.
+	 */
+	public final int height;
+	
+	/**
+	 * Create a new GamePixels over a tightly packed array of pixels, such as a sprite.
+	 * @param data The pixel data.
+	 * @param width The width, in pixels.
+	 * @param height The height, in pixels.
+	 */
+	public GamePixels(int[] data, int width, int height) {
+		this(data, 0, width, width, height);
+	}
+	
+	/**
+	 * Create a new GamePixels over part of an array of pixels.
+	 * @param data The pixel data.
+	 * @param offset The index in <b>data</b> of the top-left pixel.
+	 * @param stride The distance in <b>data</b> between the start of one row and the next.
+	 * @param width The width, in pixels.
+	 * @param height The height, in pixels.
+	 */
+	public GamePixels(int[] data, int offset, int stride, int width, int height) {
+		if(width < 0 || height < 0 || stride < width) {
+			throw new Error("Invalid GamePixels dimensions.");
+		}
+		if(height > 0 && offset + (height - 1) * stride + width > data.length) {
+			throw new Error("GamePixels data is too small for its dimensions.");
+		}
+		this.data = data;
+		this.offset = offset;
+		this.stride = stride;
+		this.width = width;
+		this.height = height;
+	}
+	
+	/**
+	 * Create a GamePixels over the pixels of an image. This stops Java2D from accelerating
+	 * the image, so only do this for images which will be drawn to directly.
+	 * @param image An image backed by an <b>int[]</b>, such as a {@link BufferedImage#TYPE_INT_RGB}
+	 * or {@link BufferedImage#TYPE_INT_ARGB} image.
+	 * @return A new GamePixels over the image's pixels.
+	 */
+	public static GamePixels of(BufferedImage image) {
+		GamePixels pixels = tryOf(image);
+		if(pixels == null) {
+			throw new Error("Image is not backed by a packed int[] raster.");
+		}
+		return pixels;
+	}
+	
+	/**
+	 * Create a GamePixels over the pixels of an image, if it is backed by an <b>int[]</b>.
+	 * @param image The image.
+	 * @return A new GamePixels over the image's pixels, or null if the image is not backed by an <b>int[]</b>.
+	 */
+	static GamePixels tryOf(BufferedImage image) {
+		WritableRaster raster = image.getRaster();
+		if(!(raster.getDataBuffer() instanceof DataBufferInt) ||
+		   !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+			return null;
+		}
+		DataBufferInt buffer = (DataBufferInt)raster.getDataBuffer();
+		SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel)raster.getSampleModel();
+		int stride = model.getScanlineStride();
+		int offset = buffer.getOffset() +
+				model.getOffset(
+					-raster.getSampleModelTranslateX(),
+					-raster.getSampleModelTranslateY());
+		return new GamePixels(buffer.getData(), offset, stride, image.getWidth(), image.getHeight());
+	}
+	
+	/**
+	 * Gets the pixel at the given location. This is not bounds checked.
+	 * @param x The x co-ordinate.
+	 * @param y The y co-ordinate.
+	 * @return The pixel colour.
+	 */
+	public int get(int x, int y) {
+		return data[offset + y * stride + x];
+	}
+	
+	/**
+	 * Sets the pixel at the given location. This is not bounds checked.
+	 * @param x The x co-ordinate.
+	 * @param y The y co-ordinate.
+	 * @param color The pixel colour.
+	 */
+	public void set(int x, int y, int color) {
+		data[offset + y * stride + x] = color;
+	}
+	
+	/**
+	 * Fills every pixel with a colour.
+	 * @param color The colour to fill with.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels clear(int color) {
+		if(stride == width) {
+			Arrays.fill(data, offset, offset + width * height, color);
+			return this;
+		}
+		return fillRect(0, 0, width, height, color);
+	}
+	
+	/**
+	 * Fills a rectangle with a colour.
+	 * @param x The x co-ordinate of the left of the rectangle.
+	 * @param y The y co-ordinate of the top of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @param color The colour to fill with.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels fillRect(int x, int y, int w, int h, int color) {
+		int x1 = Math.max(x, 0), y1 = Math.max(y, 0);
+		int x2 = Math.min(x + w, width), y2 = Math.min(y + h, height);
+		if(x1 >= x2 || y1 >= y2) return this;
+		
+		int first = offset + y1 * stride + x1, length = x2 - x1;
+		Arrays.fill(data, first, first + length, color);
+		// copying the first row is faster than filling every row
+		for(int row = first + stride, end = offset + y2 * stride; row < end; row += stride) {
+			System.arraycopy(data, first, data, row, length);
+		}
+		return this;
+	}
+	
+	/**
+	 * Fills a horizontal span of pixels with a colour.
+	 * @param x The x co-ordinate of the left of the span.
+	 * @param y The y co-ordinate of the span.
+	 * @param length The length of the span.
+	 * @param color The colour to fill with.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels hspan(int x, int y, int length, int color) {
+		if(y < 0 || y >= height) return this;
+		int x1 = Math.max(x, 0), x2 = Math.min(x + length, width);
+		if(x1 < x2) {
+			int row = offset + y * stride;
+			Arrays.fill(data, row + x1, row + x2, color);
+		}
+		return this;
+	}
+	
+	/**
+	 * Copies a row of pixels from another view into a row of this one.
+	 * @param source The view to copy from. This can be this view.
+	 * @param sourceY The row to copy from.
+	 * @param y The row to copy to.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels copyScanline(GamePixels source, int sourceY, int y) {
+		if(sourceY < 0 || sourceY >= source.height || y < 0 || y >= height) return this;
+		System.arraycopy(
+				source.data, source.offset + sourceY * source.stride,
+				data, offset + y * stride,
+				Math.min(width, source.width));
+		return this;
+	}
+	
+	/**
+	 * Copies all of another view into this one, ignoring alpha.
+	 * @param source The view to copy from.
+	 * @param x The x co-ordinate to copy to.
+	 * @param y The y co-ordinate to copy to.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels copy(GamePixels source, int x, int y) {
+		return copy(source, 0, 0, source.width, source.height, x, y);
+	}
+	
+	/**
+	 * Copies a rectangle of another view into this one, ignoring alpha.
+	 * @param source The view to copy from.
+	 * @param sourceX The x co-ordinate of the left of the rectangle to copy.
+	 * @param sourceY The y co-ordinate of the top of the rectangle to copy.
+	 * @param w The width of the rectangle to copy.
+	 * @param h The height of the rectangle to copy.
+	 * @param x The x co-ordinate to copy to.
+	 * @param y The y co-ordinate to copy to.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels copy(GamePixels source, int sourceX, int sourceY, int w, int h, int x, int y) {
+		return blit(source, sourceX, sourceY, w, h, x, y, false);
+	}
+	
+	/**
+	 * Draws all of another view of ARGB pixels over this one, blending with the source alpha.
+	 * @param source The view to draw.
+	 * @param x The x co-ordinate to draw to.
+	 * @param y The y co-ordinate to draw to.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels blend(GamePixels source, int x, int y) {
+		return blend(source, 0, 0, source.width, source.height, x, y);
+	}
+	
+	/**
+	 * Draws a rectangle of another view of ARGB pixels over this one, blending with the source alpha.
+	 * @param source The view to draw.
+	 * @param sourceX The x co-ordinate of the left of the rectangle to draw.
+	 * @param sourceY The y co-ordinate of the top of the rectangle to draw.
+	 * @param w The width of the rectangle to draw.
+	 * @param h The height of the rectangle to draw.
+	 * @param x The x co-ordinate to draw to.
+	 * @param y The y co-ordinate to draw to.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GamePixels blend(GamePixels source, int sourceX, int sourceY, int w, int h, int x, int y) {
+		return blit(source, sourceX, sourceY, w, h, x, y, true);
+	}
+	
+	private GamePixels blit(GamePixels source, int sourceX, int sourceY, int w, int h, int x, int y, boolean blend) {
+		if(sourceX < 0) { w += sourceX; x -= sourceX; sourceX = 0; }
+		if(sourceY < 0) { h += sourceY; y -= sourceY; sourceY = 0; }
+		if(x < 0) { w += x; sourceX -= x; x = 0; }
+		if(y < 0) { h += y; sourceY -= y; y = 0; }
+		w = Math.min(w, Math.min(source.width - sourceX, width - x));
+		h = Math.min(h, Math.min(source.height - sourceY, height - y));
+		if(w <= 0 || h <= 0) return this;
+		
+		int[] sourceData = source.data;
+		int sourceRow = source.offset + sourceY * source.stride + sourceX;
+		int row = offset + y * stride + x;
+		for(int i = 0; i < h; i++, sourceRow += source.stride, row += stride) {
+			if(!blend) {
+				System.arraycopy(sourceData, sourceRow, data, row, w);
+				continue;
+			}
+			for(int j = 0; j < w; j++) {
+				int s = sourceData[sourceRow + j];
+				int a = s >>> 24;
+				if(a == 0xFF) {
+					data[row + j] = s;
+				} else if(a != 0) {
+					int d = data[row + j];
+					int na = 0x100 - a;
+					int rb = ((s & 0xFF00FF) * a + (d & 0xFF00FF) * na) >>> 8;
+					int g = ((s & 0x00FF00) * a + (d & 0x00FF00) * na) >>> 8;
+					data[row + j] = (d & 0xFF000000) | (rb & 0xFF00FF) | (g & 0x00FF00);
+				}
+			}
+		}
+		return this;
+	}
+}
@@ -0,0 +1,114 @@
+package io.github.quackmatic.gloop;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+/**
+ * Replays {@link GameRenderCommands} onto a {@link Graphics2D}. The player remembers the last
+ * list it played, and skips lists that would draw exactly the same frame again.
+ * @author Quackmatic
+ */
+public class GameRenderCommandPlayer {
+	private static final int COLOR_CACHE_SIZE = 256;
+	
+	private final GameRenderCommands last;
+	private final Color[] colors;
+	private volatile boolean played;
+	
+	/**
+	 * Create a new GameRenderCommandPlayer.
+	 */
+	public GameRenderCommandPlayer() {
+		this.last = new GameRenderCommands();
+		this.colors = new Color[COLOR_CACHE_SIZE];
+		this.played = false;
+	}
+	
+	/**
+	 * Forgets the last list played, so that the next list is always played. This can be called
+	 * from any thread.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommandPlayer invalidate() {
+		played = false;
+		return this;
+	}
+	
+	/**
+	 * Plays a list of commands, unless it is the same as the last list played. The list is
+	 * sorted into drawing order first. The commands should cover the whole frame, as the
+	 * buffer being drawn to may hold an older frame.
+	 * @param commands The commands to play.
+	 * @param graphics The graphics to play them onto.
+	 * @return Whether the commands were played. If not, the frame hasn't changed.
+	 */
+	public boolean play(GameRenderCommands commands, Graphics2D graphics) {
+		if(played && last.contentEquals(commands)) {
+			return false;
+		}
+		commands.sort();
+		int currentClip = -1;
+		int currentColor = 0;
+		graphics.setClip(null);
+		graphics.setColor(color(currentColor));
+		for(int position = 0, count = commands.size(); position < count; position++) {
+			int command = commands.getOrder(position);
+			
+			int clip = commands.getClip(command);
+			if(clip != currentClip) {
+				if(clip < 0) {
+					graphics.setClip(null);
+				} else {
+					graphics.setClip(
+							Math.round(commands.getClipArg(clip, 0)),
+							Math.round(commands.getClipArg(clip, 1)),
+							Math.round(commands.getClipArg(clip, 2)),
+							Math.round(commands.getClipArg(clip, 3)));
+				}
+				currentClip = clip;
+			}
+			
+			int type = commands.getType(command);
+			if(type != GameRenderCommands.SPRITE && commands.getColor(command) != currentColor) {
+				currentColor = commands.getColor(command);
+				graphics.setColor(color(currentColor));
+			}
+			
+			int a = Math.round(commands.getArg(command, 0)), b = Math.round(commands.getArg(command, 1));
+			int c = Math.round(commands.getArg(command, 2)), d = Math.round(commands.getArg(command, 3));
+			switch(type) {
+			case GameRenderCommands.SPRITE:
+				graphics.drawImage((Image)commands.getResource(command), a, b, c, d, null);
+				break;
+			case GameRenderCommands.RECT:
+				graphics.fillRect(a, b, c, d);
+				break;
+			case GameRenderCommands.LINE:
+				graphics.drawLine(a, b, c, d);
+				break;
+			case GameRenderCommands.TEXT:
+				graphics.drawString((String)commands.getResource(command), a, b);
+				break;
+			}
+		}
+		graphics.setClip(null);
+		last.copyFrom(commands);
+		played = true;
+		return true;
+	}
+	
+	/**
+	 * Gets a {@link Color} for an ARGB value, only creating one if it isn't cached.
+	 * @param argb The ARGB value.
+	 * @return The colour.
+	 */
+	private Color color(int argb) {
+		int slot = (argb ^ (argb >>> 8) ^ (argb >>> 16) ^ (argb >>> 24)) & (COLOR_CACHE_SIZE - 1);
+		Color color = colors[slot];
+		if(color == null || color.getRGB() != argb) {
+			color = colors[slot] = new Color(argb, true);
+		}
+		return color;
+	}
+}
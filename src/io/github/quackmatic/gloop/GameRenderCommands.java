@@ -0,0 +1,419 @@
+package io.github.quackmatic.gloop;
+
+import java.awt.Image;
+import java.util.Arrays;
+
+/**
+ * A list of drawing commands, recorded by a game on the tick thread and replayed onto a
+ * {@link GameScreen} buffer by a {@link GameRenderCommandPlayer} on the draw thread.
+ * Commands are stored in parallel primitive arrays rather than as an object per command,
+ * and the arrays are reused when the list is cleared, so recording a frame doesn't allocate
+ * once the list has grown large enough.<br>
+ * Every command has a layer, and layers are drawn in ascending order. Within a layer,
+ * commands are drawn in the order they were recorded, unless batching is turned on with
+ * {@link #setBatching(boolean)}.
+ * @see GameStateExchange
+ * @author Quackmatic
+ */
+public final class GameRenderCommands {
+	/**
+	 * Draws an image scaled into a rectangle.
+	 */
+	public static final int SPRITE = 0;
+	
+	/**
+	 * Fills a rectangle with a colour.
+	 */
+	public static final int RECT = 1;
+	
+	/**
+	 * Draws a line with a colour.
+	 */
+	public static final int LINE = 2;
+	
+	/**
+	 * Draws a string with a colour.
+	 */
+	public static final int TEXT = 3;
+	
+	private static final int NO_CLIP = -1;
+	
+	private int count;
+	private int[] types;
+	private int[] layers;
+	private int[] colors;
+	private int[] clips;
+	private float[] args;
+	private Object[] resources;
+	private boolean[] staticImages;
+	
+	private int clipCount;
+	private float[] clipArgs;
+	
+	private int layer;
+	private int clip;
+	private boolean batching;
+	private long[] order;
+	
+	/**
+	 * Create a new, empty GameRenderCommands.
+	 */
+	public GameRenderCommands() {
+		this(256);
+	}
+	
+	/**
+	 * Create a new, empty GameRenderCommands.
+	 * @param capacity The number of commands to make room for initially.
+	 */
+	public GameRenderCommands(int capacity) {
+		capacity = Math.max(capacity, 1);
+		types = new int[capacity];
+		layers = new int[capacity];
+		colors = new int[capacity];
+		clips = new int[capacity];
+		args = new float[capacity * 4];
+		resources = new Object[capacity];
+		staticImages = new boolean[capacity];
+		clipArgs = new float[16];
+		order = new long[capacity];
+		clear();
+	}
+	
+	/**
+	 * Removes every command, and resets the layer and clip. Batching is left as it is.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands clear() {
+		// drop references so images and strings from old frames can be collected
+		Arrays.fill(resources, 0, count, null);
+		count = 0;
+		clipCount = 0;
+		layer = 0;
+		clip = NO_CLIP;
+		return this;
+	}
+	
+	/**
+	 * Sets the layer of the commands recorded after this.
+	 * @param layer The layer, from -32768 to 32767. Lower layers are drawn first.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands setLayer(int layer) {
+		if(layer < Short.MIN_VALUE || layer > Short.MAX_VALUE) {
+			throw new Error("GameRenderCommands layer must fit in a short.");
+		}
+		this.layer = layer;
+		return this;
+	}
+	
+	/**
+	 * Clips the commands recorded after this to a rectangle.
+	 * @param x The x co-ordinate of the left of the clip.
+	 * @param y The y co-ordinate of the top of the clip.
+	 * @param w The width of the clip.
+	 * @param h The height of the clip.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands clip(double x, double y, double w, double h) {
+		if(clipArgs.length < (clipCount + 1) * 4) {
+			clipArgs = Arrays.copyOf(clipArgs, clipArgs.length * 2);
+		}
+		int i = clipCount * 4;
+		clipArgs[i] = (float)x;
+		clipArgs[i + 1] = (float)y;
+		clipArgs[i + 2] = (float)w;
+		clipArgs[i + 3] = (float)h;
+		clip = clipCount++;
+		return this;
+	}
+	
+	/**
+	 * Stops clipping the commands recorded after this.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands resetClip() {
+		clip = NO_CLIP;
+		return this;
+	}
+	
+	/**
+	 * Sets whether commands within a layer can be reordered when sorted, so that sprites
+	 * sharing an image are drawn together. This makes drawing lots of sprites faster, but
+	 * sprites are then drawn after every other command in their layer, and in no particular
+	 * order between images, so only turn it on if the commands in each layer don't overlap.
+	 * @param batching Whether to batch sprites. This is off by default.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands setBatching(boolean batching) {
+		this.batching = batching;
+		return this;
+	}
+	
+	/**
+	 * Determine if commands within a layer can be reordered to batch sprites.
+	 * @return Whether sprites are batched.
+	 * @see #setBatching(boolean)
+	 */
+	public boolean isBatching() {
+		return batching;
+	}
+	
+	/**
+	 * Records drawing an image scaled into a rectangle. The image may be changed between
+	 * frames, so a list with this command is never considered the same as another list.
+	 * @param image The image to draw.
+	 * @param x The x co-ordinate of the left of the rectangle.
+	 * @param y The y co-ordinate of the top of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands sprite(Image image, double x, double y, double w, double h) {
+		add(SPRITE, 0, image, x, y, w, h);
+		staticImages[count - 1] = false;
+		return this;
+	}
+	
+	/**
+	 * Records drawing an image which never changes scaled into a rectangle. Unlike with
+	 * {@link #sprite(Image, double, double, double, double)}, lists drawing the same static
+	 * image in the same place are considered the same, so the player can skip them.
+	 * @param image The image to draw. Its pixels must not be changed after it is first recorded.
+	 * @param x The x co-ordinate of the left of the rectangle.
+	 * @param y The y co-ordinate of the top of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return Returns this, so you can chain these calls.
+	 * @see #contentEquals(GameRenderCommands)
+	 */
+	public GameRenderCommands staticSprite(Image image, double x, double y, double w, double h) {
+		add(SPRITE, 0, image, x, y, w, h);
+		staticImages[count - 1] = true;
+		return this;
+	}
+	
+	/**
+	 * Records filling a rectangle.
+	 * @param color The ARGB colour to fill with.
+	 * @param x The x co-ordinate of the left of the rectangle.
+	 * @param y The y co-ordinate of the top of the rectangle.
+	 * @param w The width of the rectangle.
+	 * @param h The height of the rectangle.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands rect(int color, double x, double y, double w, double h) {
+		return add(RECT, color, null, x, y, w, h);
+	}
+	
+	/**
+	 * Records drawing a line.
+	 * @param color The ARGB colour of the line.
+	 * @param x1 The x co-ordinate of the start of the line.
+	 * @param y1 The y co-ordinate of the start of the line.
+	 * @param x2 The x co-ordinate of the end of the line.
+	 * @param y2 The y co-ordinate of the end of the line.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands line(int color, double x1, double y1, double x2, double y2) {
+		return add(LINE, color, null, x1, y1, x2, y2);
+	}
+	
+	/**
+	 * Records drawing a string in the current font.
+	 * @param color The ARGB colour of the text.
+	 * @param text The text to draw.
+	 * @param x The x co-ordinate of the left of the text.
+	 * @param y The y co-ordinate of the baseline of the text.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands text(int color, String text, double x, double y) {
+		return add(TEXT, color, text, x, y, 0, 0);
+	}
+	
+	private GameRenderCommands add(int type, int color, Object resource, double a, double b, double c, double d) {
+		if(count == types.length) {
+			grow(count * 2);
+		}
+		types[count] = type;
+		layers[count] = layer;
+		colors[count] = color;
+		clips[count] = clip;
+		resources[count] = resource;
+		int i = count * 4;
+		args[i] = (float)a;
+		args[i + 1] = (float)b;
+		args[i + 2] = (float)c;
+		args[i + 3] = (float)d;
+		count++;
+		return this;
+	}
+	
+	private void grow(int capacity) {
+		types = Arrays.copyOf(types, capacity);
+		layers = Arrays.copyOf(layers, capacity);
+		colors = Arrays.copyOf(colors, capacity);
+		clips = Arrays.copyOf(clips, capacity);
+		args = Arrays.copyOf(args, capacity * 4);
+		resources = Arrays.copyOf(resources, capacity);
+		staticImages = Arrays.copyOf(staticImages, capacity);
+		order = new long[capacity];
+	}
+	
+	/**
+	 * Replaces the commands in this list with a copy of another list.
+	 * @param other The list to copy.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameRenderCommands copyFrom(GameRenderCommands other) {
+		clear();
+		if(types.length < other.count) {
+			grow(other.types.length);
+		}
+		count = other.count;
+		System.arraycopy(other.types, 0, types, 0, count);
+		System.arraycopy(other.layers, 0, layers, 0, count);
+		System.arraycopy(other.colors, 0, colors, 0, count);
+		System.arraycopy(other.clips, 0, clips, 0, count);
+		System.arraycopy(other.args, 0, args, 0, count * 4);
+		System.arraycopy(other.resources, 0, resources, 0, count);
+		System.arraycopy(other.staticImages, 0, staticImages, 0, count);
+		if(clipArgs.length < other.clipCount * 4) {
+			clipArgs = new float[other.clipArgs.length];
+		}
+		clipCount = other.clipCount;
+		System.arraycopy(other.clipArgs, 0, clipArgs, 0, clipCount * 4);
+		layer = other.layer;
+		clip = other.clip;
+		batching = other.batching;
+		return this;
+	}
+	
+	/**
+	 * Determine if this list would draw exactly the same as another list. Images can't be
+	 * compared cheaply, so lists with sprites are only the same if every sprite was recorded
+	 * with {@link #staticSprite(Image, double, double, double, double)}.
+	 * @param other The list to compare with.
+	 * @return Whether the two lists hold the same commands.
+	 */
+	public boolean contentEquals(GameRenderCommands other) {
+		if(count != other.count || clipCount != other.clipCount || batching != other.batching) return false;
+		for(int i = 0; i < count; i++) {
+			if(types[i] != other.types[i] || layers[i] != other.layers[i] ||
+			   colors[i] != other.colors[i] || clips[i] != other.clips[i]) {
+				return false;
+			}
+			Object resource = resources[i], otherResource = other.resources[i];
+			if(types[i] == SPRITE) {
+				// a mutable image may have been drawn to since the other list was recorded
+				if(!staticImages[i] || !other.staticImages[i] || resource != otherResource) {
+					return false;
+				}
+			} else if(resource != otherResource && (resource == null || !resource.equals(otherResource))) {
+				return false;
+			}
+		}
+		for(int i = 0, end = count * 4; i < end; i++) {
+			if(args[i] != other.args[i]) return false;
+		}
+		for(int i = 0, end = clipCount * 4; i < end; i++) {
+			if(clipArgs[i] != other.clipArgs[i]) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Sorts the commands into the order they should be drawn in: by layer, and then in the
+	 * order they were recorded. With batching on, commands in each layer are instead grouped
+	 * by image, so that sprites sharing an image are drawn together.
+	 * @return Returns this, so you can chain these calls.
+	 * @see #getOrder(int)
+	 * @see #setBatching(boolean)
+	 */
+	public GameRenderCommands sort() {
+		for(int i = 0; i < count; i++) {
+			long group = batching && types[i] == SPRITE ?
+					(System.identityHashCode(resources[i]) & 0xFFFF) :
+					0;
+			// 16 bits of layer above 16 bits of group above 31 bits of index, leaving the sign
+			// bit clear so that high layers don't wrap round to negative keys
+			order[i] = ((long)(layers[i] - Short.MIN_VALUE) << 47) | (group << 31) | i;
+		}
+		Arrays.sort(order, 0, count);
+		return this;
+	}
+	
+	/**
+	 * Gets the number of commands in this list.
+	 * @return The number of commands.
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Gets the index of the command to draw at the given position, as of the last call to {@link #sort()}.
+	 * @param position The position in drawing order.
+	 * @return The index of the command.
+	 */
+	public int getOrder(int position) {
+		return (int)(order[position] & Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Gets the type of a command.
+	 * @param command The index of the command.
+	 * @return One of {@link #SPRITE}, {@link #RECT}, {@link #LINE} or {@link #TEXT}.
+	 */
+	public int getType(int command) {
+		return types[command];
+	}
+	
+	/**
+	 * Gets the colour of a command.
+	 * @param command The index of the command.
+	 * @return The ARGB colour.
+	 */
+	public int getColor(int command) {
+		return colors[command];
+	}
+	
+	/**
+	 * Gets the image or string drawn by a command.
+	 * @param command The index of the command.
+	 * @return The {@link Image} for sprites, the {@link String} for text, or null.
+	 */
+	public Object getResource(int command) {
+		return resources[command];
+	}
+	
+	/**
+	 * Gets one of the four co-ordinates of a command. For rectangles and sprites these are x, y,
+	 * width and height; for lines these are x1, y1, x2 and y2; for text these are x and y.
+	 * @param command The index of the command.
+	 * @param arg Which co-ordinate to get, from 0 to 3.
+	 * @return The co-ordinate.
+	 */
+	public float getArg(int command, int arg) {
+		return args[command * 4 + arg];
+	}
+	
+	/**
+	 * Gets the clip of a command.
+	 * @param command The index of the command.
+	 * @return The index of the clip, or -1 if the command is not clipped.
+	 */
+	public int getClip(int command) {
+		return clips[command];
+	}
+	
+	/**
+	 * Gets one of the four co-ordinates of a clip: x, y, width and height.
+	 * @param clip The index of the clip.
+	 * @param arg Which co-ordinate to get, from 0 to 3.
+	 * @return The co-ordinate.
+	 */
+	public float getClipArg(int clip, int arg) {
+		return clipArgs[clip * 4 + arg];
+	}
+}
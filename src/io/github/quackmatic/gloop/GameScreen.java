@@ -1,30 +1,94 @@
 package io.github.quackmatic.gloop;
 
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Defines a game screen class that can have multiple buffers.
+ * Defines a game screen class that can have multiple buffers.<br>
+ * With three or more buffers, the draw thread and the render target hand buffers to each
+ * other without locking: the draw thread always has a free buffer to draw into, and the
+ * render target only ever sees buffers that have been completely drawn.<br>
+ * The screen can be resized from any thread. New buffers are made straight away, but the draw
+ * thread only switches to them when it finishes its current frame, in {@link #nextBuffer()}.
  * @author Quackmatic
  */
 public final class GameScreen {
-	private int width;
-	private int height;
-	private int scale;
-	private BufferedImage[] images;
-	private Graphics2D[] graphics;
+	/**
+	 * The size, in pixels, of the square tiles that dirty regions are tracked in.
+	 */
+	public static final int DIRTY_TILE_SIZE = 32;
+	
+	/**
+	 * The ways in which a {@link GameScreen} can track which regions have changed between frames.
+	 * @author Quackmatic
+	 */
+	public static enum DirtyMode {
+		/**
+		 * No regions are tracked, and every frame is rendered in full.
+		 */
+		FULL,
+		
+		/**
+		 * Only regions reported by the game with {@link GameScreen#markDirty(int, int, int, int)} are rendered.
+		 */
+		REPORTED,
+		
+		/**
+		 * Changed regions are detected by hashing each tile of a frame once it is drawn, as well as
+		 * any regions reported by the game. This needs direct access to the buffer pixels.
+		 */
+		DETECTED
+	}
+	
+	private static final int FRESH = 1 << 30;
+	private static final int BUCKET_SIZE = 64;
+	private static final int MAX_WASTE = 4;
+	
+	private volatile int width;
+	private volatile int height;
+	private volatile int scale;
+	private final Object lock = new Object();
+	private ArrayList<BufferedImage> pool;
+	private volatile BufferSet bufferSet;
+	private final AtomicReference<BufferSet> pendingBufferSet = new AtomicReference<BufferSet>();
+	private BufferSet latestBufferSet;
+	private BufferSet renderBufferSet;
+	private final ArrayList<BufferedImage> renderRetired = new ArrayList<BufferedImage>();
+	private long[] completedTimes;
 	private volatile int currentBuffer = 0;
+	private int displayBuffer = 2;
+	private int renderBuffer = 2;
+	private final AtomicInteger readyBuffer = new AtomicInteger(1);
 	private int buffers;
+	private boolean accelerated;
 	private GameEvent resizedEvent;
+	private volatile DirtyMode dirtyMode = DirtyMode.FULL;
+	private volatile DirtyTiles dirtyTiles;
+	private int tileSize, tileColumns, tileRows;
+	private GameScreenTileHandler tileHandler;
+	private final GameWorkers.RangeTask tileTask = new GameWorkers.RangeTask() {
+		@Override
+		public void run(int start, int end) {
+			drawTiles(start, end);
+		}
+	};
 	
 	/**
-	 * Create a new double buffered game screen.
+	 * Create a new triple buffered game screen.
 	 * @param initialWidth The initial width of the screen.
 	 * @param initialHeight The initial height of the screen.
 	 * @param initialScale The initial scale of the screen. This is used by the render target.
 	 */
 	public GameScreen(int initialWidth, int initialHeight, int initialScale) {
-		this(initialWidth, initialHeight, initialScale, 2);
+		this(initialWidth, initialHeight, initialScale, 3);
 	}
 	
 	/**
@@ -32,14 +96,30 @@ public final class GameScreen {
 	 * @param initialWidth The initial width of the screen.
 	 * @param initialHeight The initial height of the screen.
 	 * @param initialScale The initial scale of the screen. This is used by the render target.
-	 * @param buffers The number of screen buffers. 
+	 * @param buffers The number of screen buffers. With fewer than 3, the render target may
+	 * see a buffer while it is still being drawn to.
 	 */
 	public GameScreen(int initialWidth, int initialHeight, int initialScale, int buffers) {
+		this(initialWidth, initialHeight, initialScale, buffers, false);
+	}
+	
+	/**
+	 * Create a new buffered game screen.
+	 * @param initialWidth The initial width of the screen.
+	 * @param initialHeight The initial height of the screen.
+	 * @param initialScale The initial scale of the screen. This is used by the render target.
+	 * @param buffers The number of screen buffers. With fewer than 3, the render target may
+	 * see a buffer while it is still being drawn to.
+	 * @param accelerated Whether to create buffers in the screen's native format where possible.
+	 * @see #setAccelerated(boolean)
+	 */
+	public GameScreen(int initialWidth, int initialHeight, int initialScale, int buffers, boolean accelerated) {
 		resizedEvent = new GameEvent();
+		this.accelerated = accelerated;
 		
-		setWidth(initialWidth);
-		setHeight(initialHeight);
-		setScale(initialScale);
+		this.width = initialWidth;
+		this.height = initialHeight;
+		this.scale = initialScale;
 		
 		if(buffers < 1) {
 			throw new Error("Cannot have less than one screen buffer.");
@@ -48,9 +128,12 @@ public final class GameScreen {
 		}
 		this.buffers = buffers;
 		
-		this.images = new BufferedImage[getBuffers()];
-		this.graphics = new Graphics2D[getBuffers()];
+		this.pool = new ArrayList<BufferedImage>();
+		this.completedTimes = new long[getBuffers()];
 		recreateBuffers();
+		// nothing is drawing yet, so the first buffers can be used straight away
+		this.bufferSet = this.renderBufferSet = pendingBufferSet.getAndSet(null);
+		resetDirtyTiles();
 	}
 	
 	/**
@@ -62,23 +145,220 @@ public final class GameScreen {
 	}
 	
 	/**
-	 * Recreates the screen buffer images. Call this after resizing.
+	 * Resizes this game screen and recreates its buffers, raising the resized event once
+	 * if anything changed.
+	 * @param width The width of the screen buffer.
+	 * @param height The height of the screen buffer.
+	 * @param scale The scale of the screen buffer.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreen resize(int width, int height, int scale) {
+		synchronized(lock) {
+			if(this.width == width && this.height == height && this.scale == scale) {
+				return this;
+			}
+			this.width = width;
+			this.height = height;
+			this.scale = scale;
+			recreateBuffers();
+		}
+		resizedEvent.raise();
+		return this;
+	}
+	
+	/**
+	 * Recreates the screen buffer images at the current size. Where possible, buffers are cut
+	 * from larger images that were already allocated, rather than allocated afresh. The draw
+	 * thread keeps drawing into the old buffers until its next call to {@link #nextBuffer()}.
 	 * @return Returns this, so you can chain these calls.
 	 */
 	public GameScreen recreateBuffers() {
-		for(int i = 0; i < getBuffers(); i++) {
-			this.images[i] = createImage();
-			this.graphics[i] = this.images[i].createGraphics();
+		synchronized(lock) {
+			BufferSet previous = latestBufferSet;
+			BufferSet next = new BufferSet(getWidth(), getHeight(), getBuffers(), accelerated);
+			for(int i = 0; i < getBuffers(); i++) {
+				BufferedImage backing = previous != null && previous.accelerated == accelerated ?
+						previous.backingImages[i] :
+						null;
+				if(backing == null || !fits(backing)) {
+					backing = acquire();
+				}
+				next.backingImages[i] = backing;
+				next.images[i] = backing.getWidth() == getWidth() && backing.getHeight() == getHeight() ?
+						backing :
+						backing.getSubimage(0, 0, getWidth(), getHeight());
+				next.graphics[i] = next.images[i].createGraphics();
+			}
+			latestBufferSet = next;
+			BufferSet skipped = pendingBufferSet.getAndSet(next);
+			if(skipped != null) {
+				// the draw thread never saw these, so they can go straight away
+				retire(skipped);
+			}
 		}
 		return this;
 	}
 	
 	/**
-	 * Create a {@link BufferedImage} with the appropriate size.
-	 * @return Returns a new BufferedImage with the appropriate size.
+	 * Switches the draw thread to the most recently recreated buffers, if there are any. The
+	 * frame just completed is copied into the new buffers, so the render target always has a
+	 * whole frame to show. Call this from the draw thread, between frames.
+	 * @return Whether the buffers were switched.
+	 */
+	private boolean swapBufferSet() {
+		if(pendingBufferSet.get() == null) return false;
+		synchronized(lock) {
+			BufferSet next = pendingBufferSet.getAndSet(null);
+			if(next == null) return false;
+			BufferSet old = bufferSet;
+			next.graphics[currentBuffer].drawImage(old.images[currentBuffer], 0, 0, null);
+			bufferSet = next;
+			retire(old);
+		}
+		resetDirtyTiles();
+		return true;
+	}
+	
+	/**
+	 * Disposes a set of buffers which is no longer drawn to, and returns its images to the pool
+	 * unless the current or latest buffers are still cut from them. Images the render target
+	 * may still be showing are held back until it next calls {@link #getRenderImage()}. Call
+	 * this while holding the lock.
+	 * @param set The buffers.
+	 */
+	private void retire(BufferSet set) {
+		for(int i = 0; i < set.images.length; i++) {
+			set.graphics[i].dispose();
+			BufferedImage backing = set.backingImages[i];
+			if(bufferSet.uses(backing) || latestBufferSet.uses(backing)) continue;
+			if(renderBufferSet.uses(backing)) {
+				renderRetired.add(backing);
+			} else {
+				discard(set, backing);
+			}
+		}
+	}
+	
+	/**
+	 * Returns an image from a retired set of buffers to the pool, or flushes it if it is no
+	 * longer in the right format. Call this while holding the lock.
+	 * @param set The buffers the image was cut for.
+	 * @param backing The image.
+	 */
+	private void discard(BufferSet set, BufferedImage backing) {
+		if(set.accelerated == accelerated) {
+			release(backing);
+		} else {
+			backing.flush();
+		}
+	}
+	
+	/**
+	 * Determine if an image can hold a buffer of this screen's size without wasting too much memory.
+	 * @param image The image.
+	 * @return Whether the image can be used as a buffer.
 	 */
-	private BufferedImage createImage() {
-		return new BufferedImage(this.getWidth(), this.getHeight(), BufferedImage.TYPE_INT_RGB);
+	private boolean fits(BufferedImage image) {
+		long area = (long)Math.max(getWidth(), 1) * Math.max(getHeight(), 1);
+		return image.getWidth() >= getWidth() &&
+			   image.getHeight() >= getHeight() &&
+			   (long)image.getWidth() * image.getHeight() <= area * MAX_WASTE;
+	}
+	
+	/**
+	 * Takes the smallest suitable image from the pool, or allocates a new one with room to grow.
+	 * @return An image at least as big as this screen.
+	 */
+	private BufferedImage acquire() {
+		int best = -1;
+		for(int i = 0; i < pool.size(); i++) {
+			BufferedImage image = pool.get(i);
+			if(fits(image) && (best < 0 ||
+					(long)image.getWidth() * image.getHeight() <
+					(long)pool.get(best).getWidth() * pool.get(best).getHeight())) {
+				best = i;
+			}
+		}
+		if(best >= 0) {
+			return pool.remove(best);
+		}
+		return createImage(bucket(getWidth()), bucket(getHeight()));
+	}
+	
+	/**
+	 * Returns an image that is no longer used as a buffer to the pool, dropping the oldest
+	 * pooled image if the pool is full.
+	 * @param image The image.
+	 */
+	private void release(BufferedImage image) {
+		pool.add(image);
+		if(pool.size() > getBuffers()) {
+			pool.remove(0).flush();
+		}
+	}
+	
+	/**
+	 * Rounds a buffer dimension up to the size to allocate, leaving room for the screen to grow.
+	 * @param size The dimension.
+	 * @return The dimension to allocate.
+	 */
+	private static int bucket(int size) {
+		size = Math.max(size, 1);
+		return (size + size / 4 + BUCKET_SIZE - 1) / BUCKET_SIZE * BUCKET_SIZE;
+	}
+	
+	/**
+	 * Create a {@link BufferedImage} of the given size. If this screen is accelerated
+	 * and there is a display, this is in the display's native format.
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @return Returns a new BufferedImage of the given size.
+	 */
+	private BufferedImage createImage(int width, int height) {
+		if(accelerated && !GraphicsEnvironment.isHeadless()) {
+			try {
+				GraphicsConfiguration configuration = GraphicsEnvironment
+						.getLocalGraphicsEnvironment()
+						.getDefaultScreenDevice()
+						.getDefaultConfiguration();
+				return configuration.createCompatibleImage(width, height, Transparency.OPAQUE);
+			} catch(HeadlessException e) {
+				// fall back to a plain image
+			}
+		}
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+	
+	/**
+	 * Determine if this screen's buffers are accelerated.
+	 * @return Whether this screen's buffers are accelerated.
+	 */
+	public boolean isAccelerated() {
+		return accelerated;
+	}
+	
+	/**
+	 * Sets whether this screen's buffers are accelerated. Accelerated buffers are created in the
+	 * display's native format, so they don't need converting when rendered, and render targets
+	 * may upload them to video memory for scaling. Without a display, plain buffers are used
+	 * anyway. Accelerated buffers are not always backed by an <b>int[]</b>, so {@link #getPixels()}
+	 * may not be usable with them.
+	 * @param accelerated Whether this screen's buffers should be accelerated.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreen setAccelerated(boolean accelerated) {
+		synchronized(lock) {
+			if(this.accelerated != accelerated) {
+				this.accelerated = accelerated;
+				// none of the existing images are in the right format any more
+				for(BufferedImage image : pool) {
+					image.flush();
+				}
+				pool.clear();
+				recreateBuffers();
+			}
+		}
+		return this;
 	}
 
 	/**
@@ -98,16 +378,13 @@ public final class GameScreen {
 	}
 	
 	/**
-	 * Sets the width of the screen buffer.
+	 * Sets the width of the screen buffer. To change more than one dimension at once, use
+	 * {@link #resize(int, int, int)}, which only raises the resized event once.
 	 * @param width The width of the screen buffer.
 	 * @return Returns this, so you can chain these calls.
 	 */
 	public GameScreen setWidth(int width) {
-		if(this.width != width) {
-			this.width = width;
-			resizedEvent.raise();
-		}
-		return this;
+		return resize(width, getHeight(), getScale());
 	}
 
 	/**
@@ -119,16 +396,13 @@ public final class GameScreen {
 	}
 
 	/**
-	 * Sets the height of the screen buffer.
+	 * Sets the height of the screen buffer. To change more than one dimension at once, use
+	 * {@link #resize(int, int, int)}, which only raises the resized event once.
 	 * @param height The height of the screen buffer.
 	 * @return Returns this, so you can chain these calls.
 	 */
 	public GameScreen setHeight(int height) {
-		if(this.height != height) {
-			this.height = height;
-			resizedEvent.raise();
-		}
-		return this;
+		return resize(getWidth(), height, getScale());
 	}
 	
 	/**
@@ -140,24 +414,65 @@ public final class GameScreen {
 	}
 	
 	/**
-	 * Sets the scale of the screen buffer.
+	 * Sets the scale of the screen buffer. To change more than one dimension at once, use
+	 * {@link #resize(int, int, int)}, which only raises the resized event once.
 	 * @param scale The scale of the screen buffer.
 	 * @return Returns this, so you can chain these calls.
 	 */
 	public GameScreen setScale(int scale) {
-		if(this.scale != scale) {
-			this.scale = scale;
-			resizedEvent.raise();
-		}
-		return this;
+		return resize(getWidth(), getHeight(), scale);
 	}
 	
 	/**
-	 * Gets the image to render to the render target.
+	 * Gets the image to render to the render target. With three or more buffers, this is
+	 * the most recently completed buffer, and it will not be drawn to until the next call
+	 * to this method; this should only be called from the render target's thread.
 	 * @return The previous buffer that is not currently being drawn to.
 	 */
 	public BufferedImage getRenderImage() {
-		return images[(currentBuffer + buffers - 1) % buffers];
+		if(renderBufferSet != bufferSet) {
+			synchronized(lock) {
+				BufferSet previous = renderBufferSet;
+				renderBufferSet = bufferSet;
+				// the images held back for the render target can now be reused
+				for(BufferedImage backing : renderRetired) {
+					discard(previous, backing);
+				}
+				renderRetired.clear();
+			}
+		}
+		if(buffers >= 3) {
+			if((readyBuffer.get() & FRESH) != 0) {
+				displayBuffer = readyBuffer.getAndSet(displayBuffer) & ~FRESH;
+			}
+			renderBuffer = displayBuffer;
+		} else {
+			renderBuffer = (currentBuffer + buffers - 1) % buffers;
+		}
+		return renderBufferSet.images[renderBuffer];
+	}
+	
+	/**
+	 * Gets when the image last returned by {@link #getRenderImage()} was completely drawn.
+	 * This should only be called from the render target's thread.
+	 * @return The {@link System#nanoTime()} at which the image was completed, or 0 if it never was.
+	 */
+	public long getRenderImageTime() {
+		return completedTimes[renderBuffer];
+	}
+	
+	/**
+	 * Gets direct access to the pixels of the image last returned by {@link #getRenderImage()}.
+	 * This should only be called from the render target's thread.
+	 * @return A {@link GamePixels} view of the render image, or null if it is not backed by an <b>int[]</b>.
+	 */
+	GamePixels getRenderPixels() {
+		BufferSet set = renderBufferSet;
+		int buffer = renderBuffer;
+		if(set.pixels[buffer] == null) {
+			set.pixels[buffer] = GamePixels.tryOf(set.images[buffer]);
+		}
+		return set.pixels[buffer];
 	}
 
 	/**
@@ -165,7 +480,7 @@ public final class GameScreen {
 	 * @return The iamge that shall be drawn to in the render system.
 	 */
 	public BufferedImage getImage() {
-		return images[currentBuffer];
+		return bufferSet.images[currentBuffer];
 	}
 
 	/**
@@ -173,14 +488,318 @@ public final class GameScreen {
 	 * @return The {@link Graphics2D} associated with the current image that is the render target.
 	 */
 	public Graphics2D getGraphics() {
-		return graphics[currentBuffer];
+		return bufferSet.graphics[currentBuffer];
+	}
+	
+	/**
+	 * Gets direct access to the pixels of the current image that is the draw target.
+	 * The first call for each buffer stops Java2D from accelerating that buffer, so only
+	 * call this if the game will draw pixels directly. The returned view stays valid
+	 * until the buffers are recreated. This throws if the buffers are accelerated and the
+	 * display's native format is not backed by an <b>int[]</b>.
+	 * @return A {@link GamePixels} view of the current image.
+	 */
+	public GamePixels getPixels() {
+		BufferSet set = bufferSet;
+		int buffer = currentBuffer;
+		if(set.pixels[buffer] == null) {
+			set.pixels[buffer] = GamePixels.of(set.images[buffer]);
+		}
+		return set.pixels[buffer];
+	}
+	
+	/**
+	 * Draws the current image in square tiles, in parallel across the {@link GameWorkers}.
+	 * Each tile has its own {@link Graphics2D}, clipped to the tile, which is disposed once the
+	 * tile is drawn, so nothing the handler sets on it carries over to other tiles or frames.
+	 * This returns once every tile has been drawn. Call this from the draw thread.
+	 * @param tileSize The width and height of each tile, in pixels.
+	 * @param handler Draws each tile.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreen drawTiled(int tileSize, GameScreenTileHandler handler) {
+		if(tileSize < 1) throw new Error("GameScreen tile size must be >= 1.");
+		this.tileSize = tileSize;
+		this.tileColumns = (bufferSet.width + tileSize - 1) / tileSize;
+		this.tileRows = (bufferSet.height + tileSize - 1) / tileSize;
+		this.tileHandler = handler;
+		try {
+			GameWorkers.forRange(0, tileColumns * tileRows, 1, tileTask);
+		} finally {
+			this.tileHandler = null;
+		}
+		return this;
+	}
+	
+	private void drawTiles(int start, int end) {
+		int buffer = currentBuffer;
+		BufferSet set = bufferSet;
+		BufferedImage image = set.images[buffer];
+		for(int tile = start; tile < end; tile++) {
+			int x = (tile % tileColumns) * tileSize, y = (tile / tileColumns) * tileSize;
+			int w = Math.min(tileSize, set.width - x), h = Math.min(tileSize, set.height - y);
+			Graphics2D graphics = image.createGraphics();
+			try {
+				graphics.setClip(x, y, w, h);
+				tileHandler.drawTile(x, y, w, h, image, graphics);
+			} finally {
+				graphics.dispose();
+			}
+		}
+	}
+	
+	/**
+	 * Gets how this screen tracks which regions have changed between frames.
+	 * @return The dirty region tracking mode.
+	 */
+	public DirtyMode getDirtyMode() {
+		return dirtyMode;
+	}
+	
+	/**
+	 * Sets how this screen tracks which regions have changed between frames. Render targets
+	 * can use this to only render the parts of each frame that have changed.
+	 * @param dirtyMode The dirty region tracking mode.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreen setDirtyMode(DirtyMode dirtyMode) {
+		if(this.dirtyMode != dirtyMode) {
+			this.dirtyMode = dirtyMode;
+			resetDirtyTiles();
+		}
+		return this;
+	}
+	
+	/**
+	 * Marks a region of the current image as changed since the previous frame. The whole image
+	 * must still be drawn, as the buffer being drawn to may hold an older frame.
+	 * Call this from the draw thread.
+	 * @param x The x co-ordinate of the left of the region.
+	 * @param y The y co-ordinate of the top of the region.
+	 * @param w The width of the region.
+	 * @param h The height of the region.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreen markDirty(int x, int y, int w, int h) {
+		if(dirtyMode == DirtyMode.FULL) return this;
+		// the bitmap can be replaced by a resize at any time, so only ever use one of them
+		DirtyTiles dirty = this.dirtyTiles;
+		int column1 = Math.max(x, 0) / DIRTY_TILE_SIZE;
+		int row1 = Math.max(y, 0) / DIRTY_TILE_SIZE;
+		int column2 = Math.min((Math.min(x + w, dirty.width) + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE, dirty.columns);
+		int row2 = Math.min((Math.min(y + h, dirty.height) + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE, dirty.rows);
+		for(int row = row1; row < row2; row++) {
+			for(int column = column1; column < column2; column++) {
+				int tile = row * dirty.columns + column;
+				dirty.drawn[tile >>> 6] |= 1l << tile;
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Marks the whole of the current image as changed since the previous frame.
+	 * Call this from the draw thread.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreen markAllDirty() {
+		DirtyTiles dirty = this.dirtyTiles;
+		return markDirty(0, 0, dirty.width, dirty.height);
+	}
+	
+	/**
+	 * Gets the number of columns of dirty tiles.
+	 * @return The number of columns of dirty tiles.
+	 */
+	public int getDirtyColumns() {
+		return dirtyTiles.columns;
 	}
 	
 	/**
-	 * Increment (and, if necessary, wrap around) the current buffer index.
-	 * Call this after drawing.
+	 * Gets the number of rows of dirty tiles.
+	 * @return The number of rows of dirty tiles.
 	 */
-	public void nextBuffer() {
-		currentBuffer = (currentBuffer + 1) % buffers;
+	public int getDirtyRows() {
+		return dirtyTiles.rows;
+	}
+	
+	/**
+	 * Takes the set of tiles that have changed in every frame completed since the last call.
+	 * Tile (column, row) is bit <b>row * columns + column</b> of the bitmap, where columns is
+	 * the number of columns this returns. Tiles are only published once the frame they were
+	 * drawn in is completed, so this can be called from any thread, one at a time - either from
+	 * the render target's thread before getting the image to render, or from the draw thread
+	 * after {@link #nextBuffer()} to schedule repaints.
+	 * @param tiles The bitmap to fill, which is grown if it doesn't have room for every tile.
+	 * @param size The array to fill with the number of columns and rows of tiles in the bitmap,
+	 * which may differ from {@link #getDirtyColumns()} and {@link #getDirtyRows()} if this
+	 * screen is resized at the same time.
+	 * @return The filled bitmap, which is <b>tiles</b> unless it had to be grown.
+	 */
+	public long[] takeDirtyTiles(long[] tiles, int[] size) {
+		DirtyTiles dirty = this.dirtyTiles;
+		int words = dirty.pending.length();
+		if(tiles == null || tiles.length < words) {
+			tiles = new long[words];
+		}
+		for(int i = 0; i < words; i++) {
+			tiles[i] = dirty.pending.getAndSet(i, 0);
+		}
+		size[0] = dirty.columns;
+		size[1] = dirty.rows;
+		return tiles;
+	}
+	
+	private void resetDirtyTiles() {
+		BufferSet set = bufferSet;
+		dirtyTiles = new DirtyTiles(set.width, set.height);
+	}
+	
+	/**
+	 * Marks every tile of the current image whose contents differ from the previous frame.
+	 */
+	private void detectDirtyTiles(DirtyTiles dirty) {
+		BufferSet set = bufferSet;
+		GamePixels view = set.pixels[currentBuffer];
+		if(view == null) {
+			view = set.pixels[currentBuffer] = GamePixels.tryOf(set.images[currentBuffer]);
+		}
+		if(view == null) {
+			markAllDirty();
+			return;
+		}
+		boolean first = dirty.hashes == null;
+		if(first) {
+			dirty.hashes = new int[dirty.columns * dirty.rows];
+		}
+		int[] data = view.data;
+		int rows = Math.min(dirty.rows, (view.height + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE);
+		int columns = Math.min(dirty.columns, (view.width + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE);
+		for(int row = 0; row < rows; row++) {
+			int y1 = row * DIRTY_TILE_SIZE, y2 = Math.min(y1 + DIRTY_TILE_SIZE, view.height);
+			for(int column = 0; column < columns; column++) {
+				int x1 = column * DIRTY_TILE_SIZE, x2 = Math.min(x1 + DIRTY_TILE_SIZE, view.width);
+				int hash = 1;
+				for(int y = y1; y < y2; y++) {
+					for(int i = view.offset + y * view.stride + x1, end = i + x2 - x1; i < end; i++) {
+						hash = 31 * hash + data[i];
+					}
+				}
+				int tile = row * dirty.columns + column;
+				if(first || dirty.hashes[tile] != hash) {
+					dirty.hashes[tile] = hash;
+					dirty.drawn[tile >>> 6] |= 1l << tile;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Moves the tiles marked dirty in the frame just completed into the set waiting to be rendered.
+	 */
+	private void publishDirtyTiles(DirtyTiles dirty) {
+		for(int i = 0; i < dirty.drawn.length; i++) {
+			long bits = dirty.drawn[i];
+			if(bits != 0) {
+				long old;
+				do {
+					old = dirty.pending.get(i);
+				} while(!dirty.pending.compareAndSet(i, old, old | bits));
+				dirty.drawn[i] = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Marks the current image as completely drawn, and moves on to a free buffer. If the
+	 * buffers have been recreated since the last call, this is when the draw thread starts
+	 * using them. Call this after drawing, from the draw thread.
+	 * @return Whether the draw thread switched to recreated buffers. If so, anything drawn
+	 * incrementally must be redrawn in full, as only the frame just completed is carried over.
+	 */
+	public boolean nextBuffer() {
+		DirtyMode mode = dirtyMode;
+		DirtyTiles dirty = dirtyTiles;
+		if(mode == DirtyMode.DETECTED) {
+			detectDirtyTiles(dirty);
+		}
+		completedTimes[currentBuffer] = System.nanoTime();
+		// before publishing, so the frame just completed is published from the new buffers
+		boolean swapped = swapBufferSet();
+		if(buffers >= 3) {
+			currentBuffer = readyBuffer.getAndSet(currentBuffer | FRESH) & ~FRESH;
+		} else {
+			currentBuffer = (currentBuffer + 1) % buffers;
+		}
+		if(mode != DirtyMode.FULL) {
+			// only after the frame is published, so the renderer never takes the tiles first
+			publishDirtyTiles(dirty);
+		}
+		return swapped;
+	}
+	
+	/**
+	 * The images and graphics for each buffer at one size. Recreating the buffers makes a whole
+	 * new set, so the draw thread can finish its frame with the old set before switching over.
+	 * @author Quackmatic
+	 */
+	private static final class BufferSet {
+		final int width, height;
+		final boolean accelerated;
+		final BufferedImage[] images, backingImages;
+		final Graphics2D[] graphics;
+		final GamePixels[] pixels;
+		
+		BufferSet(int width, int height, int buffers, boolean accelerated) {
+			this.width = width;
+			this.height = height;
+			this.accelerated = accelerated;
+			this.images = new BufferedImage[buffers];
+			this.backingImages = new BufferedImage[buffers];
+			this.graphics = new Graphics2D[buffers];
+			this.pixels = new GamePixels[buffers];
+		}
+		
+		boolean uses(BufferedImage backing) {
+			for(BufferedImage image : backingImages) {
+				if(image == backing) return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * The dirty tiles of a screen of one size. A resize replaces the whole object, so the
+	 * bitmaps always match the dimensions they were made for.
+	 * @author Quackmatic
+	 */
+	private static final class DirtyTiles {
+		final int width, height, columns, rows;
+		/**
+		 * The tiles marked dirty in the frame being drawn. Only the draw thread uses this.
+		 */
+		final long[] drawn;
+		/**
+		 * The tiles of completed frames waiting to be taken by the render target.
+		 */
+		final AtomicLongArray pending;
+		/**
+		 * The hash of each tile in the last completed frame, for {@link DirtyMode#DETECTED}.
+		 */
+		int[] hashes;
+		
+		DirtyTiles(int width, int height) {
+			this.width = width;
+			this.height = height;
+			this.columns = (width + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE;
+			this.rows = (height + DIRTY_TILE_SIZE - 1) / DIRTY_TILE_SIZE;
+			int tiles = columns * rows;
+			this.drawn = new long[(tiles + 63) >>> 6];
+			this.pending = new AtomicLongArray(drawn.length);
+			// nothing has been rendered at this size yet
+			for(int tile = 0; tile < tiles; tile++) {
+				pending.set(tile >>> 6, pending.get(tile >>> 6) | (1l << tile));
+			}
+		}
 	}
-}
\ No newline at end of file
+}
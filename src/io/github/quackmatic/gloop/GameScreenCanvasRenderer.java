@@ -0,0 +1,191 @@
+package io.github.quackmatic.gloop;
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+/**
+ * A Canvas that actively renders a game screen with a {@link BufferStrategy}. Rather than
+ * asking Swing to repaint, the draw thread calls {@link #present()} to draw the latest frame
+ * and show it straight away, using page flipping where the display supports it. The time
+ * taken from a frame being completed to it being shown is measured for every frame.
+ * @author Quackmatic
+ * @see GameScreen
+ * @see GameScreenPanelRenderer
+ */
+public class GameScreenCanvasRenderer extends Canvas {
+	private static final long serialVersionUID = 4437630129178934472L;
+	
+	protected int canvasWidth, canvasHeight;
+	protected GameScreen gameScreen;
+	private final Object strategyLock = new Object();
+	private BufferStrategy strategy;
+	private GameScreenUpscaler upscaler;
+	private final GameTimerHistogram presentLatency;
+	private volatile long lastPresentTime;
+	
+	/**
+	 * Create a new GameScreenCanvasRenderer.
+	 * @param gameScreen The {@link GameScreen} to render.
+	 */
+	public GameScreenCanvasRenderer(GameScreen gameScreen) {
+		this.setIgnoreRepaint(true);
+		this.presentLatency = new GameTimerHistogram();
+		setGameScreen(gameScreen);
+	}
+	
+	/**
+	 * Sets the {@link GameScreen} associated with this GameScreenCanvasRenderer
+	 * to the given game screen. 
+	 * @param gameScreen The new game screen to render.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreenCanvasRenderer setGameScreen(GameScreen gameScreen) {
+		if(this.gameScreen != gameScreen) {
+			if(this.gameScreen != null) {
+				this.gameScreen.getResizedEvent().remove(this);
+			}
+			this.gameScreen = gameScreen;
+			this.gameScreen.getResizedEvent().add(this, new Runnable() {
+				@Override
+				public void run() {
+					updateDimensions();
+				}
+			});
+			updateDimensions();
+		}
+		return this;
+	}
+	
+	/**
+	 * Gets the {@link GameScreen} associated with this GameScreenCanvasRenderer
+	 * @return Returns the {@link GameScreen} associated with this GameScreenCanvasRenderer.
+	 */
+	public GameScreen getGameScreen() {
+		return this.gameScreen;
+	}
+	
+	/**
+	 * Sets the upscaler used to scale the game screen up to the size of this canvas.
+	 * @param upscaler The upscaler, or null to let Java2D scale the game screen.
+	 * @return Returns this, so you can chain these calls.
+	 * @see GameScreenPanelRenderer#setUpscaler(GameScreenUpscaler)
+	 */
+	public GameScreenCanvasRenderer setUpscaler(GameScreenUpscaler upscaler) {
+		this.upscaler = upscaler;
+		return this;
+	}
+	
+	/**
+	 * Updates the dimensions of this renderer to match the scale of the game screen.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreenCanvasRenderer updateDimensions() {
+		if(this.gameScreen != null) {
+			canvasWidth = this.gameScreen.getWidth() * this.gameScreen.getScale();
+			canvasHeight = this.gameScreen.getHeight() * this.gameScreen.getScale();
+		}
+		return this;
+	}
+	
+	/**
+	 * Gets the time taken from each frame being completely drawn to it being shown.
+	 * @return The present latency histogram.
+	 */
+	public GameTimerHistogram getPresentLatency() {
+		return presentLatency;
+	}
+	
+	/**
+	 * Gets when the last frame was shown.
+	 * @return The {@link System#nanoTime()} at which the last frame was shown, or 0 if none has been.
+	 */
+	public long getLastPresentTime() {
+		return lastPresentTime;
+	}
+	
+	/**
+	 * Draws the latest completed frame of the game screen and shows it. Call this from the draw
+	 * thread, after {@link GameScreen#nextBuffer()}. The frame is copied to the screen while
+	 * holding this canvas's own strategy lock, which {@link #removeNotify()} waits on, so that
+	 * the canvas can't be removed, and its buffers disposed, part way through.
+	 * @return Whether the frame was shown. If not, this canvas isn't displayable.
+	 */
+	public boolean present() {
+		if(this.gameScreen == null || !isDisplayable() || canvasWidth <= 0 || canvasHeight <= 0) {
+			return false;
+		}
+		// scale up before taking the lock, so removing the canvas is only held up by the copy
+		Image frame = this.gameScreen.getRenderImage();
+		int width = canvasWidth, height = canvasHeight;
+		int scale = Math.max(this.gameScreen.getScale(), 1);
+		if(upscaler != null && scale > 1) {
+			GamePixels source = this.gameScreen.getRenderPixels();
+			if(source != null) {
+				frame = upscaler.upscale(source, scale, 0, 0, source.width, source.height);
+				width = source.width * scale;
+				height = source.height * scale;
+			}
+		}
+		// not the tree lock, which would stall layout and every other component for each frame
+		synchronized(strategyLock) {
+			if(!isDisplayable()) {
+				return false; // removed since the check above
+			}
+			if(strategy == null) {
+				createStrategy();
+			}
+			do {
+				do {
+					Graphics g = strategy.getDrawGraphics();
+					try {
+						g.drawImage(frame, 0, 0, width, height, null);
+					} finally {
+						g.dispose();
+					}
+				} while(strategy.contentsRestored());
+				strategy.show();
+			} while(strategy.contentsLost());
+		}
+		Toolkit.getDefaultToolkit().sync();
+		
+		long now = System.nanoTime();
+		long completed = this.gameScreen.getRenderImageTime();
+		if(completed != 0) {
+			presentLatency.record(now - completed);
+		}
+		lastPresentTime = now;
+		return true;
+	}
+	
+	private void createStrategy() {
+		try {
+			createBufferStrategy(2, new BufferCapabilities(
+					new ImageCapabilities(true),
+					new ImageCapabilities(true),
+					BufferCapabilities.FlipContents.UNDEFINED));
+		} catch(AWTException e) {
+			// page flipping isn't available, so let AWT pick the best it can do
+			createBufferStrategy(2);
+		}
+		strategy = getBufferStrategy();
+	}
+	
+	@Override
+	public void removeNotify() {
+		// present() copies frames while holding the strategy lock, so it can't be using the strategy;
+		// it never takes the tree lock inside it, so waiting here with the tree lock held is safe
+		synchronized(strategyLock) {
+			if(strategy != null) {
+				strategy.dispose();
+				strategy = null;
+			}
+			super.removeNotify();
+		}
+	}
+}
@@ -1,6 +1,13 @@
 package io.github.quackmatic.gloop;
 
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 
 import javax.swing.JPanel;
 
@@ -14,6 +21,12 @@ public class GameScreenPanelRenderer extends JPanel {
 	
 	protected int panelWidth, panelHeight;
 	protected GameScreen gameScreen;
+	private VolatileImage volatileImage;
+	private double dirtyThreshold;
+	private long[] dirtyTiles;
+	private final int[] dirtySize;
+	private GameScreenUpscaler upscaler;
+	private int sourceX1, sourceY1, sourceX2, sourceY2;
 	
 	/**
 	 * Create a new GameScreenPanelRenderer.
@@ -21,6 +34,9 @@ public class GameScreenPanelRenderer extends JPanel {
 	 */
 	public GameScreenPanelRenderer(GameScreen gameScreen) {
 		this.setDoubleBuffered(true);
+		this.dirtyThreshold = 0.5;
+		this.dirtyTiles = new long[0];
+		this.dirtySize = new int[2];
 		setGameScreen(gameScreen);
 	}
 	
@@ -80,11 +96,185 @@ public class GameScreenPanelRenderer extends JPanel {
 		return this;
 	}
 	
+	/**
+	 * Sets the fraction of the game screen which can be dirty before {@link #repaintDirty()}
+	 * repaints the whole frame rather than just the dirty regions.
+	 * @param dirtyThreshold The fraction of the screen, between 0 and 1. The default is 0.5.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreenPanelRenderer setDirtyThreshold(double dirtyThreshold) {
+		this.dirtyThreshold = dirtyThreshold;
+		return this;
+	}
+	
+	/**
+	 * Sets the upscaler used to scale the game screen up to the size of this panel. Without
+	 * one, or if the game screen's buffers aren't backed by an <b>int[]</b>, the scaling is
+	 * left to Java2D.
+	 * @param upscaler The upscaler, or null to let Java2D scale the game screen.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameScreenPanelRenderer setUpscaler(GameScreenUpscaler upscaler) {
+		this.upscaler = upscaler;
+		return this;
+	}
+	
+	/**
+	 * Requests a repaint of the regions of the game screen that have changed since the last
+	 * call. If the game screen doesn't track dirty regions, or too much of it is dirty, this
+	 * repaints the whole frame.
+	 * @return Returns this, so you can chain these calls.
+	 * @see GameScreen#setDirtyMode(GameScreen.DirtyMode)
+	 */
+	public GameScreenPanelRenderer repaintDirty() {
+		GameScreen screen = this.gameScreen;
+		if(screen == null || screen.getDirtyMode() == GameScreen.DirtyMode.FULL) {
+			repaint();
+			return this;
+		}
+		dirtyTiles = screen.takeDirtyTiles(dirtyTiles, dirtySize);
+		int columns = dirtySize[0], rows = dirtySize[1];
+		int count = 0;
+		for(int i = 0, words = (columns * rows + 63) >>> 6; i < words; i++) {
+			count += Long.bitCount(dirtyTiles[i]);
+		}
+		if(count == 0) {
+			return this;
+		} else if(count > dirtyThreshold * columns * rows) {
+			repaint();
+			return this;
+		}
+		
+		int tileSize = GameScreen.DIRTY_TILE_SIZE * screen.getScale();
+		for(int row = 0; row < rows; row++) {
+			int column = 0;
+			while(column < columns) {
+				int start = column;
+				while(column < columns && isDirty(row * columns + column)) {
+					column++;
+				}
+				if(column > start) {
+					// each run of dirty tiles in a row becomes one region; Swing merges them further
+					repaint(start * tileSize, row * tileSize, (column - start) * tileSize, tileSize);
+				} else {
+					column++;
+				}
+			}
+		}
+		return this;
+	}
+	
+	private boolean isDirty(int tile) {
+		return (dirtyTiles[tile >>> 6] & (1l << tile)) != 0;
+	}
+	
 	@Override
 	protected void paintComponent(Graphics g) {
 		super.paintComponent(g);
 		if(this.gameScreen != null) {
-			g.drawImage(this.gameScreen.getRenderImage(), 0, 0, panelWidth, panelHeight, this);
+			BufferedImage image = this.gameScreen.getRenderImage();
+			if(!(upscaler != null && paintUpscaled(g)) &&
+			   !(this.gameScreen.isAccelerated() && paintAccelerated(g, image))) {
+				paintScaled(g, image);
+			}
+		}
+	}
+	
+	/**
+	 * Works out the region of the game screen inside the clip of a graphics context.
+	 * @param g The graphics to paint to.
+	 * @param width The width of the game screen image.
+	 * @param height The height of the game screen image.
+	 * @return Whether any of the game screen is inside the clip.
+	 */
+	private boolean clipSource(Graphics g, int width, int height) {
+		Rectangle clip = g.getClipBounds();
+		if(clip == null) {
+			sourceX1 = sourceY1 = 0;
+			sourceX2 = width;
+			sourceY2 = height;
+		} else {
+			int scale = Math.max(this.gameScreen.getScale(), 1);
+			sourceX1 = Math.max(clip.x / scale, 0);
+			sourceY1 = Math.max(clip.y / scale, 0);
+			sourceX2 = Math.min((clip.x + clip.width + scale - 1) / scale, width);
+			sourceY2 = Math.min((clip.y + clip.height + scale - 1) / scale, height);
+		}
+		return sourceX1 < sourceX2 && sourceY1 < sourceY2;
+	}
+	
+	/**
+	 * Draws an image scaled up to the size of this panel, only drawing the part of it inside the clip.
+	 * @param g The graphics to paint to.
+	 * @param image The image to paint, the same size as the game screen.
+	 */
+	private void paintScaled(Graphics g, Image image) {
+		Rectangle clip = g.getClipBounds();
+		if(clip == null || (clip.width >= panelWidth && clip.height >= panelHeight)) {
+			g.drawImage(image, 0, 0, panelWidth, panelHeight, this);
+			return;
+		}
+		int scale = Math.max(this.gameScreen.getScale(), 1);
+		if(clipSource(g, image.getWidth(null), image.getHeight(null))) {
+			g.drawImage(image,
+					sourceX1 * scale, sourceY1 * scale, sourceX2 * scale, sourceY2 * scale,
+					sourceX1, sourceY1, sourceX2, sourceY2,
+					this);
+		}
+	}
+	
+	/**
+	 * Scales the render image up with the upscaler, only scaling the part of it inside the clip.
+	 * @param g The graphics to paint to.
+	 * @return Whether the image was painted. If not, the render image isn't backed by an <b>int[]</b>.
+	 */
+	private boolean paintUpscaled(Graphics g) {
+		GamePixels source = this.gameScreen.getRenderPixels();
+		if(source == null) return false;
+		int scale = Math.max(this.gameScreen.getScale(), 1);
+		if(clipSource(g, source.width, source.height)) {
+			BufferedImage output = upscaler.upscale(source, scale, sourceX1, sourceY1, sourceX2, sourceY2);
+			int x1 = sourceX1 * scale, y1 = sourceY1 * scale, x2 = sourceX2 * scale, y2 = sourceY2 * scale;
+			g.drawImage(output, x1, y1, x2, y2, x1, y1, x2, y2, this);
+		}
+		return true;
+	}
+	
+	/**
+	 * Paints an image by uploading it to a {@link VolatileImage} first, so that it can be
+	 * scaled in video memory.
+	 * @param g The graphics to paint to.
+	 * @param image The image to paint.
+	 * @return Whether the image was painted. If not, acceleration isn't available.
+	 */
+	private boolean paintAccelerated(Graphics g, BufferedImage image) {
+		GraphicsConfiguration configuration = getGraphicsConfiguration();
+		if(configuration == null) return false;
+		int width = image.getWidth(), height = image.getHeight();
+		do {
+			if(volatileImage == null ||
+			   volatileImage.getWidth() != width ||
+			   volatileImage.getHeight() != height ||
+			   volatileImage.validate(configuration) == VolatileImage.IMAGE_INCOMPATIBLE) {
+				if(volatileImage != null) volatileImage.flush();
+				volatileImage = configuration.createCompatibleVolatileImage(width, height, Transparency.OPAQUE);
+				if(volatileImage == null) return false;
+			}
+			// the whole image is uploaded every time, so restored contents need no special handling
+			Graphics2D volatileGraphics = volatileImage.createGraphics();
+			volatileGraphics.drawImage(image, 0, 0, null);
+			volatileGraphics.dispose();
+			paintScaled(g, volatileImage);
+		} while(volatileImage.contentsLost());
+		return true;
+	}
+	
+	@Override
+	public void removeNotify() {
+		super.removeNotify();
+		if(volatileImage != null) {
+			volatileImage.flush();
+			volatileImage = null;
 		}
 	}
 }
@@ -0,0 +1,25 @@
+package io.github.quackmatic.gloop;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Defines a method that draws one tile of a {@link GameScreen} buffer. Tiles are drawn in
+ * parallel, so this must only touch pixels inside its own tile, and must be safe to call
+ * from several threads at once.
+ * @see GameScreen#drawTiled(int, GameScreenTileHandler)
+ * @author Quackmatic
+ */
+public interface GameScreenTileHandler {
+	/**
+	 * Draws one tile of the buffer.
+	 * @param x The x co-ordinate of the left of the tile.
+	 * @param y The y co-ordinate of the top of the tile.
+	 * @param width The width of the tile.
+	 * @param height The height of the tile.
+	 * @param buffer The buffer being drawn to.
+	 * @param graphics A {@link Graphics2D} for the buffer, clipped to the tile, that only this tile uses.
+	 * @see GameScreen
+	 */
+	public void drawTile(int x, int y, int width, int height, BufferedImage buffer, Graphics2D graphics);
+}
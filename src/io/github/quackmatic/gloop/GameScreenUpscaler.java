@@ -0,0 +1,125 @@
+package io.github.quackmatic.gloop;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Scales game screen pixels up by a whole number, writing straight into an output image.
+ * Each source pixel is written once per output row and each output row is then copied
+ * for the rest of the scale, and large frames are split into horizontal bands across the
+ * {@link GameWorkers}. This is much faster than a general-purpose scaled image draw.
+ * @see GameScreenPanelRenderer#setUpscaler(GameScreenUpscaler)
+ * @author Quackmatic
+ */
+public final class GameScreenUpscaler {
+	/**
+	 * The filters that a {@link GameScreenUpscaler} can apply while scaling.
+	 */
+	public static enum Filter {
+		/**
+		 * Nearest-neighbour scaling, so every pixel becomes a solid square.
+		 */
+		NEAREST,
+		
+		/**
+		 * Nearest-neighbour scaling with the last row of every scaled pixel darkened, like
+		 * the scanlines of a CRT. This has no effect at a scale of 1.
+		 */
+		SCANLINES
+	}
+	
+	private static final int BAND_PIXELS = 1 << 15;
+	
+	private final Filter filter;
+	private final GameWorkers.RangeTask task;
+	private BufferedImage output;
+	private GamePixels outputView;
+	private GamePixels source;
+	private int scale, x1, x2;
+	
+	/**
+	 * Create a new GameScreenUpscaler.
+	 * @param filter The filter to apply while scaling.
+	 */
+	public GameScreenUpscaler(Filter filter) {
+		if(filter == null) throw new Error("GameScreenUpscaler filter cannot be null.");
+		this.filter = filter;
+		this.task = new GameWorkers.RangeTask() {
+			@Override
+			public void run(int start, int end) {
+				scaleRows(start, end);
+			}
+		};
+	}
+	
+	/**
+	 * Gets the filter applied while scaling.
+	 * @return The filter applied while scaling.
+	 */
+	public Filter getFilter() {
+		return filter;
+	}
+	
+	/**
+	 * Scales a region of a source image up into the output image. Parts of the output image
+	 * outside the scaled region are left as they were.
+	 * @param source The pixels to scale.
+	 * @param scale The whole number to scale by.
+	 * @param x1 The x co-ordinate of the left of the source region, inclusive.
+	 * @param y1 The y co-ordinate of the top of the source region, inclusive.
+	 * @param x2 The x co-ordinate of the right of the source region, exclusive.
+	 * @param y2 The y co-ordinate of the bottom of the source region, exclusive.
+	 * @return The output image, which is the size of the whole source scaled up. This is reused
+	 * by the next call, so it must be drawn before then.
+	 */
+	public BufferedImage upscale(GamePixels source, int scale, int x1, int y1, int x2, int y2) {
+		if(scale < 1) throw new Error("GameScreenUpscaler scale must be >= 1.");
+		int width = source.width * scale, height = source.height * scale;
+		if(output == null || output.getWidth() != width || output.getHeight() != height) {
+			output = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_RGB);
+			outputView = GamePixels.of(output);
+		}
+		x1 = Math.max(x1, 0);
+		y1 = Math.max(y1, 0);
+		x2 = Math.min(x2, source.width);
+		y2 = Math.min(y2, source.height);
+		if(x1 >= x2 || y1 >= y2) return output;
+		
+		this.source = source;
+		this.scale = scale;
+		this.x1 = x1;
+		this.x2 = x2;
+		int rowPixels = (x2 - x1) * scale * scale;
+		GameWorkers.forRange(y1, y2, Math.max(1, BAND_PIXELS / rowPixels), task);
+		this.source = null;
+		return output;
+	}
+	
+	private void scaleRows(int start, int end) {
+		int[] sourceData = source.data, outputData = outputView.data;
+		int outputStride = outputView.stride;
+		int length = (x2 - x1) * scale;
+		boolean scanlines = filter == Filter.SCANLINES && scale > 1;
+		
+		for(int y = start; y < end; y++) {
+			int sourceIndex = source.offset + y * source.stride + x1;
+			int row = outputView.offset + y * scale * outputStride + x1 * scale;
+			int index = row;
+			for(int x = x1; x < x2; x++) {
+				int pixel = sourceData[sourceIndex++];
+				for(int i = 0; i < scale; i++) {
+					outputData[index++] = pixel;
+				}
+			}
+			int copies = scanlines ? scale - 1 : scale;
+			for(int i = 1; i < copies; i++) {
+				System.arraycopy(outputData, row, outputData, row + i * outputStride, length);
+			}
+			if(scanlines) {
+				int last = row + (scale - 1) * outputStride;
+				for(int i = 0; i < length; i++) {
+					outputData[last + i] = (outputData[row + i] >>> 1) & 0x7F7F7F;
+				}
+			}
+		}
+	}
+}
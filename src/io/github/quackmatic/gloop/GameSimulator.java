@@ -0,0 +1,200 @@
+package io.github.quackmatic.gloop;
+
+/**
+ * Runs a {@link Game}'s tick loop as fast as possible, without sleeping or drawing.
+ * Every tick is given the game's nominal {@link Game#getTickTime()} as its delta, so a
+ * simulated game behaves the same as one being played in real time. This is useful for
+ * balancing runs and regression tests.
+ * @author Quackmatic
+ */
+public class GameSimulator {
+	/**
+	 * Defines a condition on the state of a game for a simulation to run until.
+	 * @see GameSimulator#runUntil(Condition, long)
+	 * @author Quackmatic
+	 */
+	public static interface Condition {
+		/**
+		 * Determine whether the condition holds for a game.
+		 * @param game The game being simulated.
+		 * @return Whether the simulation should stop.
+		 */
+		public boolean isMet(Game game);
+	}
+	
+	/**
+	 * Defines a way of creating a game to simulate from a seed.
+	 * @see GameSimulator#runParallel(Factory, long[], long)
+	 * @author Quackmatic
+	 */
+	public static interface Factory {
+		/**
+		 * Creates a new game to be simulated.
+		 * @param seed The seed for this game.
+		 * @return A new, unloaded game.
+		 */
+		public Game create(long seed);
+	}
+	
+	private final Game game;
+	private final double delta;
+	private long ticks;
+	private long elapsedTime;
+	private boolean destroyed;
+	
+	/**
+	 * Create a new GameSimulator, loading and initialising the game.
+	 * @param game The game to simulate.
+	 */
+	public GameSimulator(Game game) {
+		this.game = game;
+		this.delta = game.getTickTime();
+		if(delta <= 0) throw new Error("GameSimulator tick time must be > 0.");
+		game.load();
+		game.init();
+	}
+	
+	/**
+	 * Runs the given number of ticks.
+	 * @param count The number of ticks to run.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameSimulator runTicks(long count) {
+		long startTime = System.nanoTime();
+		for(long i = 0; i < count; i++) {
+			tick();
+		}
+		elapsedTime += System.nanoTime() - startTime;
+		return this;
+	}
+	
+	/**
+	 * Runs ticks until a condition holds, checking it before every tick.
+	 * @param condition The condition to run until.
+	 * @param maxTicks The maximum number of ticks to run if the condition never holds.
+	 * @return Whether the condition was met within <b>maxTicks</b> ticks.
+	 */
+	public boolean runUntil(Condition condition, long maxTicks) {
+		long startTime = System.nanoTime();
+		try {
+			for(long i = 0; i < maxTicks; i++) {
+				if(condition.isMet(game)) return true;
+				tick();
+			}
+			return condition.isMet(game);
+		} finally {
+			elapsedTime += System.nanoTime() - startTime;
+		}
+	}
+	
+	/**
+	 * Runs ticks until the given amount of real, wall-clock time has passed.
+	 * @param seconds The wall-clock time budget in seconds.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameSimulator runFor(double seconds) {
+		long startTime = System.nanoTime();
+		long endTime = startTime + (long)(seconds * 1e+9);
+		while(System.nanoTime() < endTime) {
+			tick();
+		}
+		elapsedTime += System.nanoTime() - startTime;
+		return this;
+	}
+	
+	private void tick() {
+		if(destroyed) throw new Error("GameSimulator has been destroyed.");
+		game.tick(delta, (double)ticks * delta, false);
+		ticks++;
+	}
+	
+	/**
+	 * Destroys the simulated game. No more ticks can be run afterwards.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameSimulator destroy() {
+		if(!destroyed) {
+			destroyed = true;
+			game.destroy();
+		}
+		return this;
+	}
+	
+	/**
+	 * Gets the game being simulated.
+	 * @return The game being simulated.
+	 */
+	public Game getGame() {
+		return game;
+	}
+	
+	/**
+	 * Gets the number of ticks run so far.
+	 * @return The number of ticks run.
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+	
+	/**
+	 * Gets the amount of game time simulated so far.
+	 * @return The simulated time in seconds.
+	 */
+	public double getSimulatedTime() {
+		return (double)ticks * delta;
+	}
+	
+	/**
+	 * Gets the average number of ticks run per second of real time spent simulating.
+	 * @return The simulation rate in ticks per second.
+	 */
+	public double getTicksPerSecond() {
+		return elapsedTime == 0 ? 0.0 : (double)ticks / ((double)elapsedTime / 1e+9);
+	}
+	
+	/**
+	 * Simulates one game per seed in parallel, each for the given number of ticks.
+	 * @param factory Creates the game for each seed.
+	 * @param seeds The seeds to simulate.
+	 * @param ticks The number of ticks to run each game for.
+	 * @return The finished simulations, in the same order as <b>seeds</b>. These have not
+	 * been destroyed, so the final game state can be inspected.
+	 * @see GameWorkers
+	 */
+	public static GameSimulator[] runParallel(final Factory factory, final long[] seeds, final long ticks) {
+		final GameSimulator[] simulators = new GameSimulator[seeds.length];
+		GameWorkers.forRange(0, seeds.length, 1, new GameWorkers.RangeTask() {
+			@Override
+			public void run(int start, int end) {
+				for(int i = start; i < end; i++) {
+					simulators[i] = new GameSimulator(factory.create(seeds[i])).runTicks(ticks);
+				}
+			}
+		});
+		return simulators;
+	}
+	
+	/**
+	 * Simulates one game per seed in parallel, each until a condition holds.
+	 * @param factory Creates the game for each seed.
+	 * @param seeds The seeds to simulate.
+	 * @param condition The condition to run each game until.
+	 * @param maxTicks The maximum number of ticks to run each game for if the condition never holds.
+	 * @return The finished simulations, in the same order as <b>seeds</b>. These have not
+	 * been destroyed, so the final game state can be inspected.
+	 * @see GameWorkers
+	 */
+	public static GameSimulator[] runParallel(final Factory factory, final long[] seeds, final Condition condition, final long maxTicks) {
+		final GameSimulator[] simulators = new GameSimulator[seeds.length];
+		GameWorkers.forRange(0, seeds.length, 1, new GameWorkers.RangeTask() {
+			@Override
+			public void run(int start, int end) {
+				for(int i = start; i < end; i++) {
+					simulators[i] = new GameSimulator(factory.create(seeds[i]));
+					simulators[i].runUntil(condition, maxTicks);
+				}
+			}
+		});
+		return simulators;
+	}
+}
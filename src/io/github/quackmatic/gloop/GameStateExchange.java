@@ -0,0 +1,77 @@
+package io.github.quackmatic.gloop;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free triple buffer for handing snapshots of game state from the tick thread
+ * to the draw thread. The tick thread fills in the write state and publishes it, and
+ * the draw thread reads the most recently published state. Neither thread ever blocks
+ * the other, and nothing is allocated after construction.<br>
+ * The write state is not cleared between publishes and may hold a state from several
+ * ticks ago, so the tick thread should overwrite all of it before each publish.
+ * @param <T> The type of state being exchanged.
+ * @author Quackmatic
+ */
+public final class GameStateExchange<T> {
+	private static final int FRESH = 1 << 30;
+	
+	private final Object[] states;
+	private final AtomicInteger ready;
+	private int writing, reading;
+	
+	/**
+	 * Create a new GameStateExchange. The three states must be distinct objects.
+	 * @param first The initial write state.
+	 * @param second A spare state.
+	 * @param third The initial read state, returned until the first state is published.
+	 */
+	public GameStateExchange(T first, T second, T third) {
+		if(first == second || second == third || first == third) {
+			throw new Error("GameStateExchange states must be distinct.");
+		}
+		this.states = new Object[] { first, second, third };
+		this.writing = 0;
+		this.ready = new AtomicInteger(1);
+		this.reading = 2;
+	}
+	
+	/**
+	 * Gets the state to be filled in by the tick thread. This must only be called from the tick thread.
+	 * @return The state to write to.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getWriteState() {
+		return (T)states[writing];
+	}
+	
+	/**
+	 * Publishes the write state, making it the latest state for the draw thread to read,
+	 * and swaps in a free state to write to. This must only be called from the tick thread.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameStateExchange<T> publish() {
+		writing = ready.getAndSet(writing | FRESH) & ~FRESH;
+		return this;
+	}
+	
+	/**
+	 * Gets the most recently published state. The returned state will not be written to
+	 * until the next call to this method. This must only be called from the draw thread.
+	 * @return The latest state to read from.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getReadState() {
+		if((ready.get() & FRESH) != 0) {
+			reading = ready.getAndSet(reading) & ~FRESH;
+		}
+		return (T)states[reading];
+	}
+	
+	/**
+	 * Determine if a state has been published since the draw thread last read one.
+	 * @return Whether there is a newer state to read.
+	 */
+	public boolean hasNewState() {
+		return (ready.get() & FRESH) != 0;
+	}
+}
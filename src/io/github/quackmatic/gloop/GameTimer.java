@@ -65,8 +65,29 @@ public class GameTimer {
 	 */
 	public boolean capDelta;
 	
+	/**
+	 * Whether or not this GameTimer runs in fixed-step mode. In fixed-step mode, the
+	 * {@link GameTimerTickHandler} is always passed a <b>delta</b> equal to the interval,
+	 * and any time lost to a slow tick is made up by running catch-up ticks.
+	 */
+	public boolean fixedStep;
+	
+	/**
+	 * The maximum number of ticks to run in a single frame when catching up in
+	 * fixed-step mode. Any time beyond this is dropped, so that a game which cannot
+	 * keep up does not fall further and further behind.
+	 */
+	public int maxCatchUpTicks;
+	
+	/**
+	 * The {@link GameTimerPacer} used to wait between ticks.
+	 */
+	public GameTimerPacer pacer;
+	
 	private Thread tickThread;
 	private boolean running;
+	private volatile long alphaOrigin;
+	private final GameTimerStats stats = new GameTimerStats();
 	
 	/**
 	 * Create a new GameTimer with default values and handlers.
@@ -79,7 +100,10 @@ public class GameTimer {
 			.setErrorHandler(DEFAULT_ERROR_HANDLER)
 			.setCleanupHandler(DEFAULT_CLEANUP_HANDLER)
 			.setInterval(0)
-			.setCapDelta(false);
+			.setCapDelta(false)
+			.setFixedStep(false)
+			.setMaxCatchUpTicks(5)
+			.setPacer(new GameTimerHybridPacer(GameTimerHybridPacer.Mode.SLEEP));
 	}
 	
 	/**
@@ -135,6 +159,61 @@ public class GameTimer {
 		return this;
 	}
 
+	/**
+	 * Sets whether or not this timer runs in fixed-step mode. In fixed-step mode,
+	 * the tick handler is always given a <b>delta</b> equal to the interval, and
+	 * catch-up ticks are run to make up for slow frames.
+	 * @param fixedStep Whether or not to run in fixed-step mode.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameTimer setFixedStep(boolean fixedStep) {
+		this.fixedStep = fixedStep;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of ticks run in a single frame in fixed-step mode.
+	 * @param maxCatchUpTicks The maximum number of ticks per frame. Must be at least 1.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameTimer setMaxCatchUpTicks(int maxCatchUpTicks) {
+		if(maxCatchUpTicks < 1) throw new Error("GameTimer maxCatchUpTicks must be >= 1.");
+		this.maxCatchUpTicks = maxCatchUpTicks;
+		return this;
+	}
+	
+	/**
+	 * Sets the pacer used to wait between ticks. The pacer is calibrated when the timer starts.
+	 * @param pacer The {@link GameTimerPacer} to wait with.
+	 * @return Returns this, so you can chain these calls.
+	 * @see GameTimerHybridPacer
+	 */
+	public GameTimer setPacer(GameTimerPacer pacer) {
+		this.pacer = pacer;
+		return this;
+	}
+	
+	/**
+	 * Gets the performance statistics recorded by this timer. These can be read and reset
+	 * from any thread while the timer is running.
+	 * @return The {@link GameTimerStats} for this timer.
+	 */
+	public GameTimerStats getStats() {
+		return stats;
+	}
+	
+	/**
+	 * Gets how far, as a fraction of the interval, real time has progressed past the
+	 * most recent fixed-step tick. Draw code can use this to interpolate between the
+	 * previous and current game state. This can be safely called from another thread.
+	 * @return A value between 0 and 1, or 1 if this timer is not in fixed-step mode.
+	 */
+	public double getAlpha() {
+		if(!fixedStep || !running) return 1.0;
+		double alpha = (double)(System.nanoTime() - alphaOrigin) / (interval * 1e+9);
+		return alpha < 0.0 ? 0.0 : (alpha > 1.0 ? 1.0 : alpha);
+	}
+
 	/**
 	 * Starts this game timer's thread.
 	 * @return Returns this, so you can chain these calls.
@@ -165,38 +244,11 @@ public class GameTimer {
 	private void gameThread() {
 		running = true;
 		try {
-			long beginTime = System.nanoTime();
-			double previousDelta = 0.0;
-			boolean runningSlowly = false;
-			
-			while(running) {
-				if(interval <= 0) throw new Error("GameTimer interval must be >= 0.");
-				
-				long frameStartTime = System.nanoTime();
-				double givenDelta = capDelta ?
-						Math.min(previousDelta, interval) :
-						previousDelta; // works out the (maybe) capped delta
-						
-				tickHandler.tick(
-						givenDelta,
-						(double)(frameStartTime - beginTime) / 1e+9,
-						runningSlowly);
-				
-				long frameDeltaTime = System.nanoTime() - frameStartTime;
-				double runningTime = (double)(frameDeltaTime) / 1e+9;
-				
-				long sleepTime = (long)(interval * 1e+9) - frameDeltaTime;
-				runningSlowly = sleepTime < 0;
-				if(runningTime < interval) {
-					if(sleepTime >= 100000) {
-						// only sleep if sleepTime's not too small
-						Thread.sleep(
-								sleepTime / 1000000l,
-								(int)(sleepTime % 1000000l));
-					}
-				}
-				previousDelta = (double)
-						(System.nanoTime() - frameStartTime) / 1e+9;
+			pacer.calibrate();
+			if(fixedStep) {
+				fixedStepLoop();
+			} else {
+				variableStepLoop();
 			}
 		} catch(InterruptedException e) {
 			// ok
@@ -207,6 +259,78 @@ public class GameTimer {
 		}
 	}
 	
+	private void variableStepLoop() throws InterruptedException {
+		long beginTime = System.nanoTime();
+		double previousDelta = 0.0;
+		boolean runningSlowly = false;
+		
+		while(running) {
+			if(interval <= 0) throw new Error("GameTimer interval must be >= 0.");
+			
+			long frameStartTime = System.nanoTime();
+			double givenDelta = capDelta ?
+					Math.min(previousDelta, interval) :
+					previousDelta; // works out the (maybe) capped delta
+					
+			tickHandler.tick(
+					givenDelta,
+					(double)(frameStartTime - beginTime) / 1e+9,
+					runningSlowly);
+			
+			long frameDeltaTime = System.nanoTime() - frameStartTime;
+			long sleepTime = (long)(interval * 1e+9) - frameDeltaTime;
+			runningSlowly = sleepTime < 0;
+			long deadline = frameStartTime + (long)(interval * 1e+9);
+			pacer.waitUntil(deadline);
+			long frameEndTime = System.nanoTime();
+			stats.recordTick(frameDeltaTime);
+			stats.recordFrame(frameEndTime - frameStartTime, frameEndTime - deadline, !runningSlowly, runningSlowly);
+			previousDelta = (double)
+					(frameEndTime - frameStartTime) / 1e+9;
+		}
+	}
+	
+	private void fixedStepLoop() throws InterruptedException {
+		long previousTime = System.nanoTime();
+		long accumulator = 0;
+		long ticks = 0;
+		boolean runningSlowly = false;
+		alphaOrigin = previousTime;
+		
+		while(running) {
+			if(interval <= 0) throw new Error("GameTimer interval must be >= 0.");
+			long step = (long)(interval * 1e+9);
+			
+			long frameStartTime = System.nanoTime();
+			accumulator += frameStartTime - previousTime;
+			previousTime = frameStartTime;
+			
+			int catchUpTicks = 0;
+			while(running && accumulator >= step && catchUpTicks < maxCatchUpTicks) {
+				long tickStartTime = System.nanoTime();
+				tickHandler.tick(interval, (double)ticks * interval, runningSlowly);
+				stats.recordTick(System.nanoTime() - tickStartTime);
+				accumulator -= step;
+				ticks++;
+				catchUpTicks++;
+			}
+			
+			// past the catch-up limit the backlog is dropped rather than carried over,
+			// otherwise each slow frame makes the next one slower
+			runningSlowly = catchUpTicks > 1 || accumulator >= step;
+			if(accumulator >= step) {
+				accumulator %= step;
+			}
+			alphaOrigin = frameStartTime - accumulator;
+			
+			long deadline = frameStartTime + step - accumulator;
+			boolean waited = System.nanoTime() < deadline;
+			pacer.waitUntil(deadline);
+			long frameEndTime = System.nanoTime();
+			stats.recordFrame(frameEndTime - frameStartTime, frameEndTime - deadline, waited, runningSlowly);
+		}
+	}
+	
 	/**
 	 * Determine if this timer is currently running or not.
 	 * @return Not rocket science, is it?
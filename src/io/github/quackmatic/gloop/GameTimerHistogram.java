@@ -0,0 +1,182 @@
+package io.github.quackmatic.gloop;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of durations recorded by a {@link GameTimer}. Durations are
+ * bucketed log-linearly, with 16 buckets for each power of two of nanoseconds, which
+ * gives roughly 6% precision from 1ns up to around 18 minutes without allocating.<br>
+ * Durations can be recorded, snapshots taken and the histogram reset from any thread.
+ * @see GameTimerStats
+ * @author Quackmatic
+ */
+public final class GameTimerHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts;
+	private final AtomicLong total;
+	private final AtomicLong max;
+	
+	/**
+	 * Create a new, empty GameTimerHistogram.
+	 */
+	public GameTimerHistogram() {
+		counts = new AtomicLongArray(BUCKETS);
+		total = new AtomicLong();
+		max = new AtomicLong();
+	}
+	
+	/**
+	 * Records a duration. Negative durations are recorded as zero.
+	 * @param nanos The duration in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if(nanos < 0) nanos = 0;
+		int bucket = bucketOf(nanos);
+		// a plain read-then-write could put back counts cleared by a concurrent reset
+		counts.incrementAndGet(bucket);
+		total.addAndGet(nanos);
+		long current;
+		while(nanos > (current = max.get()) && !max.compareAndSet(current, nanos));
+	}
+	
+	/**
+	 * Clears all recorded durations. Durations recorded at the same time as a reset
+	 * may or may not be kept.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+	
+	/**
+	 * Takes a copy of the durations recorded so far.
+	 * @return A new {@link Snapshot} of this histogram.
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+			count += copy[i];
+		}
+		return new Snapshot(copy, count, total.get(), max.get());
+	}
+	
+	private static int bucketOf(long nanos) {
+		if(nanos < SUB_BUCKETS) {
+			return (int)nanos;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		if(exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	private static long bucketUpperBound(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lower = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1l << shift) - 1;
+	}
+	
+	/**
+	 * An immutable copy of a {@link GameTimerHistogram}. All durations are in seconds.
+	 * @author Quackmatic
+	 */
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long count, total, max;
+		
+		private Snapshot(long[] counts, long count, long total, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+		
+		/**
+		 * Gets the number of durations recorded.
+		 * @return The number of durations recorded.
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * Gets the mean of the recorded durations.
+		 * @return The mean duration in seconds, or 0 if nothing was recorded.
+		 */
+		public double getMean() {
+			return count == 0 ? 0.0 : (double)total / count / 1e+9;
+		}
+		
+		/**
+		 * Gets the longest recorded duration.
+		 * @return The maximum duration in seconds.
+		 */
+		public double getMax() {
+			return (double)max / 1e+9;
+		}
+		
+		/**
+		 * Gets the duration below which the given fraction of recorded durations lie.
+		 * @param fraction The fraction, between 0 and 1 - eg. 0.99 for the 99th percentile.
+		 * @return The percentile duration in seconds, or 0 if nothing was recorded.
+		 */
+		public double getPercentile(double fraction) {
+			if(count == 0) return 0.0;
+			long rank = (long)Math.ceil(fraction * count);
+			if(rank < 1) rank = 1;
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= rank) {
+					return (double)Math.min(bucketUpperBound(i), max) / 1e+9;
+				}
+			}
+			return getMax();
+		}
+		
+		/**
+		 * Gets the median recorded duration.
+		 * @return The 50th percentile duration in seconds.
+		 */
+		public double getP50() {
+			return getPercentile(0.5);
+		}
+		
+		/**
+		 * Gets the 99th percentile recorded duration.
+		 * @return The 99th percentile duration in seconds.
+		 */
+		public double getP99() {
+			return getPercentile(0.99);
+		}
+		
+		/**
+		 * Gets the 99.9th percentile recorded duration.
+		 * @return The 99.9th percentile duration in seconds.
+		 */
+		public double getP999() {
+			return getPercentile(0.999);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("n=%d mean=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms",
+					count, getMean() * 1e+3, getP50() * 1e+3, getP99() * 1e+3, getP999() * 1e+3, getMax() * 1e+3);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package io.github.quackmatic.gloop;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link GameTimerPacer} that waits using a combination of sleeping, parking and spinning.
+ * The sleeping and parking overshoot of the platform is measured when calibrated, and then
+ * tracked as the timer runs, so that the pacer can wake up early enough to spin for the rest
+ * of the wait.
+ * @see GameTimer
+ * @author Quackmatic
+ */
+public class GameTimerHybridPacer implements GameTimerPacer {
+	/**
+	 * The ways in which a {@link GameTimerHybridPacer} can wait.
+	 */
+	public static enum Mode {
+		/**
+		 * Sleep for the whole wait. This uses the least CPU time but is the least precise,
+		 * as the wait ends late by however long the platform oversleeps.
+		 */
+		SLEEP,
+		
+		/**
+		 * Sleep until the measured sleep overshoot before the deadline, and then
+		 * busy-spin until the deadline.
+		 */
+		SLEEP_SPIN,
+		
+		/**
+		 * Park the thread until the measured park overshoot before the deadline, and
+		 * then yield until the deadline.
+		 */
+		PARK_YIELD,
+		
+		/**
+		 * Busy-spin for the whole wait. This is the most precise, but uses a whole core.
+		 */
+		BUSY_SPIN
+	}
+	
+	private static final int CALIBRATION_SAMPLES = 10;
+	private static final long CALIBRATION_SLEEP = 1000000l;
+	private static final long CALIBRATION_PARK = 250000l;
+	
+	private final Mode mode;
+	// package-private so that tests can inject an outlier
+	volatile long sleepOvershoot;
+	volatile long parkOvershoot;
+	
+	/**
+	 * Create a new GameTimerHybridPacer.
+	 * @param mode The way in which to wait.
+	 */
+	public GameTimerHybridPacer(Mode mode) {
+		if(mode == null) throw new Error("GameTimerHybridPacer mode cannot be null.");
+		this.mode = mode;
+		this.sleepOvershoot = CALIBRATION_SLEEP;
+		this.parkOvershoot = CALIBRATION_PARK;
+	}
+	
+	/**
+	 * Gets the way in which this pacer waits.
+	 * @return The way in which this pacer waits.
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+	
+	/**
+	 * Gets the current estimate of how late a sleeping thread is woken up.
+	 * @return The sleep overshoot estimate in nanoseconds.
+	 */
+	public long getSleepOvershoot() {
+		return sleepOvershoot;
+	}
+	
+	/**
+	 * Gets the current estimate of how late a parked thread is woken up.
+	 * @return The park overshoot estimate in nanoseconds.
+	 */
+	public long getParkOvershoot() {
+		return parkOvershoot;
+	}
+	
+	@Override
+	public void calibrate() throws InterruptedException {
+		long sleepMax = 0, parkMax = 0;
+		for(int i = 0; i < CALIBRATION_SAMPLES; i++) {
+			long start = System.nanoTime();
+			Thread.sleep(CALIBRATION_SLEEP / 1000000l, (int)(CALIBRATION_SLEEP % 1000000l));
+			sleepMax = Math.max(sleepMax, System.nanoTime() - start - CALIBRATION_SLEEP);
+			
+			start = System.nanoTime();
+			LockSupport.parkNanos(CALIBRATION_PARK);
+			parkMax = Math.max(parkMax, System.nanoTime() - start - CALIBRATION_PARK);
+			if(Thread.interrupted()) throw new InterruptedException();
+		}
+		sleepOvershoot = sleepMax;
+		parkOvershoot = parkMax;
+	}
+	
+	@Override
+	public void waitUntil(long deadline) throws InterruptedException {
+		switch(mode) {
+		case SLEEP:
+			sleep(deadline, 0);
+			break;
+		case SLEEP_SPIN:
+			sleep(deadline, sleepOvershoot);
+			spin(deadline);
+			break;
+		case PARK_YIELD:
+			park(deadline);
+			yieldUntil(deadline);
+			break;
+		case BUSY_SPIN:
+			spin(deadline);
+			break;
+		}
+	}
+	
+	private void sleep(long deadline, long margin) throws InterruptedException {
+		long sleepTime = deadline - System.nanoTime();
+		if(margin > 0 && sleepTime > 0 && sleepTime <= margin) {
+			// too close to sleep at all; decay the estimate anyway, or after one outlier as big
+			// as the wait nothing would be slept, nothing learned, and every wait spun for good
+			sleepOvershoot = track(sleepOvershoot, 0);
+		}
+		while((sleepTime = deadline - System.nanoTime() - margin) > 0) {
+			long start = System.nanoTime();
+			Thread.sleep(sleepTime / 1000000l, (int)(sleepTime % 1000000l));
+			sleepOvershoot = track(sleepOvershoot, System.nanoTime() - start - sleepTime);
+		}
+	}
+	
+	private void park(long deadline) throws InterruptedException {
+		long parkTime = deadline - System.nanoTime();
+		if(parkTime > 0 && parkTime <= parkOvershoot) {
+			// as for sleeping, don't let one outlier stop parking for good
+			parkOvershoot = track(parkOvershoot, 0);
+		}
+		while((parkTime = deadline - System.nanoTime() - parkOvershoot) > 0) {
+			long start = System.nanoTime();
+			LockSupport.parkNanos(parkTime);
+			if(Thread.interrupted()) throw new InterruptedException();
+			long woken = System.nanoTime();
+			// parkNanos can return spuriously, so only learn from waits that ran the full time
+			if(woken - start >= parkTime) {
+				parkOvershoot = track(parkOvershoot, woken - start - parkTime);
+			}
+		}
+	}
+	
+	private void yieldUntil(long deadline) throws InterruptedException {
+		while(System.nanoTime() < deadline) {
+			Thread.yield();
+			if(Thread.interrupted()) throw new InterruptedException();
+		}
+	}
+	
+	private void spin(long deadline) throws InterruptedException {
+		while(System.nanoTime() < deadline) {
+			if(Thread.interrupted()) throw new InterruptedException();
+		}
+	}
+	
+	/**
+	 * Updates an overshoot estimate with a new observation. The estimate jumps up straight
+	 * away to avoid missing the next deadline, but only decays slowly. Waits too short to
+	 * sleep or park at all count as an overshoot of 0, so the estimate always comes back down.
+	 * @param estimate The current estimate.
+	 * @param observed The observed overshoot.
+	 * @return The new estimate.
+	 */
+	private static long track(long estimate, long observed) {
+		if(observed > estimate) {
+			return observed;
+		} else {
+			return estimate - (estimate - Math.max(observed, 0)) / 16;
+		}
+	}
+}
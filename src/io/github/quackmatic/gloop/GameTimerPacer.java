@@ -0,0 +1,26 @@
+package io.github.quackmatic.gloop;
+
+/**
+ * Defines how a {@link GameTimer} waits between ticks for the next frame deadline.
+ * @see GameTimer
+ * @see GameTimerHybridPacer
+ * @author Quackmatic
+ */
+public interface GameTimerPacer {
+	/**
+	 * Measures anything this pacer needs to know about the platform, such as how late
+	 * the thread scheduler wakes up sleeping threads. This is called on the timer thread
+	 * once, before the first tick.
+	 * @throws InterruptedException If the timer thread is interrupted while calibrating.
+	 * @see GameTimer
+	 */
+	public void calibrate() throws InterruptedException;
+	
+	/**
+	 * Waits until the given deadline has been reached.
+	 * @param deadline The {@link System#nanoTime()} to wait until.
+	 * @throws InterruptedException If the timer thread is interrupted while waiting.
+	 * @see GameTimer
+	 */
+	public void waitUntil(long deadline) throws InterruptedException;
+}
@@ -0,0 +1,178 @@
+package io.github.quackmatic.gloop;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performance statistics recorded by a {@link GameTimer} as it runs. This records how long
+ * each tick took, how late the timer woke up after waiting for each frame deadline, and the
+ * total time taken by each frame, along with how many frames were slow or missed their
+ * deadline. Snapshots can be taken, and the statistics reset, from any thread.
+ * @see GameTimer#getStats()
+ * @author Quackmatic
+ */
+public final class GameTimerStats {
+	private final GameTimerHistogram tickDuration;
+	private final GameTimerHistogram sleepOvershoot;
+	private final GameTimerHistogram framePeriod;
+	private final AtomicLong frames;
+	private final AtomicLong slowFrames;
+	private final AtomicLong missedDeadlines;
+	private volatile long deadlineTolerance;
+	
+	/**
+	 * Create a new, empty GameTimerStats.
+	 */
+	public GameTimerStats() {
+		tickDuration = new GameTimerHistogram();
+		sleepOvershoot = new GameTimerHistogram();
+		framePeriod = new GameTimerHistogram();
+		frames = new AtomicLong();
+		slowFrames = new AtomicLong();
+		missedDeadlines = new AtomicLong();
+		setDeadlineTolerance(0.0005);
+	}
+	
+	/**
+	 * Sets how late a frame can start before it counts as having missed its deadline.
+	 * @param tolerance The tolerance in seconds. The default is half a millisecond.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameTimerStats setDeadlineTolerance(double tolerance) {
+		this.deadlineTolerance = (long)(tolerance * 1e+9);
+		return this;
+	}
+	
+	/**
+	 * Records the time taken by a single tick.
+	 * @param nanos The tick duration in nanoseconds.
+	 */
+	void recordTick(long nanos) {
+		tickDuration.record(nanos);
+	}
+	
+	/**
+	 * Records the end of a frame.
+	 * @param period The time since the start of the frame, in nanoseconds.
+	 * @param overshoot How late the timer was for the next frame deadline, in nanoseconds.
+	 * @param waited Whether the timer had any time left to wait for the deadline.
+	 * @param slow Whether the frame ran slowly.
+	 */
+	void recordFrame(long period, long overshoot, boolean waited, boolean slow) {
+		framePeriod.record(period);
+		if(waited) {
+			sleepOvershoot.record(overshoot);
+		}
+		frames.incrementAndGet();
+		if(slow) {
+			slowFrames.incrementAndGet();
+		}
+		if(overshoot > deadlineTolerance) {
+			missedDeadlines.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Clears all recorded statistics.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public GameTimerStats reset() {
+		tickDuration.reset();
+		sleepOvershoot.reset();
+		framePeriod.reset();
+		frames.set(0);
+		slowFrames.set(0);
+		missedDeadlines.set(0);
+		return this;
+	}
+	
+	/**
+	 * Takes a copy of the statistics recorded so far.
+	 * @return A new {@link Snapshot} of these statistics.
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(
+				tickDuration.snapshot(),
+				sleepOvershoot.snapshot(),
+				framePeriod.snapshot(),
+				frames.get(),
+				slowFrames.get(),
+				missedDeadlines.get());
+	}
+	
+	/**
+	 * An immutable copy of a {@link GameTimerStats}.
+	 * @author Quackmatic
+	 */
+	public static final class Snapshot {
+		private final GameTimerHistogram.Snapshot tickDuration, sleepOvershoot, framePeriod;
+		private final long frames, slowFrames, missedDeadlines;
+		
+		private Snapshot(
+				GameTimerHistogram.Snapshot tickDuration,
+				GameTimerHistogram.Snapshot sleepOvershoot,
+				GameTimerHistogram.Snapshot framePeriod,
+				long frames, long slowFrames, long missedDeadlines) {
+			this.tickDuration = tickDuration;
+			this.sleepOvershoot = sleepOvershoot;
+			this.framePeriod = framePeriod;
+			this.frames = frames;
+			this.slowFrames = slowFrames;
+			this.missedDeadlines = missedDeadlines;
+		}
+		
+		/**
+		 * Gets the time taken by each call to the tick handler.
+		 * @return The tick duration histogram.
+		 */
+		public GameTimerHistogram.Snapshot getTickDuration() {
+			return tickDuration;
+		}
+		
+		/**
+		 * Gets how late the timer woke up after waiting for each frame deadline. Frames
+		 * which had no time left to wait are not included.
+		 * @return The sleep overshoot histogram.
+		 */
+		public GameTimerHistogram.Snapshot getSleepOvershoot() {
+			return sleepOvershoot;
+		}
+		
+		/**
+		 * Gets the total time taken by each frame, including ticking and waiting.
+		 * @return The frame period histogram.
+		 */
+		public GameTimerHistogram.Snapshot getFramePeriod() {
+			return framePeriod;
+		}
+		
+		/**
+		 * Gets the number of frames recorded.
+		 * @return The number of frames.
+		 */
+		public long getFrames() {
+			return frames;
+		}
+		
+		/**
+		 * Gets the number of frames which ran slowly - ie. where ticking took longer than the interval.
+		 * @return The number of slow frames.
+		 */
+		public long getSlowFrames() {
+			return slowFrames;
+		}
+		
+		/**
+		 * Gets the number of frames which ended later than their deadline, by more than the tolerance.
+		 * @return The number of missed deadlines.
+		 */
+		public long getMissedDeadlines() {
+			return missedDeadlines;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("frames=%d slow=%d missed=%d%n  tick: %s%n  overshoot: %s%n  period: %s",
+					frames, slowFrames, missedDeadlines, tickDuration, sleepOvershoot, framePeriod);
+		}
+	}
+}
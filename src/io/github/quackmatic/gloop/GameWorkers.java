@@ -0,0 +1,145 @@
+package io.github.quackmatic.gloop;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A shared pool of daemon worker threads for splitting CPU-heavy work across cores.
+ * Work is split into chunks which idle workers claim one at a time, so uneven chunks
+ * are balanced between threads. The calling thread always takes part in the work, and
+ * work started from a worker thread runs inline rather than waiting on the pool.
+ * @author Quackmatic
+ */
+public final class GameWorkers {
+	/**
+	 * Defines an operation to perform on a range of indices.
+	 * @see GameWorkers#forRange(int, int, int, RangeTask)
+	 * @author Quackmatic
+	 */
+	public static interface RangeTask {
+		/**
+		 * Perform the operation on a range of indices.
+		 * @param start The first index, inclusive.
+		 * @param end The last index, exclusive.
+		 */
+		public void run(int start, int end);
+	}
+	
+	private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+	private static final ExecutorService pool = Executors.newFixedThreadPool(
+			Math.max(PARALLELISM - 1, 1),
+			new ThreadFactory() {
+				private final AtomicInteger threadCount = new AtomicInteger();
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new WorkerThread(r, "GameWorkers-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	
+	private GameWorkers() {
+	}
+	
+	/**
+	 * Gets the number of threads, including the calling thread, that work is split across.
+	 * @return The number of threads that work is split across.
+	 */
+	public static int getParallelism() {
+		return PARALLELISM;
+	}
+	
+	/**
+	 * Runs a task over a range of indices, split into chunks across the worker threads,
+	 * and waits for every chunk to finish.
+	 * @param start The first index, inclusive.
+	 * @param end The last index, exclusive.
+	 * @param grain The number of indices in each chunk. Must be at least 1.
+	 * @param task The task to run on each chunk.
+	 */
+	public static void forRange(final int start, final int end, final int grain, final RangeTask task) {
+		if(grain < 1) throw new Error("GameWorkers grain must be >= 1.");
+		int chunks = (int)(((long)end - start + grain - 1) / grain);
+		if(chunks <= 0) return;
+		if(chunks == 1 || PARALLELISM == 1 || Thread.currentThread() instanceof WorkerThread) {
+			task.run(start, end);
+			return;
+		}
+		
+		final AtomicInteger next = new AtomicInteger(start);
+		final AtomicBoolean failed = new AtomicBoolean();
+		final Runnable claim = new Runnable() {
+			@Override
+			public void run() {
+				int chunkStart;
+				// once any thread fails, the others stop after the chunk they are running
+				while(!failed.get() && (chunkStart = next.getAndAdd(grain)) < end && chunkStart >= start) {
+					boolean finished = false;
+					try {
+						task.run(chunkStart, (int)Math.min((long)chunkStart + grain, end));
+						finished = true;
+					} finally {
+						if(!finished) failed.set(true);
+					}
+				}
+			}
+		};
+		
+		int helpers = Math.min(chunks, PARALLELISM) - 1;
+		// each helper claims its slot before it starts, so that the caller can tell helpers
+		// which never started, and need no waiting for, from ones which are still running
+		final AtomicIntegerArray started = new AtomicIntegerArray(helpers);
+		Future<?>[] futures = new Future<?>[helpers];
+		for(int i = 0; i < helpers; i++) {
+			final int helper = i;
+			futures[i] = pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					if(started.compareAndSet(helper, 0, 1)) claim.run();
+				}
+			});
+		}
+		Throwable failure = null;
+		try {
+			claim.run();
+		} catch(Throwable e) {
+			failure = e;
+		}
+		// by now every chunk has been claimed, so helpers still queued behind other work in a
+		// busy pool are cancelled rather than waited for
+		for(int i = 0; i < helpers; i++) {
+			if(started.compareAndSet(i, 0, 1)) {
+				futures[i].cancel(false);
+				continue;
+			}
+			try {
+				futures[i].get();
+			} catch(ExecutionException e) {
+				if(failure == null) failure = e.getCause();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if(failure == null) failure = e;
+			}
+		}
+		if(failure instanceof RuntimeException) {
+			throw (RuntimeException)failure;
+		} else if(failure instanceof Error) {
+			throw (Error)failure;
+		} else if(failure != null) {
+			throw new RuntimeException(failure);
+		}
+	}
+	
+	private static final class WorkerThread extends Thread {
+		public WorkerThread(Runnable r, String name) {
+			super(r, name);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, used to return results without boxing or allocating.
+ * Clearing the list keeps its storage, so a list that is reused every tick stops
+ * allocating once it has grown large enough.
+ * @author Quackmatic
+ */
+public class IntList {
+	private int[] data;
+	private int size;
+	
+	/**
+	 * Create a new, empty IntList.
+	 */
+	public IntList() {
+		this(16);
+	}
+	
+	/**
+	 * Create a new, empty IntList.
+	 * @param capacity The number of ints to make room for.
+	 */
+	public IntList(int capacity) {
+		this.data = new int[Math.max(capacity, 1)];
+		this.size = 0;
+	}
+	
+	/**
+	 * Gets the number of ints in this list.
+	 * @return The number of ints in this list.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Determine if this list is empty.
+	 * @return Whether this list holds no ints.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Gets an int from this list.
+	 * @param i The index of the int.
+	 * @return The int at the given index.
+	 */
+	public int get(int i) {
+		if(i < 0 || i >= size) throw new Error("IntList index " + i + " out of bounds for size " + size + ".");
+		return data[i];
+	}
+	
+	/**
+	 * Sets an int in this list.
+	 * @param i The index of the int.
+	 * @param value The new value.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public IntList set(int i, int value) {
+		if(i < 0 || i >= size) throw new Error("IntList index " + i + " out of bounds for size " + size + ".");
+		data[i] = value;
+		return this;
+	}
+	
+	/**
+	 * Adds an int to the end of this list.
+	 * @param value The int to add.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public IntList add(int value) {
+		if(size == data.length) {
+			data = Arrays.copyOf(data, size * 2);
+		}
+		data[size++] = value;
+		return this;
+	}
+	
+	/**
+	 * Adds two ints to the end of this list, such as the two halves of a pair.
+	 * @param a The first int to add.
+	 * @param b The second int to add.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public IntList add(int a, int b) {
+		if(size + 2 > data.length) {
+			data = Arrays.copyOf(data, Math.max(size + 2, size * 2));
+		}
+		data[size++] = a;
+		data[size++] = b;
+		return this;
+	}
+	
+	/**
+	 * Removes the int at an index, moving the last int into its place.
+	 * @param i The index of the int to remove.
+	 * @return The removed int.
+	 */
+	public int swapRemove(int i) {
+		int value = get(i);
+		data[i] = data[--size];
+		return value;
+	}
+	
+	/**
+	 * Removes and returns the last int in this list.
+	 * @return The removed int.
+	 */
+	public int pop() {
+		if(size == 0) throw new Error("IntList is empty.");
+		return data[--size];
+	}
+	
+	/**
+	 * Removes every int, keeping the storage for reuse.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public IntList clear() {
+		size = 0;
+		return this;
+	}
+	
+	/**
+	 * Sorts the ints in this list into ascending order.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public IntList sort() {
+		Arrays.sort(data, 0, size);
+		return this;
+	}
+	
+	/**
+	 * Copies the ints in this list into a new array.
+	 * @return A new array of the ints in this list.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+}
@@ -0,0 +1,139 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to int values, stored in flat arrays with open addressing and
+ * linear probing. Removal shifts the following entries back rather than leaving tombstones,
+ * so lookups stay short however much the map is churned.
+ * @author Quackmatic
+ */
+final class LongIntMap {
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size, mask;
+	
+	LongIntMap() {
+		this(16);
+	}
+	
+	LongIntMap(int capacity) {
+		int tableSize = 16;
+		while(tableSize < capacity * 2) {
+			tableSize <<= 1;
+		}
+		allocate(tableSize);
+	}
+	
+	private void allocate(int tableSize) {
+		this.keys = new long[tableSize];
+		this.values = new int[tableSize];
+		this.used = new boolean[tableSize];
+		this.mask = tableSize - 1;
+		this.size = 0;
+	}
+	
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int)key;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the value stored for a key.
+	 * @param key The key to look up.
+	 * @param missing The value to return if the key isn't in the map.
+	 * @return The value for the key, or <b>missing</b>.
+	 */
+	int get(long key, int missing) {
+		int slot = hash(key) & mask;
+		while(used[slot]) {
+			if(keys[slot] == key) return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return missing;
+	}
+	
+	/**
+	 * Stores a value for a key, replacing any existing value.
+	 * @param key The key.
+	 * @param value The value.
+	 */
+	void put(long key, int value) {
+		if((size + 1) * 2 > keys.length) {
+			grow();
+		}
+		int slot = hash(key) & mask;
+		while(used[slot]) {
+			if(keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+	
+	/**
+	 * Removes a key from the map.
+	 * @param key The key to remove.
+	 * @param missing The value to return if the key isn't in the map.
+	 * @return The value that was stored for the key, or <b>missing</b>.
+	 */
+	int remove(long key, int missing) {
+		int slot = hash(key) & mask;
+		while(used[slot]) {
+			if(keys[slot] == key) {
+				int value = values[slot];
+				shiftBack(slot);
+				size--;
+				return value;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return missing;
+	}
+	
+	private void shiftBack(int hole) {
+		// move later entries of the same probe run into the hole, as long as
+		// that doesn't put them before their home slot
+		int slot = hole;
+		while(true) {
+			slot = (slot + 1) & mask;
+			if(!used[slot]) break;
+			int home = hash(keys[slot]) & mask;
+			if(((slot - home) & mask) >= ((slot - hole) & mask)) {
+				keys[hole] = keys[slot];
+				values[hole] = values[slot];
+				hole = slot;
+			}
+		}
+		used[hole] = false;
+	}
+	
+	void clear() {
+		if(size > 0) {
+			Arrays.fill(used, false);
+			size = 0;
+		}
+	}
+	
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(oldKeys.length * 2);
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldUsed[i]) put(oldKeys[i], oldValues[i]);
+		}
+	}
+}
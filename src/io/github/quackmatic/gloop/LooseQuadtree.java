@@ -0,0 +1,614 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * An index of points and {@link AABB}s over a fixed area, for finding what is under the mouse,
+ * inside a selection or near a position without checking everything. It suits large numbers
+ * of things that rarely move, such as markers on a map.<br>
+ * Each node of the tree covers a square cell, but holds anything whose centre is in the cell
+ * and which is no bigger than the cell, so its contents can stick out by up to half a cell on
+ * each side. Because of this, where something goes depends only on its centre and size, so
+ * it can be added or moved without splitting or merging nodes. Anything whose centre is
+ * outside the area is kept at the root.<br>
+ * Positions and sizes are copied into the tree, so points and boxes needn't be kept anywhere
+ * else; call one of the update methods when they change. Nodes and entries are stored in flat
+ * arrays that are reused, and queries reuse internal buffers, so a tree must only be used
+ * from one thread at a time.
+ * @author Quackmatic
+ */
+public class LooseQuadtree {
+	/**
+	 * The default maximum number of levels below the root.
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 8;
+	
+	private static final int NULL = -1;
+	
+	private final int maxDepth;
+	
+	// nodes, where the children of a node are the four nodes from nodeChildren[node], and
+	// nodeExtents is the most that anything ever linked under a node has stuck out of its centre
+	private int[] nodeParents, nodeChildren, nodeFirsts, nodeCounts;
+	private double[] nodeXs, nodeYs, nodeHalfs, nodeExtents;
+	private int nodeCount;
+	
+	// entries, linked into a list for each node, with free entries linked through entryNexts
+	private double[] entryXs, entryYs, entryHalfWidths, entryHalfHeights;
+	private int[] entryNodes, entryNexts, entryPrevs;
+	private int entryEnd, entryCount, freeEntry;
+	
+	// query buffers
+	private final IntList stack;
+	private int[] heapNodes, resultEntries;
+	private double[] heapKeys, resultKeys;
+	private int heapSize, resultSize;
+	
+	/**
+	 * Create a new, empty LooseQuadtree with the default maximum depth.
+	 * @param bounds The area to index. Things outside it can still be added, but aren't sorted
+	 * into the tree.
+	 */
+	public LooseQuadtree(AABB bounds) {
+		this(bounds, DEFAULT_MAX_DEPTH);
+	}
+	
+	/**
+	 * Create a new, empty LooseQuadtree.
+	 * @param bounds The area to index. Things outside it can still be added, but aren't sorted
+	 * into the tree.
+	 * @param maxDepth The maximum number of levels below the root. Each level has four times
+	 * as many nodes as the one above, and a depth that leaves a few dozen points in each of the
+	 * deepest nodes works well. The default suits around a million points.
+	 */
+	public LooseQuadtree(AABB bounds, int maxDepth) {
+		if(maxDepth < 0 || maxDepth > 30) throw new Error("LooseQuadtree max depth must be between 0 and 30.");
+		this.maxDepth = maxDepth;
+		this.stack = new IntList(64);
+		this.heapNodes = new int[64];
+		this.heapKeys = new double[64];
+		this.resultEntries = new int[16];
+		this.resultKeys = new double[16];
+		allocateNodes(64);
+		allocateEntries(64);
+		nodeXs[0] = bounds.x;
+		nodeYs[0] = bounds.y;
+		nodeHalfs[0] = Math.max(bounds.width, bounds.height) / 2;
+		clear();
+	}
+	
+	/**
+	 * Gets the number of things in this tree.
+	 * @return The number of things in this tree.
+	 */
+	public int size() {
+		return entryCount;
+	}
+	
+	/**
+	 * Gets the bounds of something in this tree.
+	 * @param handle A handle returned by one of the insert or build methods.
+	 * @param out The box to store the bounds in. Points have a size of zero.
+	 * @return <b>out</b>.
+	 */
+	public AABB get(int handle, AABB out) {
+		checkHandle(handle);
+		return out.set(entryXs[handle], entryYs[handle], entryHalfWidths[handle] * 2, entryHalfHeights[handle] * 2);
+	}
+	
+	/**
+	 * Removes everything from this tree. Handles are given out from 0 again.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public LooseQuadtree clear() {
+		nodeCount = 1;
+		nodeParents[0] = nodeChildren[0] = nodeFirsts[0] = NULL;
+		nodeCounts[0] = 0;
+		nodeExtents[0] = 0;
+		entryEnd = entryCount = 0;
+		freeEntry = NULL;
+		return this;
+	}
+	
+	/**
+	 * Replaces everything in this tree with a set of points. This is quicker than inserting
+	 * them one at a time, and the handle of each point is its index.
+	 * @param points The points.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public LooseQuadtree build(Vec2Array points) {
+		int count = points.size();
+		clear();
+		if(entryXs.length < count) allocateEntries(count);
+		for(int i = count - 1; i >= 0; i--) {
+			set(i, points.xs[i], points.ys[i], 0, 0);
+			prepend(i, findNode(points.xs[i], points.ys[i], 0));
+		}
+		finishBuild(count);
+		return this;
+	}
+	
+	/**
+	 * Replaces everything in this tree with a set of boxes. This is quicker than inserting
+	 * them one at a time, and the handle of each box is its index.
+	 * @param boxes The boxes.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public LooseQuadtree build(AABB[] boxes) {
+		int count = boxes.length;
+		clear();
+		if(entryXs.length < count) allocateEntries(count);
+		for(int i = count - 1; i >= 0; i--) {
+			AABB box = boxes[i];
+			set(i, box.x, box.y, box.width / 2, box.height / 2);
+			prepend(i, findNode(box.x, box.y, Math.max(box.width, box.height) / 2));
+		}
+		finishBuild(count);
+		return this;
+	}
+	
+	/**
+	 * Adds a point to this tree.
+	 * @param point The point, which is copied.
+	 * @return A handle for the point, which may be reused once it is removed.
+	 */
+	public int insert(Vec2 point) {
+		return insert(point.x, point.y, 0, 0);
+	}
+	
+	/**
+	 * Adds a box to this tree.
+	 * @param box The box, which is copied.
+	 * @return A handle for the box, which may be reused once it is removed.
+	 */
+	public int insert(AABB box) {
+		return insert(box.x, box.y, box.width, box.height);
+	}
+	
+	/**
+	 * Adds a box to this tree.
+	 * @param x The x co-ordinate of the centre of the box.
+	 * @param y The y co-ordinate of the centre of the box.
+	 * @param width The width of the box, or 0 for a point.
+	 * @param height The height of the box, or 0 for a point.
+	 * @return A handle for the box, which may be reused once it is removed.
+	 */
+	public int insert(double x, double y, double width, double height) {
+		int entry = allocateEntry();
+		set(entry, x, y, width / 2, height / 2);
+		link(entry, findNode(x, y, Math.max(width, height) / 2));
+		entryCount++;
+		return entry;
+	}
+	
+	/**
+	 * Moves a point in this tree.
+	 * @param handle A handle returned by one of the insert or build methods.
+	 * @param point The new position of the point.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public LooseQuadtree update(int handle, Vec2 point) {
+		return update(handle, point.x, point.y, 0, 0);
+	}
+	
+	/**
+	 * Moves or resizes a box in this tree.
+	 * @param handle A handle returned by one of the insert or build methods.
+	 * @param box The new bounds of the box.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public LooseQuadtree update(int handle, AABB box) {
+		return update(handle, box.x, box.y, box.width, box.height);
+	}
+	
+	/**
+	 * Moves or resizes a box in this tree. If it still belongs in the same node, the tree
+	 * doesn't change.
+	 * @param handle A handle returned by one of the insert or build methods.
+	 * @param x The new x co-ordinate of the centre of the box.
+	 * @param y The new y co-ordinate of the centre of the box.
+	 * @param width The new width of the box, or 0 for a point.
+	 * @param height The new height of the box, or 0 for a point.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public LooseQuadtree update(int handle, double x, double y, double width, double height) {
+		checkHandle(handle);
+		set(handle, x, y, width / 2, height / 2);
+		int node = findNode(x, y, Math.max(width, height) / 2);
+		if(node != entryNodes[handle]) {
+			unlink(handle);
+			link(handle, node);
+		} else {
+			// it may have grown, so the nodes above it must reach at least as far
+			double extent = Math.max(entryHalfWidths[handle], entryHalfHeights[handle]);
+			for(; node != NULL && nodeExtents[node] < extent; node = nodeParents[node]) {
+				nodeExtents[node] = extent;
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Removes something from this tree.
+	 * @param handle A handle returned by one of the insert or build methods.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public LooseQuadtree remove(int handle) {
+		checkHandle(handle);
+		unlink(handle);
+		entryNodes[handle] = NULL;
+		entryNexts[handle] = freeEntry;
+		freeEntry = handle;
+		entryCount--;
+		return this;
+	}
+	
+	/**
+	 * Finds everything in this tree touching a point.
+	 * @param point The point.
+	 * @param out The list to write the handles to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryPoint(Vec2 point, IntList out) {
+		return queryBounds(point.x, point.y, point.x, point.y, out);
+	}
+	
+	/**
+	 * Finds everything in this tree touching a region.
+	 * @param region The region.
+	 * @param out The list to write the handles to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryRegion(AABB region, IntList out) {
+		return queryBounds(region.getMinX(), region.getMinY(), region.getMaxX(), region.getMaxY(), out);
+	}
+	
+	/**
+	 * Finds everything in this tree within a distance of a point. The distance to a box is
+	 * the distance to the nearest point on it.
+	 * @param centre The point.
+	 * @param radius The distance.
+	 * @param out The list to write the handles to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryRadius(Vec2 centre, double radius, IntList out) {
+		out.clear();
+		double x = centre.x, y = centre.y, radiusSquared = radius * radius;
+		if(radius < 0) return out;
+		stack.clear().add(0);
+		while(!stack.isEmpty()) {
+			int node = stack.pop();
+			if(nodeCounts[node] == 0) continue;
+			if(node != 0 && distanceSquaredToNode(node, x, y) > radiusSquared) continue;
+			for(int entry = nodeFirsts[node]; entry != NULL; entry = entryNexts[entry]) {
+				if(distanceSquaredToEntry(entry, x, y) <= radiusSquared) out.add(entry);
+			}
+			int children = nodeChildren[node];
+			if(children != NULL) stack.add(children, children + 1).add(children + 2, children + 3);
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds the things in this tree nearest to a point. The distance to a box is the distance
+	 * to the nearest point on it.
+	 * @param point The point.
+	 * @param count The most things to find.
+	 * @param out The list to write the handles to, nearest first. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryNearest(Vec2 point, int count, IntList out) {
+		return queryNearest(point, count, Double.POSITIVE_INFINITY, out);
+	}
+	
+	/**
+	 * Finds the things in this tree nearest to a point, up to a maximum distance away. The
+	 * distance to a box is the distance to the nearest point on it.
+	 * @param point The point.
+	 * @param count The most things to find.
+	 * @param maxDistance How far away to look.
+	 * @param out The list to write the handles to, nearest first. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryNearest(Vec2 point, int count, double maxDistance, IntList out) {
+		if(count < 1) throw new Error("LooseQuadtree nearest query count must be >= 1.");
+		out.clear();
+		if(maxDistance < 0) return out;
+		double x = point.x, y = point.y;
+		double limit = maxDistance * maxDistance;
+		if(resultEntries.length < count) {
+			resultEntries = new int[count];
+			resultKeys = new double[count];
+		}
+		heapSize = resultSize = 0;
+		
+		// visit nodes nearest first, keeping the best entries so far in a max-heap, until the
+		// nearest node left is further away than the worst of them
+		pushNode(0, 0);
+		while(heapSize > 0 && heapKeys[0] <= limit) {
+			int node = popNode();
+			for(int entry = nodeFirsts[node]; entry != NULL; entry = entryNexts[entry]) {
+				double distance = distanceSquaredToEntry(entry, x, y);
+				if(resultSize < count) {
+					if(distance <= limit) pushResult(entry, distance);
+				} else if(distance < resultKeys[0]) {
+					resultEntries[0] = entry;
+					resultKeys[0] = distance;
+					siftDownResult(0, resultSize);
+				}
+				if(resultSize == count) limit = Math.min(limit, resultKeys[0]);
+			}
+			int children = nodeChildren[node];
+			if(children != NULL) {
+				for(int child = children; child < children + 4; child++) {
+					if(nodeCounts[child] == 0) continue;
+					double distance = distanceSquaredToNode(child, x, y);
+					if(distance <= limit) pushNode(child, distance);
+				}
+			}
+		}
+		
+		// heap sort the results in place, nearest first
+		for(int end = resultSize - 1; end > 0; end--) {
+			int entry = resultEntries[end];
+			double key = resultKeys[end];
+			resultEntries[end] = resultEntries[0];
+			resultKeys[end] = resultKeys[0];
+			resultEntries[0] = entry;
+			resultKeys[0] = key;
+			siftDownResult(0, end);
+		}
+		for(int i = 0; i < resultSize; i++) {
+			out.add(resultEntries[i]);
+		}
+		return out;
+	}
+	
+	private IntList queryBounds(double minX, double minY, double maxX, double maxY, IntList out) {
+		out.clear();
+		stack.clear().add(0);
+		while(!stack.isEmpty()) {
+			int node = stack.pop();
+			if(nodeCounts[node] == 0) continue;
+			if(node != 0) {
+				double loose = nodeHalfs[node] + nodeExtents[node];
+				if(nodeXs[node] - loose > maxX || nodeXs[node] + loose < minX ||
+						nodeYs[node] - loose > maxY || nodeYs[node] + loose < minY) continue;
+			}
+			for(int entry = nodeFirsts[node]; entry != NULL; entry = entryNexts[entry]) {
+				if(entryXs[entry] - entryHalfWidths[entry] <= maxX && entryXs[entry] + entryHalfWidths[entry] >= minX &&
+						entryYs[entry] - entryHalfHeights[entry] <= maxY && entryYs[entry] + entryHalfHeights[entry] >= minY) {
+					out.add(entry);
+				}
+			}
+			int children = nodeChildren[node];
+			if(children != NULL) stack.add(children, children + 1).add(children + 2, children + 3);
+		}
+		return out;
+	}
+	
+	private double distanceSquaredToNode(int node, double x, double y) {
+		double loose = nodeHalfs[node] + nodeExtents[node];
+		double dx = Math.max(Math.abs(x - nodeXs[node]) - loose, 0);
+		double dy = Math.max(Math.abs(y - nodeYs[node]) - loose, 0);
+		return dx * dx + dy * dy;
+	}
+	
+	private double distanceSquaredToEntry(int entry, double x, double y) {
+		double dx = Math.max(Math.abs(x - entryXs[entry]) - entryHalfWidths[entry], 0);
+		double dy = Math.max(Math.abs(y - entryYs[entry]) - entryHalfHeights[entry], 0);
+		return dx * dx + dy * dy;
+	}
+	
+	private int findNode(double x, double y, double halfSize) {
+		int node = 0;
+		if(!(Math.abs(x - nodeXs[0]) <= nodeHalfs[0] && Math.abs(y - nodeYs[0]) <= nodeHalfs[0])) return node;
+		// go down while the centre is in a child and the child is at least as big as the entry
+		for(int depth = 0; depth < maxDepth && halfSize <= nodeHalfs[node] / 2; depth++) {
+			int children = nodeChildren[node];
+			if(children == NULL) children = split(node);
+			node = children + (x < nodeXs[node] ? 0 : 1) + (y < nodeYs[node] ? 0 : 2);
+		}
+		return node;
+	}
+	
+	private int split(int node) {
+		if(nodeCount + 4 > nodeXs.length) allocateNodes(nodeXs.length * 2);
+		int children = nodeCount;
+		double half = nodeHalfs[node] / 2;
+		for(int i = 0; i < 4; i++) {
+			int child = children + i;
+			nodeParents[child] = node;
+			nodeChildren[child] = nodeFirsts[child] = NULL;
+			nodeCounts[child] = 0;
+			nodeExtents[child] = 0;
+			nodeXs[child] = nodeXs[node] + ((i & 1) == 0 ? -half : half);
+			nodeYs[child] = nodeYs[node] + ((i & 2) == 0 ? -half : half);
+			nodeHalfs[child] = half;
+		}
+		nodeChildren[node] = children;
+		nodeCount += 4;
+		return children;
+	}
+	
+	private void set(int entry, double x, double y, double halfWidth, double halfHeight) {
+		entryXs[entry] = x;
+		entryYs[entry] = y;
+		entryHalfWidths[entry] = halfWidth;
+		entryHalfHeights[entry] = halfHeight;
+	}
+	
+	private void link(int entry, int node) {
+		prepend(entry, node);
+		// nodes hold things up to twice their size, but mostly much less, so keep track of how
+		// far their contents reach to search as few nodes as possible
+		double extent = Math.max(entryHalfWidths[entry], entryHalfHeights[entry]);
+		for(; node != NULL; node = nodeParents[node]) {
+			nodeCounts[node]++;
+			if(nodeExtents[node] < extent) nodeExtents[node] = extent;
+		}
+	}
+	
+	private void prepend(int entry, int node) {
+		int next = nodeFirsts[node];
+		entryNodes[entry] = node;
+		entryPrevs[entry] = NULL;
+		entryNexts[entry] = next;
+		if(next != NULL) entryPrevs[next] = entry;
+		nodeFirsts[node] = entry;
+	}
+	
+	private void finishBuild(int count) {
+		// entries were prepended backwards, leaving each node's list in handle order, without
+		// walking up the tree for each one; children always come after their parents, so one
+		// pass backwards over the nodes adds up the counts and extents instead
+		for(int i = 0; i < count; i++) {
+			int node = entryNodes[i];
+			nodeCounts[node]++;
+			double extent = Math.max(entryHalfWidths[i], entryHalfHeights[i]);
+			if(nodeExtents[node] < extent) nodeExtents[node] = extent;
+		}
+		for(int node = nodeCount - 1; node > 0; node--) {
+			int parent = nodeParents[node];
+			nodeCounts[parent] += nodeCounts[node];
+			if(nodeExtents[parent] < nodeExtents[node]) nodeExtents[parent] = nodeExtents[node];
+		}
+		entryEnd = entryCount = count;
+	}
+	
+	private void unlink(int entry) {
+		int node = entryNodes[entry], prev = entryPrevs[entry], next = entryNexts[entry];
+		if(prev != NULL) {
+			entryNexts[prev] = next;
+		} else {
+			nodeFirsts[node] = next;
+		}
+		if(next != NULL) entryPrevs[next] = prev;
+		for(; node != NULL; node = nodeParents[node]) {
+			nodeCounts[node]--;
+		}
+	}
+	
+	private void pushNode(int node, double key) {
+		if(heapSize == heapNodes.length) {
+			heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		int i = heapSize++;
+		while(i > 0) {
+			int parent = (i - 1) >> 1;
+			if(heapKeys[parent] <= key) break;
+			heapNodes[i] = heapNodes[parent];
+			heapKeys[i] = heapKeys[parent];
+			i = parent;
+		}
+		heapNodes[i] = node;
+		heapKeys[i] = key;
+	}
+	
+	private int popNode() {
+		int top = heapNodes[0];
+		int node = heapNodes[--heapSize];
+		double key = heapKeys[heapSize];
+		int i = 0;
+		while(true) {
+			int child = i * 2 + 1;
+			if(child >= heapSize) break;
+			if(child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+			if(key <= heapKeys[child]) break;
+			heapNodes[i] = heapNodes[child];
+			heapKeys[i] = heapKeys[child];
+			i = child;
+		}
+		heapNodes[i] = node;
+		heapKeys[i] = key;
+		return top;
+	}
+	
+	private void pushResult(int entry, double key) {
+		int i = resultSize++;
+		while(i > 0) {
+			int parent = (i - 1) >> 1;
+			if(resultKeys[parent] >= key) break;
+			resultEntries[i] = resultEntries[parent];
+			resultKeys[i] = resultKeys[parent];
+			i = parent;
+		}
+		resultEntries[i] = entry;
+		resultKeys[i] = key;
+	}
+	
+	private void siftDownResult(int i, int size) {
+		int entry = resultEntries[i];
+		double key = resultKeys[i];
+		while(true) {
+			int child = i * 2 + 1;
+			if(child >= size) break;
+			if(child + 1 < size && resultKeys[child + 1] > resultKeys[child]) child++;
+			if(key >= resultKeys[child]) break;
+			resultEntries[i] = resultEntries[child];
+			resultKeys[i] = resultKeys[child];
+			i = child;
+		}
+		resultEntries[i] = entry;
+		resultKeys[i] = key;
+	}
+	
+	private int allocateEntry() {
+		if(freeEntry != NULL) {
+			int entry = freeEntry;
+			freeEntry = entryNexts[entry];
+			return entry;
+		}
+		if(entryEnd == entryXs.length) allocateEntries(entryEnd * 2);
+		return entryEnd++;
+	}
+	
+	private void checkHandle(int handle) {
+		if(handle < 0 || handle >= entryEnd || entryNodes[handle] == NULL) {
+			throw new Error("LooseQuadtree handle " + handle + " is not in use.");
+		}
+	}
+	
+	private void allocateNodes(int capacity) {
+		if(nodeXs == null) {
+			nodeParents = new int[capacity];
+			nodeChildren = new int[capacity];
+			nodeFirsts = new int[capacity];
+			nodeCounts = new int[capacity];
+			nodeXs = new double[capacity];
+			nodeYs = new double[capacity];
+			nodeHalfs = new double[capacity];
+			nodeExtents = new double[capacity];
+		} else {
+			nodeParents = Arrays.copyOf(nodeParents, capacity);
+			nodeChildren = Arrays.copyOf(nodeChildren, capacity);
+			nodeFirsts = Arrays.copyOf(nodeFirsts, capacity);
+			nodeCounts = Arrays.copyOf(nodeCounts, capacity);
+			nodeXs = Arrays.copyOf(nodeXs, capacity);
+			nodeYs = Arrays.copyOf(nodeYs, capacity);
+			nodeHalfs = Arrays.copyOf(nodeHalfs, capacity);
+			nodeExtents = Arrays.copyOf(nodeExtents, capacity);
+		}
+	}
+	
+	private void allocateEntries(int capacity) {
+		if(entryXs == null) {
+			entryXs = new double[capacity];
+			entryYs = new double[capacity];
+			entryHalfWidths = new double[capacity];
+			entryHalfHeights = new double[capacity];
+			entryNodes = new int[capacity];
+			entryNexts = new int[capacity];
+			entryPrevs = new int[capacity];
+		} else {
+			entryXs = Arrays.copyOf(entryXs, capacity);
+			entryYs = Arrays.copyOf(entryYs, capacity);
+			entryHalfWidths = Arrays.copyOf(entryHalfWidths, capacity);
+			entryHalfHeights = Arrays.copyOf(entryHalfHeights, capacity);
+			entryNodes = Arrays.copyOf(entryNodes, capacity);
+			entryNexts = Arrays.copyOf(entryNexts, capacity);
+			entryPrevs = Arrays.copyOf(entryPrevs, capacity);
+		}
+	}
+}
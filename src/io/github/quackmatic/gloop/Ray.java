@@ -14,6 +14,12 @@ public class Ray {
 		this.dir = new Vec2(Math.sin(theta), Math.cos(theta));
 	}
 	
+	public Ray set(Vec2 pos, Vec2 dir) {
+		this.pos.set(pos);
+		Vec2.unit(dir, this.dir);
+		return this;
+	}
+	
 	public Vec2 intersectLine(Vec2 l1, Vec2 l2) {
 		Ray.RayIntersection info = new Ray.RayIntersection();
 		return intersectLine(l1, l2, info) ? info.pos : null;
@@ -27,13 +33,12 @@ public class Ray {
 	            (yd * pos.x + xd * l1.y -
 	            yd * l1.x - xd * pos.y) / (d1 - d2);
 	        if(t >= 0) {
-	            Vec2 uv = dir.mul(t).add(pos);
+	            double ux = pos.x + dir.x * t, uy = pos.y + dir.y * t;
 	            double m = (xd != 0) ?
-	                (uv.x - l1.x) / xd :
-	                (uv.y - l1.y) / yd;
+	                (ux - l1.x) / xd :
+	                (uy - l1.y) / yd;
 	            if(m >= 0 && m <= 1) {
-	            	intersection.pos.x = uv.x;
-	            	intersection.pos.y = uv.y;
+	            	intersection.pos.set(ux, uy);
 	            	intersection.distance = t;
 	            	intersection.lineAlpha = m;
 	                return true;
@@ -43,6 +48,27 @@ public class Ray {
 	    return false;
 	}
 	
+	public boolean intersectAABB(AABB box, Ray.RayIntersection intersection) {
+		double t = intersectBounds(box.getMinX(), box.getMinY(), box.getMaxX(), box.getMaxY());
+		if(t == Double.POSITIVE_INFINITY) return false;
+		intersection.pos.set(pos.x + dir.x * t, pos.y + dir.y * t);
+		intersection.distance = t;
+		intersection.lineAlpha = 0;
+		return true;
+	}
+	
+	public boolean impactAABB(AABB box, AABB.Impact impact) {
+		return AABB.sweepBounds(
+				pos.x, pos.y, dir.x, dir.y,
+				box.getMinX(), box.getMinY(), box.getMaxX(), box.getMaxY(),
+				Double.POSITIVE_INFINITY, impact) != Double.POSITIVE_INFINITY;
+	}
+	
+	double intersectBounds(double minX, double minY, double maxX, double maxY) {
+		// the same slab test as impactAABB, without working out the normal
+		return AABB.sweepBounds(pos.x, pos.y, dir.x, dir.y, minX, minY, maxX, maxY, Double.POSITIVE_INFINITY, null);
+	}
+	
 	public static class RayIntersection {
 		public Vec2 pos;
 		public double distance, lineAlpha;
@@ -0,0 +1,488 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * A set of line segments, such as the walls of a level, that can be ray cast against in bulk.
+ * Segments are stored as parallel arrays of end points. After adding them, call {@link #build()}
+ * to bucket them into a uniform grid; each ray then walks the grid cell by cell and stops at
+ * the first cell containing a hit, so only nearby segments are tested.<br>
+ * Once built, casting is read-only, so {@link #castRays(Vec2Array, Vec2Array, double, double[], int[])}
+ * spreads large batches of rays across {@link GameWorkers}. Changing the segments requires
+ * building again.
+ * @author Quackmatic
+ */
+public class SegmentSoup {
+	/**
+	 * The number of rays each worker casts at a time.
+	 */
+	public static final int RAY_GRAIN = 64;
+	
+	/**
+	 * The most cells along each side of the grid. Larger cells are used if needed to stay under this.
+	 */
+	public static final int MAX_GRID_SIZE = 1024;
+	
+	/**
+	 * The x and y components of the start and end of each segment. Only the first
+	 * {@link #size()} entries are in use.
+	 */
+	public double[] x1s, y1s, x2s, y2s;
+	
+	private int size;
+	private boolean built;
+	
+	// the grid, with the segments of cell i at cellItems[cellStarts[i]] up to cellStarts[i + 1]
+	private double gridX, gridY, cellSize, inverseCellSize;
+	private int columns, rows;
+	private int[] cellStarts, cellItems;
+	
+	// scratch space for visibilityPolygon
+	private double[] angles, distances;
+	private int[] hits;
+	private Vec2Array directions;
+	
+	/**
+	 * Create a new, empty SegmentSoup.
+	 */
+	public SegmentSoup() {
+		this(64);
+	}
+	
+	/**
+	 * Create a new, empty SegmentSoup.
+	 * @param capacity The number of segments to make room for.
+	 */
+	public SegmentSoup(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.x1s = new double[capacity];
+		this.y1s = new double[capacity];
+		this.x2s = new double[capacity];
+		this.y2s = new double[capacity];
+		this.cellStarts = new int[2];
+		this.cellItems = new int[capacity];
+		this.angles = new double[64];
+		this.distances = new double[64];
+		this.hits = new int[64];
+		this.directions = new Vec2Array(64);
+	}
+	
+	/**
+	 * Gets the number of segments.
+	 * @return The number of segments.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Determine if the grid is up to date with the segments.
+	 * @return Whether the segments have been built since they last changed.
+	 */
+	public boolean isBuilt() {
+		return built;
+	}
+	
+	/**
+	 * Adds a segment.
+	 * @param x1 The x component of the start of the segment.
+	 * @param y1 The y component of the start of the segment.
+	 * @param x2 The x component of the end of the segment.
+	 * @param y2 The y component of the end of the segment.
+	 * @return The index of the new segment.
+	 */
+	public int add(double x1, double y1, double x2, double y2) {
+		if(size == x1s.length) {
+			int capacity = size * 2;
+			x1s = Arrays.copyOf(x1s, capacity);
+			y1s = Arrays.copyOf(y1s, capacity);
+			x2s = Arrays.copyOf(x2s, capacity);
+			y2s = Arrays.copyOf(y2s, capacity);
+		}
+		x1s[size] = x1;
+		y1s[size] = y1;
+		x2s[size] = x2;
+		y2s[size] = y2;
+		built = false;
+		return size++;
+	}
+	
+	/**
+	 * Adds a segment.
+	 * @param l1 The start of the segment.
+	 * @param l2 The end of the segment.
+	 * @return The index of the new segment.
+	 */
+	public int add(Vec2 l1, Vec2 l2) {
+		return add(l1.x, l1.y, l2.x, l2.y);
+	}
+	
+	/**
+	 * Adds the four edges of a box.
+	 * @param box The box.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SegmentSoup add(AABB box) {
+		double minX = box.getMinX(), minY = box.getMinY(), maxX = box.getMaxX(), maxY = box.getMaxY();
+		add(minX, minY, maxX, minY);
+		add(maxX, minY, maxX, maxY);
+		add(maxX, maxY, minX, maxY);
+		add(minX, maxY, minX, minY);
+		return this;
+	}
+	
+	/**
+	 * Removes every segment, keeping the storage for reuse.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SegmentSoup clear() {
+		size = 0;
+		built = false;
+		return this;
+	}
+	
+	/**
+	 * Builds the grid, choosing a cell size from the number and length of the segments.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SegmentSoup build() {
+		if(size == 0) return build(1.0);
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		double totalLength = 0;
+		for(int i = 0; i < size; i++) {
+			minX = Math.min(minX, Math.min(x1s[i], x2s[i]));
+			minY = Math.min(minY, Math.min(y1s[i], y2s[i]));
+			maxX = Math.max(maxX, Math.max(x1s[i], x2s[i]));
+			maxY = Math.max(maxY, Math.max(y1s[i], y2s[i]));
+			totalLength += Math.hypot(x2s[i] - x1s[i], y2s[i] - y1s[i]);
+		}
+		// aim for about one segment per cell, but don't cut segments up into many cells
+		double area = Math.max((maxX - minX) * (maxY - minY), 1e-9);
+		double cellSize = Math.max(Math.sqrt(area / size), totalLength / size);
+		return build(cellSize > 0 ? cellSize : 1.0);
+	}
+	
+	/**
+	 * Builds the grid.
+	 * @param cellSize The width and height of each grid cell.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SegmentSoup build(double cellSize) {
+		if(!(cellSize > 0)) throw new Error("SegmentSoup cellSize must be > 0.");
+		double minX = 0, minY = 0, maxX = 0, maxY = 0;
+		if(size > 0) {
+			minX = minY = Double.POSITIVE_INFINITY;
+			maxX = maxY = Double.NEGATIVE_INFINITY;
+			for(int i = 0; i < size; i++) {
+				minX = Math.min(minX, Math.min(x1s[i], x2s[i]));
+				minY = Math.min(minY, Math.min(y1s[i], y2s[i]));
+				maxX = Math.max(maxX, Math.max(x1s[i], x2s[i]));
+				maxY = Math.max(maxY, Math.max(y1s[i], y2s[i]));
+			}
+		}
+		cellSize = Math.max(cellSize, Math.max(maxX - minX, maxY - minY) / (MAX_GRID_SIZE - 1));
+		this.gridX = minX;
+		this.gridY = minY;
+		this.cellSize = cellSize;
+		this.inverseCellSize = 1.0 / cellSize;
+		this.columns = Math.min((int)((maxX - minX) * inverseCellSize) + 1, MAX_GRID_SIZE);
+		this.rows = Math.min((int)((maxY - minY) * inverseCellSize) + 1, MAX_GRID_SIZE);
+		
+		int cells = columns * rows;
+		if(cellStarts.length < cells + 1) {
+			cellStarts = new int[cells + 1];
+		} else {
+			Arrays.fill(cellStarts, 0, cells + 1, 0);
+		}
+		
+		// count the segments in each cell, sum those into where each cell ends, then
+		// fill each cell backwards so that its entry ends up where the cell starts
+		long total = 0;
+		for(int i = 0; i < size; i++) {
+			total += walkCells(i, false);
+		}
+		// each segment covers at most columns + rows - 1 cells, but enough of them can still overflow
+		if(total > Integer.MAX_VALUE - 8) {
+			built = false;
+			throw new Error("SegmentSoup has too many segments to build: they cover " + total + " cells.");
+		}
+		for(int cell = 1; cell < cells; cell++) {
+			cellStarts[cell] += cellStarts[cell - 1];
+		}
+		cellStarts[cells] = (int)total;
+		if(cellItems.length < total) {
+			cellItems = new int[(int)total];
+		}
+		for(int i = size - 1; i >= 0; i--) {
+			walkCells(i, true);
+		}
+		built = true;
+		return this;
+	}
+	
+	/**
+	 * Walks the grid cells that a segment passes through, the same way {@link #cast} walks a
+	 * ray, and either counts the segment in each cell or files it into each cell.
+	 * @param segment The index of the segment.
+	 * @param fill Whether to file the segment into the cells, rather than count it.
+	 * @return The number of cells walked.
+	 */
+	private int walkCells(int segment, boolean fill) {
+		double ox = x1s[segment], oy = y1s[segment];
+		double dx = x2s[segment] - ox, dy = y2s[segment] - oy;
+		int cx = column(ox), cy = row(oy);
+		int endX = column(x2s[segment]), endY = row(y2s[segment]);
+		int stepX = endX > cx ? 1 : (endX < cx ? -1 : 0), stepY = endY > cy ? 1 : (endY < cy ? -1 : 0);
+		double nextX = stepX == 0 ? Double.POSITIVE_INFINITY :
+				(gridX + (cx + (stepX > 0 ? 1 : 0)) * cellSize - ox) / dx;
+		double nextY = stepY == 0 ? Double.POSITIVE_INFINITY :
+				(gridY + (cy + (stepY > 0 ? 1 : 0)) * cellSize - oy) / dy;
+		double deltaX = stepX == 0 ? 0 : cellSize / Math.abs(dx);
+		double deltaY = stepY == 0 ? 0 : cellSize / Math.abs(dy);
+		
+		// step once per column and row crossed, so rounding can't make the walk miss the end cell
+		int steps = Math.abs(endX - cx) + Math.abs(endY - cy);
+		for(int step = 0; ; step++) {
+			int cell = cy * columns + cx;
+			if(fill) {
+				cellItems[--cellStarts[cell]] = segment;
+			} else {
+				cellStarts[cell]++;
+			}
+			if(step == steps) return steps + 1;
+			if(cy == endY || (cx != endX && nextX < nextY)) {
+				cx += stepX;
+				nextX += deltaX;
+			} else {
+				cy += stepY;
+				nextY += deltaY;
+			}
+		}
+	}
+	
+	private int column(double x) {
+		return Math.max(0, Math.min(columns - 1, (int)((x - gridX) * inverseCellSize)));
+	}
+	
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int)((y - gridY) * inverseCellSize)));
+	}
+	
+	/**
+	 * Finds the nearest segment hit by a ray.
+	 * @param ray The ray.
+	 * @param maxDistance How far along the ray to look.
+	 * @param intersection Where to store the hit, if there is one. Its <b>lineAlpha</b> is how far
+	 * along the segment the hit is.
+	 * @return The index of the nearest segment hit, or -1 if none was.
+	 */
+	public int castRay(Ray ray, double maxDistance, Ray.RayIntersection intersection) {
+		checkBuilt();
+		Vec2 pos = ray.pos, dir = ray.dir;
+		int segment = cast(pos.x, pos.y, dir.x, dir.y, maxDistance);
+		if(segment >= 0 && intersection != null) {
+			double t = hitDistance(pos.x, pos.y, dir.x, dir.y, segment);
+			intersection.pos.set(pos.x + dir.x * t, pos.y + dir.y * t);
+			intersection.distance = t;
+			intersection.lineAlpha = hitAlpha(pos.x, pos.y, dir.x, dir.y, segment);
+		}
+		return segment;
+	}
+	
+	/**
+	 * Finds the nearest segment hit by each of a batch of rays, spread across {@link GameWorkers}.
+	 * Distances are measured in lengths of each ray's direction, so with unit directions they are
+	 * true distances. Rays that hit nothing get a distance of <b>maxDistance</b> and a segment of -1.
+	 * @param origins The start of each ray.
+	 * @param directions The direction of each ray.
+	 * @param maxDistance How far along each ray to look.
+	 * @param distances The array to write the distance to each hit to, at least as long as <b>directions</b>.
+	 * @param segments The array to write the index of each segment hit to, or null.
+	 * @return Returns <b>distances</b>.
+	 */
+	public double[] castRays(Vec2Array origins, Vec2Array directions, double maxDistance, double[] distances, int[] segments) {
+		if(origins.size() < directions.size()) throw new Error("SegmentSoup needs an origin for every ray.");
+		return castRays(origins.xs, origins.ys, null, directions, maxDistance, distances, segments);
+	}
+	
+	/**
+	 * Finds the nearest segment hit by each of a batch of rays from the same point, spread across
+	 * {@link GameWorkers}.
+	 * @param origin The start of every ray.
+	 * @param directions The direction of each ray.
+	 * @param maxDistance How far along each ray to look.
+	 * @param distances The array to write the distance to each hit to, at least as long as <b>directions</b>.
+	 * @param segments The array to write the index of each segment hit to, or null.
+	 * @return Returns <b>distances</b>.
+	 * @see #castRays(Vec2Array, Vec2Array, double, double[], int[])
+	 */
+	public double[] castRays(Vec2 origin, Vec2Array directions, double maxDistance, double[] distances, int[] segments) {
+		return castRays(null, null, origin, directions, maxDistance, distances, segments);
+	}
+	
+	private double[] castRays(
+			final double[] originXs, final double[] originYs, final Vec2 origin,
+			Vec2Array directions, final double maxDistance,
+			final double[] distances, final int[] segments) {
+		checkBuilt();
+		final double[] directionXs = directions.xs, directionYs = directions.ys;
+		final double ox = origin == null ? 0 : origin.x, oy = origin == null ? 0 : origin.y;
+		GameWorkers.forRange(0, directions.size(), RAY_GRAIN, new GameWorkers.RangeTask() {
+			@Override
+			public void run(int start, int end) {
+				for(int i = start; i < end; i++) {
+					double x = origin == null ? originXs[i] : ox, y = origin == null ? originYs[i] : oy;
+					double dx = directionXs[i], dy = directionYs[i];
+					int segment = cast(x, y, dx, dy, maxDistance);
+					distances[i] = segment >= 0 ? hitDistance(x, y, dx, dy, segment) : maxDistance;
+					if(segments != null) segments[i] = segment;
+				}
+			}
+		});
+		return distances;
+	}
+	
+	/**
+	 * Finds the area visible from a point, as the polygon swept out by rays to every segment end
+	 * point within range, plus a circle of rays to bound the polygon where there are no segments.
+	 * Either side of each end point is also cast at, so that rays grazing a corner carry on to
+	 * whatever is behind it.<br>
+	 * This uses scratch space in this SegmentSoup, so only call it from one thread at a time.
+	 * @param origin The point to see from.
+	 * @param radius How far can be seen.
+	 * @param out The array to write the vertices of the polygon to, in order of angle. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public Vec2Array visibilityPolygon(Vec2 origin, double radius, Vec2Array out) {
+		final int boundaryRays = 64;
+		final double epsilon = 1e-5;
+		checkBuilt();
+		out.clear();
+		
+		int count = 0;
+		double radiusSquared = radius * radius;
+		for(int i = 0; i < size * 2; i++) {
+			double x = (i & 1) == 0 ? x1s[i >> 1] : x2s[i >> 1];
+			double y = (i & 1) == 0 ? y1s[i >> 1] : y2s[i >> 1];
+			double dx = x - origin.x, dy = y - origin.y;
+			if(dx * dx + dy * dy > radiusSquared) continue;
+			double angle = Math.atan2(dy, dx);
+			count = addAngle(count, angle - epsilon);
+			count = addAngle(count, angle);
+			count = addAngle(count, angle + epsilon);
+		}
+		for(int i = 0; i < boundaryRays; i++) {
+			count = addAngle(count, Math.PI * 2 * i / boundaryRays - Math.PI);
+		}
+		Arrays.sort(angles, 0, count);
+		
+		directions.clear().ensureCapacity(count);
+		for(int i = 0; i < count; i++) {
+			directions.push(Math.cos(angles[i]), Math.sin(angles[i]));
+		}
+		if(distances.length < count) {
+			distances = new double[angles.length];
+			hits = new int[angles.length];
+		}
+		castRays(origin, directions, radius, distances, hits);
+		
+		out.ensureCapacity(count);
+		for(int i = 0; i < count; i++) {
+			out.push(
+					origin.x + directions.xs[i] * distances[i],
+					origin.y + directions.ys[i] * distances[i]);
+		}
+		return out;
+	}
+	
+	private int addAngle(int count, double angle) {
+		if(count == angles.length) {
+			angles = Arrays.copyOf(angles, count * 2);
+		}
+		angles[count] = angle;
+		return count + 1;
+	}
+	
+	private int cast(double ox, double oy, double dx, double dy, double maxDistance) {
+		double best = Math.min(maxDistance, Double.MAX_VALUE);
+		int hit = -1;
+		if(size == 0) return hit;
+		
+		// clip the ray to the grid
+		double gridMaxX = gridX + columns * cellSize, gridMaxY = gridY + rows * cellSize;
+		double enter = 0, exit = best;
+		if(dx != 0) {
+			double t1 = (gridX - ox) / dx, t2 = (gridMaxX - ox) / dx;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		} else if(ox < gridX || ox > gridMaxX) {
+			return hit;
+		}
+		if(dy != 0) {
+			double t1 = (gridY - oy) / dy, t2 = (gridMaxY - oy) / dy;
+			enter = Math.max(enter, Math.min(t1, t2));
+			exit = Math.min(exit, Math.max(t1, t2));
+		} else if(oy < gridY || oy > gridMaxY) {
+			return hit;
+		}
+		if(enter > exit) return hit;
+		
+		// walk the cells the ray passes through, in order
+		int cx = column(ox + dx * enter), cy = row(oy + dy * enter);
+		int stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0), stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+		double nextX = stepX == 0 ? Double.POSITIVE_INFINITY :
+				(gridX + (cx + (stepX > 0 ? 1 : 0)) * cellSize - ox) / dx;
+		double nextY = stepY == 0 ? Double.POSITIVE_INFINITY :
+				(gridY + (cy + (stepY > 0 ? 1 : 0)) * cellSize - oy) / dy;
+		double deltaX = stepX == 0 ? 0 : cellSize / Math.abs(dx);
+		double deltaY = stepY == 0 ? 0 : cellSize / Math.abs(dy);
+		
+		while(true) {
+			int cell = cy * columns + cx;
+			for(int i = cellStarts[cell], end = cellStarts[cell + 1]; i < end; i++) {
+				int segment = cellItems[i];
+				double t = hitDistance(ox, oy, dx, dy, segment);
+				if(t <= best) {
+					best = t;
+					hit = segment;
+				}
+			}
+			double cellExit = Math.min(nextX, nextY);
+			// a hit inside this cell can't be beaten by anything in a later one
+			if(cellExit >= best || cellExit >= exit) break;
+			if(nextX < nextY) {
+				cx += stepX;
+				if(cx < 0 || cx >= columns) break;
+				nextX += deltaX;
+			} else {
+				cy += stepY;
+				if(cy < 0 || cy >= rows) break;
+				nextY += deltaY;
+			}
+		}
+		return hit;
+	}
+	
+	private double hitDistance(double ox, double oy, double dx, double dy, int segment) {
+		// solve origin + t * direction = start + u * (end - start)
+		double ex = x2s[segment] - x1s[segment], ey = y2s[segment] - y1s[segment];
+		double denominator = dx * ey - dy * ex;
+		if(denominator == 0) return Double.POSITIVE_INFINITY;
+		double ax = x1s[segment] - ox, ay = y1s[segment] - oy;
+		double t = (ax * ey - ay * ex) / denominator;
+		double u = (ax * dy - ay * dx) / denominator;
+		return t >= 0 && u >= 0 && u <= 1 ? t : Double.POSITIVE_INFINITY;
+	}
+	
+	private double hitAlpha(double ox, double oy, double dx, double dy, int segment) {
+		double ex = x2s[segment] - x1s[segment], ey = y2s[segment] - y1s[segment];
+		double denominator = dx * ey - dy * ex;
+		double ax = x1s[segment] - ox, ay = y1s[segment] - oy;
+		return (ax * dy - ay * dx) / denominator;
+	}
+	
+	private void checkBuilt() {
+		if(!built) throw new Error("SegmentSoup must be built after its segments change.");
+	}
+}
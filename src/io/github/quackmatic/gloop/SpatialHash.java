@@ -0,0 +1,436 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * A broadphase that buckets {@link AABB}s into the cells of a uniform grid, so that only
+ * boxes sharing a cell are tested against each other. Each box inserted is given an int
+ * handle; call {@link #move(int)} after changing the box to update its cells. Only the
+ * cells of the grid that hold boxes are stored, in a primitive hash table, so the grid is
+ * unbounded.<br>
+ * Results are written into {@link IntList}s supplied by the caller. Once the hash has
+ * warmed up, moving boxes and querying it does not allocate.<br>
+ * The cell size should be around the size of a typical box: much smaller and each box
+ * lands in many cells, much larger and each cell holds many boxes. Cell co-ordinates are
+ * clamped to +/-2<sup>30</sup>, so boxes further out than that share the cells at the edge of
+ * the grid. Boxes must have finite bounds, and can't cover more than 2<sup>20</sup> cells.
+ * @author Quackmatic
+ */
+public class SpatialHash {
+	private static final int MAX_CELL = 1 << 30;
+	private static final long MAX_BOX_CELLS = 1 << 20;
+	
+	private final double cellSize, inverseCellSize;
+	
+	// per-handle state
+	private AABB[] boxes;
+	private double[] minXs, minYs, maxXs, maxYs;
+	private int[] cellX0s, cellY0s, cellX1s, cellY1s;
+	private int[] stamps;
+	private int handleCount, count, stamp;
+	private final IntList freeHandles;
+	
+	// per-cell state, packed so that the first cellCount cells are in use
+	private final LongIntMap cellIndices;
+	private long[] cellKeys;
+	private int[][] cellItems;
+	private int[] cellSizes;
+	private int cellCount;
+	
+	/**
+	 * Create a new, empty SpatialHash.
+	 * @param cellSize The width and height of each cell of the grid.
+	 */
+	public SpatialHash(double cellSize) {
+		if(!(cellSize > 0)) throw new Error("SpatialHash cellSize must be > 0.");
+		this.cellSize = cellSize;
+		this.inverseCellSize = 1.0 / cellSize;
+		
+		this.boxes = new AABB[16];
+		this.minXs = new double[16];
+		this.minYs = new double[16];
+		this.maxXs = new double[16];
+		this.maxYs = new double[16];
+		this.cellX0s = new int[16];
+		this.cellY0s = new int[16];
+		this.cellX1s = new int[16];
+		this.cellY1s = new int[16];
+		this.stamps = new int[16];
+		this.freeHandles = new IntList();
+		
+		this.cellIndices = new LongIntMap(64);
+		this.cellKeys = new long[64];
+		this.cellItems = new int[64][];
+		this.cellSizes = new int[64];
+	}
+	
+	/**
+	 * Gets the width and height of each cell of the grid.
+	 * @return The cell size.
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+	
+	/**
+	 * Gets the number of boxes in this hash.
+	 * @return The number of boxes in this hash.
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Gets the number of grid cells holding at least one box.
+	 * @return The number of occupied cells.
+	 */
+	public int getCellCount() {
+		return cellCount;
+	}
+	
+	/**
+	 * Gets the box for a handle.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return The box.
+	 */
+	public AABB get(int handle) {
+		checkHandle(handle);
+		return boxes[handle];
+	}
+	
+	/**
+	 * Adds a box to this hash. The box is not copied; if it changes, call {@link #move(int)}.
+	 * @param box The box to add, which must have finite bounds.
+	 * @return A handle for the box, which may be reused once the box is removed.
+	 */
+	public int insert(AABB box) {
+		checkBounds(box);
+		int handle;
+		if(!freeHandles.isEmpty()) {
+			handle = freeHandles.pop();
+		} else {
+			if(handleCount == boxes.length) {
+				growHandles();
+			}
+			handle = handleCount++;
+		}
+		boxes[handle] = box;
+		count++;
+		readBounds(handle);
+		addToCells(handle);
+		return handle;
+	}
+	
+	/**
+	 * Updates the cells of a box after it has moved or changed size. The box must still have
+	 * finite bounds.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SpatialHash move(int handle) {
+		checkHandle(handle);
+		checkBounds(boxes[handle]);
+		int x0 = cellX0s[handle], y0 = cellY0s[handle], x1 = cellX1s[handle], y1 = cellY1s[handle];
+		readBounds(handle);
+		if(x0 != cellX0s[handle] || y0 != cellY0s[handle] || x1 != cellX1s[handle] || y1 != cellY1s[handle]) {
+			// most moves stay in the same cells, so only touch the grid when they don't,
+			// and then only the cells that were left or entered
+			int nx0 = cellX0s[handle], ny0 = cellY0s[handle], nx1 = cellX1s[handle], ny1 = cellY1s[handle];
+			for(int cy = y0; cy <= y1; cy++) {
+				for(int cx = x0; cx <= x1; cx++) {
+					if(cx < nx0 || cx > nx1 || cy < ny0 || cy > ny1) removeFromCell(handle, cx, cy);
+				}
+			}
+			for(int cy = ny0; cy <= ny1; cy++) {
+				for(int cx = nx0; cx <= nx1; cx++) {
+					if(cx < x0 || cx > x1 || cy < y0 || cy > y1) addToCell(handle, cx, cy);
+				}
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Updates the cells of every box in this hash.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SpatialHash moveAll() {
+		for(int handle = 0; handle < handleCount; handle++) {
+			if(boxes[handle] != null) move(handle);
+		}
+		return this;
+	}
+	
+	/**
+	 * Removes a box from this hash.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SpatialHash remove(int handle) {
+		checkHandle(handle);
+		removeFromCells(handle, cellX0s[handle], cellY0s[handle], cellX1s[handle], cellY1s[handle]);
+		boxes[handle] = null;
+		freeHandles.add(handle);
+		count--;
+		return this;
+	}
+	
+	/**
+	 * Removes every box from this hash.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SpatialHash clear() {
+		Arrays.fill(boxes, 0, handleCount, null);
+		Arrays.fill(cellSizes, 0, cellCount, 0);
+		handleCount = count = cellCount = 0;
+		freeHandles.clear();
+		cellIndices.clear();
+		return this;
+	}
+	
+	/**
+	 * Finds every pair of boxes in this hash that overlap. Each pair is reported once,
+	 * as two consecutive handles, the lower first.
+	 * @param out The list to write the pairs to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList findPairs(IntList out) {
+		out.clear();
+		for(int cell = 0; cell < cellCount; cell++) {
+			int[] items = cellItems[cell];
+			int size = cellSizes[cell];
+			if(size < 2) continue;
+			long key = cellKeys[cell];
+			int cellX = (int)(key >> 32), cellY = (int)key;
+			for(int i = 0; i < size - 1; i++) {
+				int a = items[i];
+				double minX = minXs[a], minY = minYs[a], maxX = maxXs[a], maxY = maxYs[a];
+				int ax0 = cellX0s[a], ay0 = cellY0s[a];
+				for(int j = i + 1; j < size; j++) {
+					int b = items[j];
+					// a pair sharing several cells is only reported from the cell at the
+					// top-left of where they overlap
+					if(Math.max(ax0, cellX0s[b]) != cellX || Math.max(ay0, cellY0s[b]) != cellY) continue;
+					if(minX < maxXs[b] && minXs[b] < maxX && minY < maxYs[b] && minYs[b] < maxY) {
+						if(a < b) out.add(a, b);
+						else out.add(b, a);
+					}
+				}
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds every box in this hash containing a point.
+	 * @param point The point.
+	 * @param out The list to write the handles to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryPoint(Vec2 point, IntList out) {
+		out.clear();
+		double x = point.x, y = point.y;
+		int cell = cellIndices.get(cellKey(toCell(x), toCell(y)), -1);
+		if(cell >= 0) {
+			int[] items = cellItems[cell];
+			for(int i = 0, size = cellSizes[cell]; i < size; i++) {
+				int handle = items[i];
+				if(minXs[handle] <= x && x <= maxXs[handle] && minYs[handle] <= y && y <= maxYs[handle]) {
+					out.add(handle);
+				}
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds every box in this hash overlapping a region.
+	 * @param region The region. This can be infinite, to find every box.
+	 * @param out The list to write the handles to. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList queryRegion(AABB region, IntList out) {
+		out.clear();
+		double minX = region.getMinX(), minY = region.getMinY();
+		double maxX = region.getMaxX(), maxY = region.getMaxY();
+		int x0 = toCell(minX), y0 = toCell(minY), x1 = toCell(maxX), y1 = toCell(maxY);
+		int stamp = nextStamp();
+		if((long)(x1 - x0 + 1) * (y1 - y0 + 1) > cellCount) {
+			// the region covers more of the grid than is occupied, so just look at the occupied cells
+			for(int cell = 0; cell < cellCount; cell++) {
+				long key = cellKeys[cell];
+				int cx = (int)(key >> 32), cy = (int)key;
+				if(cx >= x0 && cx <= x1 && cy >= y0 && cy <= y1) {
+					queryCell(cell, minX, minY, maxX, maxY, stamp, out);
+				}
+			}
+		} else {
+			for(int cy = y0; cy <= y1; cy++) {
+				for(int cx = x0; cx <= x1; cx++) {
+					int cell = cellIndices.get(cellKey(cx, cy), -1);
+					if(cell >= 0) {
+						queryCell(cell, minX, minY, maxX, maxY, stamp, out);
+					}
+				}
+			}
+		}
+		return out;
+	}
+	
+	private void queryCell(int cell, double minX, double minY, double maxX, double maxY, int stamp, IntList out) {
+		int[] items = cellItems[cell];
+		for(int i = 0, size = cellSizes[cell]; i < size; i++) {
+			int handle = items[i];
+			if(stamps[handle] == stamp) continue; // already seen in another cell
+			stamps[handle] = stamp;
+			if(minXs[handle] < maxX && minX < maxXs[handle] && minYs[handle] < maxY && minY < maxYs[handle]) {
+				out.add(handle);
+			}
+		}
+	}
+	
+	private int nextStamp() {
+		if(++stamp == 0) {
+			// wrapped around, so old stamps could be mistaken for new ones
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		return stamp;
+	}
+	
+	private int toCell(double coordinate) {
+		// clamped well inside the int range, so that loops up to the last cell can't overflow
+		double cell = Math.floor(coordinate * inverseCellSize);
+		return cell < -MAX_CELL ? -MAX_CELL : cell > MAX_CELL ? MAX_CELL : (int)cell;
+	}
+	
+	private static long cellKey(int cellX, int cellY) {
+		return ((long)cellX << 32) | (cellY & 0xffffffffL);
+	}
+	
+	private void checkBounds(AABB box) {
+		double minX = box.getMinX(), minY = box.getMinY(), maxX = box.getMaxX(), maxY = box.getMaxY();
+		// NaNs fail every comparison, so this rejects them as well as infinities
+		if(!(minX > Double.NEGATIVE_INFINITY && minY > Double.NEGATIVE_INFINITY &&
+				maxX < Double.POSITIVE_INFINITY && maxY < Double.POSITIVE_INFINITY)) {
+			throw new Error("SpatialHash box bounds must be finite.");
+		}
+		long cells = (long)(toCell(maxX) - toCell(minX) + 1) * (toCell(maxY) - toCell(minY) + 1);
+		if(cells > MAX_BOX_CELLS) {
+			throw new Error("SpatialHash box covers " + cells + " cells; use a larger cell size.");
+		}
+	}
+	
+	private void readBounds(int handle) {
+		AABB box = boxes[handle];
+		double halfWidth = box.width / 2, halfHeight = box.height / 2;
+		minXs[handle] = box.x - halfWidth;
+		minYs[handle] = box.y - halfHeight;
+		maxXs[handle] = box.x + halfWidth;
+		maxYs[handle] = box.y + halfHeight;
+		cellX0s[handle] = toCell(minXs[handle]);
+		cellY0s[handle] = toCell(minYs[handle]);
+		cellX1s[handle] = toCell(maxXs[handle]);
+		cellY1s[handle] = toCell(maxYs[handle]);
+	}
+	
+	private void addToCells(int handle) {
+		int x0 = cellX0s[handle], y0 = cellY0s[handle], x1 = cellX1s[handle], y1 = cellY1s[handle];
+		for(int cy = y0; cy <= y1; cy++) {
+			for(int cx = x0; cx <= x1; cx++) {
+				addToCell(handle, cx, cy);
+			}
+		}
+	}
+	
+	private void addToCell(int handle, int cellX, int cellY) {
+		long key = cellKey(cellX, cellY);
+		int cell = cellIndices.get(key, -1);
+		if(cell < 0) {
+			cell = openCell(key);
+		}
+		int size = cellSizes[cell];
+		if(size == cellItems[cell].length) {
+			cellItems[cell] = Arrays.copyOf(cellItems[cell], size * 2);
+		}
+		cellItems[cell][size] = handle;
+		cellSizes[cell] = size + 1;
+	}
+	
+	private void removeFromCells(int handle, int x0, int y0, int x1, int y1) {
+		for(int cy = y0; cy <= y1; cy++) {
+			for(int cx = x0; cx <= x1; cx++) {
+				removeFromCell(handle, cx, cy);
+			}
+		}
+	}
+	
+	private void removeFromCell(int handle, int cellX, int cellY) {
+		int cell = cellIndices.get(cellKey(cellX, cellY), -1);
+		if(cell < 0) return;
+		int[] items = cellItems[cell];
+		int size = cellSizes[cell];
+		for(int i = 0; i < size; i++) {
+			if(items[i] == handle) {
+				items[i] = items[--size];
+				break;
+			}
+		}
+		cellSizes[cell] = size;
+		if(size == 0) {
+			closeCell(cell);
+		}
+	}
+	
+	private int openCell(long key) {
+		if(cellCount == cellKeys.length) {
+			int capacity = cellCount * 2;
+			cellKeys = Arrays.copyOf(cellKeys, capacity);
+			cellItems = Arrays.copyOf(cellItems, capacity);
+			cellSizes = Arrays.copyOf(cellSizes, capacity);
+		}
+		int cell = cellCount++;
+		if(cellItems[cell] == null) {
+			cellItems[cell] = new int[4];
+		}
+		cellKeys[cell] = key;
+		cellSizes[cell] = 0;
+		cellIndices.put(key, cell);
+		return cell;
+	}
+	
+	private void closeCell(int cell) {
+		cellIndices.remove(cellKeys[cell], -1);
+		int last = --cellCount;
+		if(cell != last) {
+			// keep the used cells packed, swapping the empty item array to the end for reuse
+			int[] items = cellItems[cell];
+			cellKeys[cell] = cellKeys[last];
+			cellItems[cell] = cellItems[last];
+			cellSizes[cell] = cellSizes[last];
+			cellItems[last] = items;
+			cellSizes[last] = 0;
+			cellIndices.put(cellKeys[cell], cell);
+		}
+	}
+	
+	private void growHandles() {
+		int capacity = boxes.length * 2;
+		boxes = Arrays.copyOf(boxes, capacity);
+		minXs = Arrays.copyOf(minXs, capacity);
+		minYs = Arrays.copyOf(minYs, capacity);
+		maxXs = Arrays.copyOf(maxXs, capacity);
+		maxYs = Arrays.copyOf(maxYs, capacity);
+		cellX0s = Arrays.copyOf(cellX0s, capacity);
+		cellY0s = Arrays.copyOf(cellY0s, capacity);
+		cellX1s = Arrays.copyOf(cellX1s, capacity);
+		cellY1s = Arrays.copyOf(cellY1s, capacity);
+		stamps = Arrays.copyOf(stamps, capacity);
+	}
+	
+	private void checkHandle(int handle) {
+		if(handle < 0 || handle >= handleCount || boxes[handle] == null) {
+			throw new Error("SpatialHash handle " + handle + " is not in use.");
+		}
+	}
+}
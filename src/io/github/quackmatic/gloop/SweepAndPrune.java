@@ -0,0 +1,527 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * A broadphase that keeps the ends of every {@link AABB} sorted along the x and y axes, and the
+ * set of overlapping pairs up to date as they move. When boxes only move a little each tick the
+ * sorted order barely changes, so updating it with an insertion sort costs little more than
+ * reading the boxes, and pairs are only checked when their ends pass each other.<br>
+ * Pairs that start or stop overlapping are recorded as events, two handles at a time with the
+ * lower first, and kept until {@link #clearEvents()} is called.<br>
+ * Inserted boxes are sorted in lazily. When many are inserted at once, everything is sorted
+ * from scratch and the pairs found again with a single sweep, rather than sorting each box
+ * in one at a time.
+ * @author Quackmatic
+ */
+public class SweepAndPrune {
+	/**
+	 * The number of boxes inserted since the last update above which the broadphase is
+	 * rebuilt from scratch, rather than by sorting each box into place.
+	 */
+	public static final int REBUILD_THRESHOLD = 64;
+	
+	private AABB[] boxes;
+	private double[] minXs, minYs, maxXs, maxYs;
+	private int[] pairCounts, activeIndices;
+	private int handleCount, count, unsorted;
+	private final IntList freeHandles, active;
+	private final Axis x, y;
+	
+	private final LongIntMap pairIndices;
+	private final IntList pairs, beginEvents, endEvents;
+	private int[] pairMarks;
+	private int pairMark;
+	
+	/**
+	 * Create a new, empty SweepAndPrune.
+	 */
+	public SweepAndPrune() {
+		this.boxes = new AABB[16];
+		this.minXs = new double[16];
+		this.minYs = new double[16];
+		this.maxXs = new double[16];
+		this.maxYs = new double[16];
+		this.pairCounts = new int[16];
+		this.activeIndices = new int[16];
+		this.freeHandles = new IntList();
+		this.active = new IntList();
+		this.x = new Axis();
+		this.y = new Axis();
+		this.pairIndices = new LongIntMap(64);
+		this.pairs = new IntList(128);
+		this.beginEvents = new IntList();
+		this.endEvents = new IntList();
+		this.pairMarks = new int[64];
+	}
+	
+	/**
+	 * Gets the number of boxes.
+	 * @return The number of boxes.
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Gets the box for a handle.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return The box.
+	 */
+	public AABB get(int handle) {
+		checkHandle(handle);
+		return boxes[handle];
+	}
+	
+	/**
+	 * Adds a box. The box is not copied; if it changes, call {@link #move(int)} or {@link #update()}.
+	 * Any boxes it overlaps are recorded as begin events, once it has been sorted in by the next
+	 * call to any other method.
+	 * @param box The box to add.
+	 * @return A handle for the box, which may be reused once the box is removed.
+	 */
+	public int insert(AABB box) {
+		int handle;
+		if(!freeHandles.isEmpty()) {
+			handle = freeHandles.pop();
+		} else {
+			if(handleCount == boxes.length) {
+				growHandles();
+			}
+			handle = handleCount++;
+		}
+		boxes[handle] = box;
+		pairCounts[handle] = 0;
+		count++;
+		readBounds(handle);
+		// new ends go on the end of each axis, to be sorted into place later
+		x.append(handle, minXs[handle], maxXs[handle]);
+		y.append(handle, minYs[handle], maxYs[handle]);
+		unsorted++;
+		return handle;
+	}
+	
+	/**
+	 * Removes a box. Any boxes it overlapped are recorded as end events.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SweepAndPrune remove(int handle) {
+		checkHandle(handle);
+		flush();
+		// send its ends off past the end of each axis, dropping its overlaps on the way
+		minXs[handle] = minYs[handle] = maxXs[handle] = maxYs[handle] = Double.POSITIVE_INFINITY;
+		x.truncate(handle);
+		y.truncate(handle);
+		boxes[handle] = null;
+		freeHandles.add(handle);
+		count--;
+		return this;
+	}
+	
+	/**
+	 * Updates the broadphase after a single box has moved or changed size.
+	 * @param handle The handle returned by {@link #insert(AABB)}.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SweepAndPrune move(int handle) {
+		checkHandle(handle);
+		flush();
+		readBounds(handle);
+		x.move(handle, minXs[handle], maxXs[handle]);
+		y.move(handle, minYs[handle], maxYs[handle]);
+		return this;
+	}
+	
+	/**
+	 * Updates the broadphase after any number of boxes have moved or changed size.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SweepAndPrune update() {
+		for(int handle = 0; handle < handleCount; handle++) {
+			if(boxes[handle] == null) continue;
+			readBounds(handle);
+			x.setEnds(handle, minXs[handle], maxXs[handle]);
+			y.setEnds(handle, minYs[handle], maxYs[handle]);
+		}
+		if(unsorted > REBUILD_THRESHOLD) {
+			rebuild();
+		} else {
+			x.sort();
+			y.sort();
+		}
+		unsorted = 0;
+		return this;
+	}
+	
+	/**
+	 * Sorts in any boxes that have been inserted since the last update.
+	 */
+	private void flush() {
+		if(unsorted == 0) return;
+		if(unsorted > REBUILD_THRESHOLD) {
+			rebuild();
+		} else {
+			x.sortTail(unsorted * 2);
+			y.sortTail(unsorted * 2);
+		}
+		unsorted = 0;
+	}
+	
+	/**
+	 * Sorts both axes from scratch, then sweeps along the x axis to find every overlapping
+	 * pair, recording events for any pairs that have changed.
+	 */
+	private void rebuild() {
+		x.rebuild();
+		y.rebuild();
+		if(++pairMark == 0) {
+			Arrays.fill(pairMarks, 0);
+			pairMark = 1;
+		}
+		
+		active.clear();
+		Arrays.fill(activeIndices, 0, handleCount, -1);
+		for(int i = 0; i < x.size; i++) {
+			int code = x.codes[i], handle = code >> 1;
+			if((code & 1) == 0) {
+				// a max end: the box is no longer active
+				int index = activeIndices[handle];
+				if(index >= 0) {
+					int last = active.pop();
+					if(last != handle) {
+						active.set(index, last);
+						activeIndices[last] = index;
+					}
+					activeIndices[handle] = -1;
+				}
+				continue;
+			}
+			// a min end: the box may overlap any box that is still active
+			for(int j = 0, size = active.size(); j < size; j++) {
+				int other = active.get(j);
+				if(overlaps(handle, other)) {
+					int index = pairIndices.get(pairKey(handle, other), -1);
+					if(index < 0) index = addPair(handle, other);
+					pairMarks[index] = pairMark;
+				}
+			}
+			if(minXs[handle] < maxXs[handle]) {
+				activeIndices[handle] = active.size();
+				active.add(handle);
+			} else {
+				activeIndices[handle] = -1;
+			}
+		}
+		
+		// walk backwards so that pairs swapped into a hole have already been seen
+		for(int index = pairs.size() / 2 - 1; index >= 0; index--) {
+			if(pairMarks[index] != pairMark) {
+				removePair(index);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of pairs of boxes that currently overlap.
+	 * @return The number of overlapping pairs.
+	 */
+	public int getPairCount() {
+		flush();
+		return pairs.size() / 2;
+	}
+	
+	/**
+	 * Copies every pair of boxes that currently overlap.
+	 * @param out The list to write the pairs to, two handles at a time. It is cleared first.
+	 * @return Returns <b>out</b>.
+	 */
+	public IntList getPairs(IntList out) {
+		flush();
+		out.clear();
+		for(int i = 0, size = pairs.size(); i < size; i++) {
+			out.add(pairs.get(i));
+		}
+		return out;
+	}
+	
+	/**
+	 * Determine if two boxes currently overlap.
+	 * @param a The handle of one box.
+	 * @param b The handle of the other box.
+	 * @return Whether the boxes overlap.
+	 */
+	public boolean isOverlapping(int a, int b) {
+		flush();
+		return pairIndices.get(pairKey(a, b), -1) >= 0;
+	}
+	
+	/**
+	 * Gets the pairs of boxes that have started to overlap since events were last cleared.
+	 * @return The begin events, two handles at a time.
+	 */
+	public IntList getBeginEvents() {
+		flush();
+		return beginEvents;
+	}
+	
+	/**
+	 * Gets the pairs of boxes that have stopped overlapping since events were last cleared.
+	 * @return The end events, two handles at a time.
+	 */
+	public IntList getEndEvents() {
+		flush();
+		return endEvents;
+	}
+	
+	/**
+	 * Clears the begin and end events.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public SweepAndPrune clearEvents() {
+		flush();
+		beginEvents.clear();
+		endEvents.clear();
+		return this;
+	}
+	
+	private void readBounds(int handle) {
+		AABB box = boxes[handle];
+		double halfWidth = box.width / 2, halfHeight = box.height / 2;
+		minXs[handle] = box.x - halfWidth;
+		minYs[handle] = box.y - halfHeight;
+		maxXs[handle] = box.x + halfWidth;
+		maxYs[handle] = box.y + halfHeight;
+	}
+	
+	private static long pairKey(int a, int b) {
+		return a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+	}
+	
+	private boolean overlaps(int a, int b) {
+		return minXs[a] < maxXs[b] && minXs[b] < maxXs[a] &&
+				minYs[a] < maxYs[b] && minYs[b] < maxYs[a];
+	}
+	
+	/**
+	 * Called when the min end of one box moves below the max end of another on an axis,
+	 * which means the two may have started overlapping.
+	 */
+	private void mayBegin(int a, int b) {
+		if(overlaps(a, b) && pairIndices.get(pairKey(a, b), -1) < 0) {
+			addPair(a, b);
+		}
+	}
+	
+	/**
+	 * Called when the max end of one box moves below the min end of another on an axis,
+	 * which means the two can no longer be overlapping.
+	 */
+	private void mayEnd(int a, int b) {
+		// most of these are boxes passing each other that were never overlapping
+		if(pairCounts[a] == 0 || pairCounts[b] == 0) return;
+		int index = pairIndices.get(pairKey(a, b), -1);
+		if(index >= 0) {
+			removePair(index);
+		}
+	}
+	
+	private int addPair(int a, int b) {
+		int low = Math.min(a, b), high = Math.max(a, b);
+		int index = pairs.size() / 2;
+		pairIndices.put(pairKey(low, high), index);
+		pairs.add(low, high);
+		if(index == pairMarks.length) {
+			pairMarks = Arrays.copyOf(pairMarks, index * 2);
+		}
+		pairMarks[index] = pairMark;
+		pairCounts[low]++;
+		pairCounts[high]++;
+		beginEvents.add(low, high);
+		return index;
+	}
+	
+	private void removePair(int index) {
+		int low = pairs.get(index * 2), high = pairs.get(index * 2 + 1);
+		pairIndices.remove(pairKey(low, high), -1);
+		// swap the last pair into the hole
+		int lastHigh = pairs.pop(), lastLow = pairs.pop();
+		int last = pairs.size() / 2;
+		if(index < last) {
+			pairs.set(index * 2, lastLow).set(index * 2 + 1, lastHigh);
+			pairIndices.put(pairKey(lastLow, lastHigh), index);
+			pairMarks[index] = pairMarks[last];
+		}
+		pairCounts[low]--;
+		pairCounts[high]--;
+		endEvents.add(low, high);
+	}
+	
+	private void growHandles() {
+		int capacity = boxes.length * 2;
+		boxes = Arrays.copyOf(boxes, capacity);
+		minXs = Arrays.copyOf(minXs, capacity);
+		minYs = Arrays.copyOf(minYs, capacity);
+		maxXs = Arrays.copyOf(maxXs, capacity);
+		maxYs = Arrays.copyOf(maxYs, capacity);
+		pairCounts = Arrays.copyOf(pairCounts, capacity);
+		activeIndices = Arrays.copyOf(activeIndices, capacity);
+		x.growHandles(capacity);
+		y.growHandles(capacity);
+	}
+	
+	private void checkHandle(int handle) {
+		if(handle < 0 || handle >= handleCount || boxes[handle] == null) {
+			throw new Error("SweepAndPrune handle " + handle + " is not in use.");
+		}
+	}
+	
+	/**
+	 * The sorted ends of every box along one axis. Each end is stored as a code of its
+	 * box's handle shifted left by one, plus one for a min end; where two ends have the
+	 * same value, max ends sort first, so that touching boxes don't count as overlapping.
+	 */
+	private final class Axis {
+		private double[] values, valueBuffer;
+		private int[] codes, codeBuffer;
+		private int[] positions; // indexed by code
+		private int size;
+		
+		Axis() {
+			this.values = new double[32];
+			this.codes = new int[32];
+			this.positions = new int[32];
+			this.valueBuffer = new double[0];
+			this.codeBuffer = new int[0];
+		}
+		
+		void growHandles(int capacity) {
+			positions = Arrays.copyOf(positions, capacity * 2);
+		}
+		
+		void append(int handle, double min, double max) {
+			if(size + 2 > values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+				codes = Arrays.copyOf(codes, codes.length * 2);
+			}
+			place(size++, handle << 1, max);
+			place(size++, handle << 1 | 1, min);
+		}
+		
+		void truncate(int handle) {
+			values[positions[handle << 1]] = Double.POSITIVE_INFINITY;
+			values[positions[handle << 1 | 1]] = Double.POSITIVE_INFINITY;
+			siftUp(positions[handle << 1 | 1]);
+			siftUp(positions[handle << 1]);
+			size -= 2;
+		}
+		
+		void setEnds(int handle, double min, double max) {
+			values[positions[handle << 1 | 1]] = min;
+			values[positions[handle << 1]] = max;
+		}
+		
+		void move(int handle, double min, double max) {
+			setEnds(handle, min, max);
+			// the leading end goes first, so that it never blocks the other
+			int minCode = handle << 1 | 1, maxCode = handle << 1;
+			siftUp(positions[maxCode]);
+			siftUp(positions[minCode]);
+			siftDown(positions[minCode]);
+			siftDown(positions[maxCode]);
+		}
+		
+		void sort() {
+			sortTail(size);
+		}
+		
+		void sortTail(int count) {
+			for(int i = Math.max(size - count, 1); i < size; i++) {
+				siftDown(i);
+			}
+		}
+		
+		void rebuild() {
+			// bottom-up merge sort, without reporting any crossings
+			if(valueBuffer.length < size) {
+				valueBuffer = new double[values.length];
+				codeBuffer = new int[codes.length];
+			}
+			double[] fromValues = values, toValues = valueBuffer;
+			int[] fromCodes = codes, toCodes = codeBuffer;
+			for(int width = 1; width < size; width *= 2) {
+				for(int start = 0; start < size; start += width * 2) {
+					int middle = Math.min(start + width, size), end = Math.min(start + width * 2, size);
+					int i = start, j = middle;
+					for(int k = start; k < end; k++) {
+						if(i < middle && (j >= end || !before(fromValues[j], fromCodes[j], fromValues[i], fromCodes[i]))) {
+							toValues[k] = fromValues[i];
+							toCodes[k] = fromCodes[i++];
+						} else {
+							toValues[k] = fromValues[j];
+							toCodes[k] = fromCodes[j++];
+						}
+					}
+				}
+				double[] swapValues = fromValues;
+				fromValues = toValues;
+				toValues = swapValues;
+				int[] swapCodes = fromCodes;
+				fromCodes = toCodes;
+				toCodes = swapCodes;
+			}
+			valueBuffer = toValues;
+			codeBuffer = toCodes;
+			this.values = fromValues;
+			this.codes = fromCodes;
+			for(int i = 0; i < size; i++) {
+				positions[codes[i]] = i;
+			}
+		}
+		
+		private boolean before(int i, int j) {
+			return before(values[i], codes[i], values[j], codes[j]);
+		}
+		
+		private boolean before(double valueI, int codeI, double valueJ, int codeJ) {
+			return valueI < valueJ || (valueI == valueJ && (codeI & 1) < (codeJ & 1));
+		}
+		
+		private int siftDown(int i) {
+			while(i > 0 && before(i, i - 1)) {
+				swap(i - 1, i);
+				i--;
+			}
+			return i;
+		}
+		
+		private int siftUp(int i) {
+			while(i < size - 1 && before(i + 1, i)) {
+				swap(i, i + 1);
+				i++;
+			}
+			return i;
+		}
+		
+		private void swap(int i, int j) {
+			// the end at j is moving below the end at i
+			int codeI = codes[i], codeJ = codes[j];
+			if(((codeI ^ codeJ) & 1) != 0 && (codeI >> 1) != (codeJ >> 1)) {
+				if((codeJ & 1) != 0) {
+					mayBegin(codeJ >> 1, codeI >> 1);
+				} else {
+					mayEnd(codeJ >> 1, codeI >> 1);
+				}
+			}
+			double value = values[i];
+			place(i, codeJ, values[j]);
+			place(j, codeI, value);
+		}
+		
+		private void place(int i, int code, double value) {
+			codes[i] = code;
+			values[i] = value;
+			positions[code] = i;
+		}
+	}
+}
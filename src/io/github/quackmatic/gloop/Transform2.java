@@ -0,0 +1,168 @@
+package io.github.quackmatic.gloop;
+
+public class Transform2 {
+	// x' = m00 * x + m01 * y + m02
+	// y' = m10 * x + m11 * y + m12
+	public double m00, m01, m02;
+	public double m10, m11, m12;
+	
+	public Transform2() {
+		setIdentity();
+	}
+	
+	public Transform2(Transform2 t) {
+		set(t);
+	}
+	
+	public Transform2(double x, double y, double theta, double scaleX, double scaleY) {
+		set(x, y, theta, scaleX, scaleY);
+	}
+	
+	public static Transform2 mul(Transform2 t1, Transform2 t2, Transform2 out) {
+		// t2 is applied first, then t1
+		double m00 = t1.m00 * t2.m00 + t1.m01 * t2.m10;
+		double m01 = t1.m00 * t2.m01 + t1.m01 * t2.m11;
+		double m02 = t1.m00 * t2.m02 + t1.m01 * t2.m12 + t1.m02;
+		double m10 = t1.m10 * t2.m00 + t1.m11 * t2.m10;
+		double m11 = t1.m10 * t2.m01 + t1.m11 * t2.m11;
+		double m12 = t1.m10 * t2.m02 + t1.m11 * t2.m12 + t1.m12;
+		return out.set(m00, m01, m02, m10, m11, m12);
+	}
+	
+	public static Transform2 invert(Transform2 t, Transform2 out) {
+		double det = t.getDeterminant();
+		if(det == 0 || Double.isNaN(det)) throw new Error("Transform2 can't be inverted.");
+		double m00 = t.m11 / det, m01 = -t.m01 / det;
+		double m10 = -t.m10 / det, m11 = t.m00 / det;
+		return out.set(
+				m00, m01, -(m00 * t.m02 + m01 * t.m12),
+				m10, m11, -(m10 * t.m02 + m11 * t.m12));
+	}
+	
+	public static void flatten(Transform2[] locals, int[] parents, Transform2[] worlds, int count) {
+		// parents come before their children, so each parent's world transform is ready in time
+		for(int i = 0; i < count; i++) {
+			int parent = parents[i];
+			if(parent < 0) {
+				worlds[i].set(locals[i]);
+			} else if(parent < i) {
+				Transform2.mul(worlds[parent], locals[i], worlds[i]);
+			} else {
+				throw new Error("Transform2 " + i + " comes before its parent " + parent + ".");
+			}
+		}
+	}
+	
+	public Transform2 set(double m00, double m01, double m02, double m10, double m11, double m12) {
+		this.m00 = m00;
+		this.m01 = m01;
+		this.m02 = m02;
+		this.m10 = m10;
+		this.m11 = m11;
+		this.m12 = m12;
+		return this;
+	}
+	
+	public Transform2 set(Transform2 t) {
+		return set(t.m00, t.m01, t.m02, t.m10, t.m11, t.m12);
+	}
+	
+	public Transform2 set(double x, double y, double theta, double scaleX, double scaleY) {
+		// scale, then rotate, then translate
+		double sinTheta = Math.sin(theta), cosTheta = Math.cos(theta);
+		return set(
+				cosTheta * scaleX, -sinTheta * scaleY, x,
+				sinTheta * scaleX, cosTheta * scaleY, y);
+	}
+	
+	public Transform2 setIdentity() {
+		return set(1, 0, 0, 0, 1, 0);
+	}
+	
+	public Transform2 setTranslation(double x, double y) {
+		return set(1, 0, x, 0, 1, y);
+	}
+	
+	public Transform2 setRotation(double theta) {
+		return set(0, 0, theta, 1, 1);
+	}
+	
+	public Transform2 setRotation(double theta, Vec2 c) {
+		double sinTheta = Math.sin(theta), cosTheta = Math.cos(theta);
+		return set(
+				cosTheta, -sinTheta, c.x - cosTheta * c.x + sinTheta * c.y,
+				sinTheta, cosTheta, c.y - sinTheta * c.x - cosTheta * c.y);
+	}
+	
+	public Transform2 setScale(double scaleX, double scaleY) {
+		return set(scaleX, 0, 0, 0, scaleY, 0);
+	}
+	
+	public Transform2 mulLocal(Transform2 t) {
+		return Transform2.mul(this, t, this);
+	}
+	
+	public Transform2 preMulLocal(Transform2 t) {
+		return Transform2.mul(t, this, this);
+	}
+	
+	public Transform2 invertLocal() {
+		return Transform2.invert(this, this);
+	}
+	
+	public Transform2 mul(Transform2 t) {
+		return Transform2.mul(this, t, new Transform2());
+	}
+	
+	public Transform2 invert() {
+		return Transform2.invert(this, new Transform2());
+	}
+	
+	public double getDeterminant() {
+		return m00 * m11 - m01 * m10;
+	}
+	
+	public Vec2 getTranslation(Vec2 out) {
+		return out.set(m02, m12);
+	}
+	
+	public Vec2 apply(Vec2 in, Vec2 out) {
+		double x = in.x, y = in.y;
+		return out.set(m00 * x + m01 * y + m02, m10 * x + m11 * y + m12);
+	}
+	
+	public Vec2 applyVector(Vec2 in, Vec2 out) {
+		double x = in.x, y = in.y;
+		return out.set(m00 * x + m01 * y, m10 * x + m11 * y);
+	}
+	
+	public AABB apply(AABB in, AABB out) {
+		// the bounds of the transformed corners
+		double x = in.x, y = in.y, width = in.width, height = in.height;
+		return out.set(
+				m00 * x + m01 * y + m02, m10 * x + m11 * y + m12,
+				Math.abs(m00) * width + Math.abs(m01) * height,
+				Math.abs(m10) * width + Math.abs(m11) * height);
+	}
+	
+	public void apply(double[] xs, double[] ys, double[] outXs, double[] outYs, int count) {
+		double m00 = this.m00, m01 = this.m01, m02 = this.m02;
+		double m10 = this.m10, m11 = this.m11, m12 = this.m12;
+		for(int i = 0; i < count; i++) {
+			double x = xs[i], y = ys[i];
+			outXs[i] = m00 * x + m01 * y + m02;
+			outYs[i] = m10 * x + m11 * y + m12;
+		}
+	}
+	
+	public Vec2Array apply(Vec2Array in, Vec2Array out) {
+		int size = in.size();
+		out.setSize(size);
+		apply(in.xs, in.ys, out.xs, out.ys, size);
+		return out;
+	}
+	
+	public Transform2 clone() {
+		return new Transform2(this);
+	}
+}
@@ -1,5 +1,7 @@
 package io.github.quackmatic.gloop;
 
+import java.util.Arrays;
+
 public class Vec2 {
 	public double x, y;
 	
@@ -8,22 +10,46 @@ public class Vec2 {
 		this.y = y;
 	}
 	
+	public Vec2() {
+		this(0.0, 0.0);
+	}
+	
 	public static Vec2 add(Vec2 v1, Vec2 v2) {
 		return new Vec2(v1.x + v2.x, v1.y + v2.y);
 	}
 	
+	public static Vec2 add(Vec2 v1, Vec2 v2, Vec2 out) {
+		return out.set(v1.x + v2.x, v1.y + v2.y);
+	}
+	
 	public static Vec2 sub(Vec2 v1, Vec2 v2) {
 		return new Vec2(v1.x - v2.x, v1.y - v2.y);
 	}
 	
+	public static Vec2 sub(Vec2 v1, Vec2 v2, Vec2 out) {
+		return out.set(v1.x - v2.x, v1.y - v2.y);
+	}
+	
 	public static Vec2 mul(Vec2 v, double d) {
 		return new Vec2(v.x * d, v.y * d);
 	}
 	
+	public static Vec2 mul(Vec2 v, double d, Vec2 out) {
+		return out.set(v.x * d, v.y * d);
+	}
+	
+	public static Vec2 mulAdd(Vec2 v1, Vec2 v2, double d, Vec2 out) {
+		return out.set(v1.x + v2.x * d, v1.y + v2.y * d);
+	}
+	
 	public static Vec2 div(Vec2 v, double d) {
 		return new Vec2(v.x / d, v.y / d);
 	}
 	
+	public static Vec2 div(Vec2 v, double d, Vec2 out) {
+		return out.set(v.x / d, v.y / d);
+	}
+	
 	public static double cross(Vec2 v1, Vec2 v2) {
 		return v1.x * v2.y - v1.y * v2.x;
 	}
@@ -41,22 +67,31 @@ public class Vec2 {
 	}
 	
 	public static Vec2 unit(Vec2 v) {
+		return Vec2.unit(v, new Vec2());
+	}
+	
+	public static Vec2 unit(Vec2 v, Vec2 out) {
 		double mag = Vec2.mag(v);
-		if(mag == 0) return Vec2.zero();
-		else return Vec2.div(v, mag);
+		if(mag == 0) return out.set(0.0, 0.0);
+		else return Vec2.div(v, mag, out);
 	}
 	
 	public static Vec2 rotate(Vec2 v, double theta) {
-		double sinTheta = Math.sin(theta);
-		double cosTheta = Math.cos(theta);
-		
-		return new Vec2(
-				cosTheta * v.x - sinTheta * v.y,
-				sinTheta * v.x + cosTheta * v.y);
+		return new Vec2(v.x, v.y).rotateLocal(theta);
 	}
 	
 	public static Vec2 rotate(Vec2 v, double theta, Vec2 c) {
-		return v.sub(c).rotate(theta).add(c);
+		return Vec2.rotate(v, theta, c, new Vec2());
+	}
+	
+	public static Vec2 rotate(Vec2 v, double theta, Vec2 c, Vec2 out) {
+		double sinTheta = Math.sin(theta);
+		double cosTheta = Math.cos(theta);
+		double dx = v.x - c.x, dy = v.y - c.y;
+		
+		return out.set(
+				cosTheta * dx - sinTheta * dy + c.x,
+				sinTheta * dx + cosTheta * dy + c.y);
 	}
 	
 	public static Vec2 zero() {
@@ -77,19 +112,85 @@ public class Vec2 {
 	}
 	
 	public static Vec2 projectAlong(Vec2 v, Vec2 vp) {
-		return vp.unit().mul(v.mag() * v.angleTo(vp));
+		return Vec2.projectAlong(v, vp, new Vec2());
+	}
+	
+	public static Vec2 projectAlong(Vec2 v, Vec2 vp, Vec2 out) {
+		double magSquared = Vec2.magSquared(vp);
+		if(magSquared == 0) return out.set(0.0, 0.0);
+		else return Vec2.mul(vp, Vec2.dot(v, vp) / magSquared, out);
 	}
 	
 	public static Vec2 reflectOver(Vec2 v, Vec2 axis) {
-		return axis
-				.mul(
-					2.0 * Vec2.dot(axis, v) / 
-					Vec2.magSquared(axis))
-				.sub(v);
+		return Vec2.reflectOver(v, axis, new Vec2());
+	}
+	
+	public static Vec2 reflectOver(Vec2 v, Vec2 axis, Vec2 out) {
+		double d = 2.0 * Vec2.dot(axis, v) / Vec2.magSquared(axis);
+		return out.set(axis.x * d - v.x, axis.y * d - v.y);
 	}
 	
 	public static boolean clockwiseABC(Vec2 a, Vec2 b, Vec2 c) {
-		return b.sub(a).cross(c.sub(b)) < 0;
+		return (b.x - a.x) * (c.y - b.y) - (b.y - a.y) * (c.x - b.x) < 0;
+	}
+	
+	/**
+	 * Gets the scratch vector stack for the current thread.
+	 * @return The current thread's {@link Vec2.Scratch}.
+	 */
+	public static Vec2.Scratch scratch() {
+		return Scratch.LOCAL.get();
+	}
+	
+	public Vec2 set(double x, double y) {
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+	
+	public Vec2 set(Vec2 v) {
+		return set(v.x, v.y);
+	}
+	
+	public Vec2 addLocal(Vec2 v) {
+		return set(this.x + v.x, this.y + v.y);
+	}
+	
+	public Vec2 subLocal(Vec2 v) {
+		return set(this.x - v.x, this.y - v.y);
+	}
+	
+	public Vec2 mulLocal(double d) {
+		return set(this.x * d, this.y * d);
+	}
+	
+	public Vec2 divLocal(double d) {
+		return set(this.x / d, this.y / d);
+	}
+	
+	public Vec2 mulAdd(Vec2 v, double d) {
+		return set(this.x + v.x * d, this.y + v.y * d);
+	}
+	
+	public Vec2 negateLocal() {
+		return set(-this.x, -this.y);
+	}
+	
+	public Vec2 unitLocal() {
+		return Vec2.unit(this, this);
+	}
+	
+	public Vec2 rotateLocal(double theta) {
+		double sinTheta = Math.sin(theta);
+		double cosTheta = Math.cos(theta);
+		
+		return set(
+				cosTheta * this.x - sinTheta * this.y,
+				sinTheta * this.x + cosTheta * this.y);
+	}
+	
+	public Vec2 rotateLocal(double theta, Vec2 c) {
+		return Vec2.rotate(this, theta, c, this);
 	}
 	
 	public Vec2 add(Vec2 v) {
@@ -155,4 +256,82 @@ public class Vec2 {
 	public Vec2 clone() {
 		return new Vec2(this.x, this.y);
 	}
+	
+	/**
+	 * A per-thread stack of reusable vectors for temporary values in hot code.
+	 * Take a {@link #mark()} before pushing, and {@link #release(int)} it once the
+	 * temporaries are no longer needed - every vector pushed since the mark is then
+	 * reused by later pushes, so none of them may be kept or handed to other threads.
+	 * Once the stack has grown to its deepest point, pushing no longer allocates.
+	 */
+	public static final class Scratch {
+		private static final ThreadLocal<Scratch> LOCAL = new ThreadLocal<Scratch>() {
+			@Override
+			protected Scratch initialValue() {
+				return new Scratch();
+			}
+		};
+		
+		private Vec2[] vectors;
+		private int top;
+		
+		private Scratch() {
+			this.vectors = new Vec2[16];
+			for(int i = 0; i < vectors.length; i++) {
+				vectors[i] = new Vec2();
+			}
+			this.top = 0;
+		}
+		
+		/**
+		 * Gets the current depth of the stack, to later release back to.
+		 * @return The current depth of the stack.
+		 */
+		public int mark() {
+			return top;
+		}
+		
+		/**
+		 * Releases every vector pushed since the given mark was taken.
+		 * @param mark The depth returned by {@link #mark()}.
+		 */
+		public void release(int mark) {
+			if(mark < 0 || mark > top) throw new Error("Scratch mark " + mark + " is not on the stack.");
+			top = mark;
+		}
+		
+		/**
+		 * Pushes a vector onto the stack, set to zero.
+		 * @return A temporary vector.
+		 */
+		public Vec2 push() {
+			return push(0.0, 0.0);
+		}
+		
+		/**
+		 * Pushes a vector onto the stack.
+		 * @param x The x component of the vector.
+		 * @param y The y component of the vector.
+		 * @return A temporary vector.
+		 */
+		public Vec2 push(double x, double y) {
+			if(top == vectors.length) {
+				int size = vectors.length;
+				vectors = Arrays.copyOf(vectors, size * 2);
+				for(int i = size; i < vectors.length; i++) {
+					vectors[i] = new Vec2();
+				}
+			}
+			return vectors[top++].set(x, y);
+		}
+		
+		/**
+		 * Pushes a copy of a vector onto the stack.
+		 * @param v The vector to copy.
+		 * @return A temporary vector.
+		 */
+		public Vec2 push(Vec2 v) {
+			return push(v.x, v.y);
+		}
+	}
 }
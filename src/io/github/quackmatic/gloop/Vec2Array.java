@@ -0,0 +1,384 @@
+package io.github.quackmatic.gloop;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of 2D vectors, stored as parallel arrays of x and y components rather than
+ * as {@link Vec2} objects. The bulk operations are plain counted loops over the component arrays,
+ * which the JIT compiler can unroll and vectorise.
+ * @author Quackmatic
+ */
+public class Vec2Array {
+	/**
+	 * The x components. Only the first {@link #size()} entries are in use.
+	 */
+	public double[] xs;
+	
+	/**
+	 * The y components. Only the first {@link #size()} entries are in use.
+	 */
+	public double[] ys;
+	
+	private int size;
+	
+	/**
+	 * Create a new, empty Vec2Array.
+	 */
+	public Vec2Array() {
+		this(16);
+	}
+	
+	/**
+	 * Create a new, empty Vec2Array.
+	 * @param capacity The number of vectors to make room for.
+	 */
+	public Vec2Array(int capacity) {
+		this.xs = new double[Math.max(capacity, 1)];
+		this.ys = new double[Math.max(capacity, 1)];
+		this.size = 0;
+	}
+	
+	/**
+	 * Create a new Vec2Array holding copies of the given vectors.
+	 * @param vectors The vectors to copy.
+	 * @return A new Vec2Array.
+	 */
+	public static Vec2Array of(Vec2... vectors) {
+		Vec2Array array = new Vec2Array(vectors.length);
+		for(Vec2 v : vectors) {
+			array.push(v);
+		}
+		return array;
+	}
+	
+	/**
+	 * Gets the number of vectors in this array.
+	 * @return The number of vectors in this array.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Sets the number of vectors in this array. New vectors are zero.
+	 * @param size The new number of vectors, which cannot be negative.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array setSize(int size) {
+		if(size < 0) throw new Error("Vec2Array size cannot be negative.");
+		ensureCapacity(size);
+		if(size > this.size) {
+			Arrays.fill(xs, this.size, size, 0.0);
+			Arrays.fill(ys, this.size, size, 0.0);
+		}
+		this.size = size;
+		return this;
+	}
+	
+	/**
+	 * Makes sure this array can hold the given number of vectors without growing.
+	 * @param capacity The number of vectors to make room for.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array ensureCapacity(int capacity) {
+		if(capacity > xs.length) {
+			int newCapacity = Math.max(capacity, xs.length * 2);
+			xs = Arrays.copyOf(xs, newCapacity);
+			ys = Arrays.copyOf(ys, newCapacity);
+		}
+		return this;
+	}
+	
+	/**
+	 * Removes every vector, keeping the storage for reuse.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array clear() {
+		size = 0;
+		return this;
+	}
+	
+	/**
+	 * Adds a vector to the end of this array.
+	 * @param x The x component.
+	 * @param y The y component.
+	 * @return The index of the new vector.
+	 */
+	public int push(double x, double y) {
+		if(size == xs.length) {
+			ensureCapacity(size + 1);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		return size++;
+	}
+	
+	/**
+	 * Adds a copy of a vector to the end of this array.
+	 * @param v The vector to copy.
+	 * @return The index of the new vector.
+	 */
+	public int push(Vec2 v) {
+		return push(v.x, v.y);
+	}
+	
+	/**
+	 * Copies a vector out of this array.
+	 * @param i The index of the vector.
+	 * @param out The vector to copy into.
+	 * @return Returns <b>out</b>.
+	 */
+	public Vec2 get(int i, Vec2 out) {
+		checkIndex(i);
+		return out.set(xs[i], ys[i]);
+	}
+	
+	/**
+	 * Copies a vector out of this array into a new {@link Vec2}.
+	 * @param i The index of the vector.
+	 * @return A new vector.
+	 */
+	public Vec2 get(int i) {
+		return get(i, new Vec2());
+	}
+	
+	/**
+	 * Sets a vector in this array.
+	 * @param i The index of the vector.
+	 * @param x The x component.
+	 * @param y The y component.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array set(int i, double x, double y) {
+		checkIndex(i);
+		xs[i] = x;
+		ys[i] = y;
+		return this;
+	}
+	
+	/**
+	 * Sets a vector in this array.
+	 * @param i The index of the vector.
+	 * @param v The vector to copy.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array set(int i, Vec2 v) {
+		return set(i, v.x, v.y);
+	}
+	
+	/**
+	 * Copies the contents of another array into this one.
+	 * @param other The array to copy.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array copyFrom(Vec2Array other) {
+		ensureCapacity(other.size);
+		System.arraycopy(other.xs, 0, xs, 0, other.size);
+		System.arraycopy(other.ys, 0, ys, 0, other.size);
+		size = other.size;
+		return this;
+	}
+	
+	/**
+	 * Copies every vector in this array into the matching {@link Vec2} objects.
+	 * @param out The vectors to copy into, at least {@link #size()} long.
+	 * @return Returns <b>out</b>.
+	 */
+	public Vec2[] copyTo(Vec2[] out) {
+		for(int i = 0; i < size; i++) {
+			out[i].set(xs[i], ys[i]);
+		}
+		return out;
+	}
+	
+	/**
+	 * Adds a vector to every vector in this array.
+	 * @param v The vector to add.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array add(Vec2 v) {
+		double vx = v.x, vy = v.y;
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			xs[i] += vx;
+			ys[i] += vy;
+		}
+		return this;
+	}
+	
+	/**
+	 * Adds each vector in another array to the matching vector in this array.
+	 * @param other The vectors to add, at least {@link #size()} long.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array add(Vec2Array other) {
+		return mulAdd(other, 1.0);
+	}
+	
+	/**
+	 * Subtracts each vector in another array from the matching vector in this array.
+	 * @param other The vectors to subtract, at least {@link #size()} long.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array sub(Vec2Array other) {
+		return mulAdd(other, -1.0);
+	}
+	
+	/**
+	 * Multiplies every vector in this array by a scalar.
+	 * @param d The scalar.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array scale(double d) {
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			xs[i] *= d;
+			ys[i] *= d;
+		}
+		return this;
+	}
+	
+	/**
+	 * Adds each vector in another array, multiplied by a scalar, to the matching vector in
+	 * this array. With positions in this array and velocities in the other, this integrates
+	 * every position over a time step of <b>d</b>.
+	 * @param other The vectors to add, at least {@link #size()} long.
+	 * @param d The scalar to multiply them by.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array mulAdd(Vec2Array other, double d) {
+		checkSize(other);
+		double[] xs = this.xs, ys = this.ys, oxs = other.xs, oys = other.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			xs[i] += oxs[i] * d;
+		}
+		for(int i = 0, n = size; i < n; i++) {
+			ys[i] += oys[i] * d;
+		}
+		return this;
+	}
+	
+	/**
+	 * Rotates every vector in this array about the origin.
+	 * @param theta The angle to rotate by, in radians.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array rotate(double theta) {
+		double sinTheta = Math.sin(theta);
+		double cosTheta = Math.cos(theta);
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			double x = xs[i], y = ys[i];
+			xs[i] = cosTheta * x - sinTheta * y;
+			ys[i] = sinTheta * x + cosTheta * y;
+		}
+		return this;
+	}
+	
+	/**
+	 * Rotates every vector in this array about a point.
+	 * @param theta The angle to rotate by, in radians.
+	 * @param c The point to rotate about.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array rotate(double theta, Vec2 c) {
+		double sinTheta = Math.sin(theta);
+		double cosTheta = Math.cos(theta);
+		double cx = c.x, cy = c.y;
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			double x = xs[i] - cx, y = ys[i] - cy;
+			xs[i] = cosTheta * x - sinTheta * y + cx;
+			ys[i] = sinTheta * x + cosTheta * y + cy;
+		}
+		return this;
+	}
+	
+	/**
+	 * Scales every vector in this array to unit length. Zero vectors are left as they are.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array normalize() {
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			double x = xs[i], y = ys[i];
+			double magSquared = x * x + y * y;
+			double d = magSquared > 0 ? 1.0 / Math.sqrt(magSquared) : 1.0;
+			xs[i] = x * d;
+			ys[i] = y * d;
+		}
+		return this;
+	}
+	
+	/**
+	 * Finds the dot product of every vector in this array with a vector.
+	 * @param v The other vector.
+	 * @param out The array to write the results to, at least {@link #size()} long.
+	 * @return Returns <b>out</b>.
+	 */
+	public double[] dot(Vec2 v, double[] out) {
+		double vx = v.x, vy = v.y;
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			out[i] = xs[i] * vx + ys[i] * vy;
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds the dot product of every vector in this array with the matching vector in another.
+	 * @param other The other vectors, at least {@link #size()} long.
+	 * @param out The array to write the results to, at least {@link #size()} long.
+	 * @return Returns <b>out</b>.
+	 */
+	public double[] dot(Vec2Array other, double[] out) {
+		checkSize(other);
+		double[] xs = this.xs, ys = this.ys, oxs = other.xs, oys = other.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			out[i] = xs[i] * oxs[i] + ys[i] * oys[i];
+		}
+		return out;
+	}
+	
+	/**
+	 * Finds the distance from every vector in this array to a point.
+	 * @param p The point.
+	 * @param out The array to write the results to, at least {@link #size()} long.
+	 * @return Returns <b>out</b>.
+	 */
+	public double[] distanceTo(Vec2 p, double[] out) {
+		double px = p.x, py = p.y;
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			double dx = xs[i] - px, dy = ys[i] - py;
+			out[i] = Math.sqrt(dx * dx + dy * dy);
+		}
+		return out;
+	}
+	
+	/**
+	 * Moves every vector in this array to the nearest point inside a box.
+	 * @param bounds The box to clamp to.
+	 * @return Returns this, so you can chain these calls.
+	 */
+	public Vec2Array clamp(AABB bounds) {
+		double minX = bounds.getMinX(), maxX = bounds.getMaxX();
+		double minY = bounds.getMinY(), maxY = bounds.getMaxY();
+		double[] xs = this.xs, ys = this.ys;
+		for(int i = 0, n = size; i < n; i++) {
+			xs[i] = Math.min(Math.max(xs[i], minX), maxX);
+		}
+		for(int i = 0, n = size; i < n; i++) {
+			ys[i] = Math.min(Math.max(ys[i], minY), maxY);
+		}
+		return this;
+	}
+	
+	private void checkIndex(int i) {
+		if(i < 0 || i >= size) throw new Error("Vec2Array index " + i + " out of bounds for size " + size + ".");
+	}
+	
+	private void checkSize(Vec2Array other) {
+		if(other.size < size) throw new Error("Vec2Array of size " + other.size + " is smaller than " + size + ".");
+	}
+}
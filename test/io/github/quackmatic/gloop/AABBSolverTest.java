@@ -0,0 +1,171 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link AABBSolver} against a plain serial solver that relaxes every contact in the
+ * order of the pair list, with no islands or threads, and that its contacts and islands match
+ * a brute-force search.
+ * @author Quackmatic
+ */
+public class AABBSolverTest {
+	private static final double EPSILON = 1e-9;
+	
+	@Test
+	public void matchesSerialSolver() {
+		Random random = new Random(21);
+		for(int round = 0; round < 20; round++) {
+			int count = 100 + random.nextInt(200);
+			AABB[] boxes = new AABB[count], expected = new AABB[count];
+			double[] inverseMasses = new double[count];
+			for(int i = 0; i < count; i++) {
+				boxes[i] = new AABB(random.nextDouble() * 60, random.nextDouble() * 60,
+						1 + random.nextDouble() * 4, 1 + random.nextDouble() * 4);
+				expected[i] = new AABB(boxes[i].x, boxes[i].y, boxes[i].width, boxes[i].height);
+				// some static boxes, and some heavier ones
+				inverseMasses[i] = random.nextInt(8) == 0 ? 0 : 1.0 / (1 + random.nextInt(3));
+			}
+			IntList pairs = bruteForcePairs(boxes);
+			boolean weighted = round % 2 == 0;
+			double slop = round % 3 == 0 ? 0.05 : 0;
+			double relaxation = round % 4 == 0 ? 0.5 : 1;
+			AABBSolver solver = new AABBSolver().setIterations(1 + round % 6).setSlop(slop).setRelaxation(relaxation);
+			
+			int contacts = solver.solve(boxes, weighted ? inverseMasses : null, pairs);
+			int expectedContacts = serialSolve(expected, weighted ? inverseMasses : null, pairs,
+					1 + round % 6, relaxation, slop);
+			assertEquals(expectedContacts, contacts);
+			assertEquals(expectedContacts, solver.getContactCount());
+			assertEquals(countIslands(boxes.length, solver, weighted ? inverseMasses : null), solver.getIslandCount());
+			for(int i = 0; i < count; i++) {
+				assertEquals(expected[i].x, boxes[i].x, EPSILON);
+				assertEquals(expected[i].y, boxes[i].y, EPSILON);
+			}
+		}
+	}
+	
+	@Test
+	public void separatesAPairAlongTheLeastOverlap() {
+		AABB[] boxes = { new AABB(0, 0, 2, 2), new AABB(1.5, 0.5, 2, 2) };
+		IntList pairs = new IntList().add(0, 1);
+		AABBSolver solver = new AABBSolver();
+		assertEquals(1, solver.solve(boxes, null, pairs));
+		assertEquals(0.5, solver.getDepth(0), EPSILON);
+		Vec2 normal = solver.getNormal(0, new Vec2());
+		assertEquals(1, normal.x, EPSILON);
+		assertEquals(0, normal.y, EPSILON);
+		assertEquals(-0.25, boxes[0].x, EPSILON);
+		assertEquals(1.75, boxes[1].x, EPSILON);
+		assertFalse(boxes[0].colliding(boxes[1]));
+	}
+	
+	@Test
+	public void staticBoxesDontMoveOrJoinIslands() {
+		// two boxes resting on the same floor, apart from each other
+		AABB[] boxes = { new AABB(0, 0, 100, 2), new AABB(-20, 1.5, 2, 2), new AABB(20, 1.5, 2, 2) };
+		double[] inverseMasses = { 0, 1, 1 };
+		IntList pairs = new IntList().add(0, 1).add(0, 2);
+		AABBSolver solver = new AABBSolver();
+		assertEquals(2, solver.solve(boxes, inverseMasses, pairs));
+		assertEquals(2, solver.getIslandCount());
+		assertEquals(0, boxes[0].y, EPSILON);
+		assertEquals(2, boxes[1].y, EPSILON);
+		assertEquals(2, boxes[2].y, EPSILON);
+	}
+	
+	private static IntList bruteForcePairs(AABB[] boxes) {
+		IntList pairs = new IntList();
+		for(int i = 0; i < boxes.length; i++) {
+			for(int j = i + 1; j < boxes.length; j++) {
+				// include some pairs that don't overlap, as a loose broadphase would
+				if(boxes[i].getOverlapX(boxes[j]) > -1 && boxes[i].getOverlapY(boxes[j]) > -1) {
+					pairs.add(i, j);
+				}
+			}
+		}
+		return pairs;
+	}
+	
+	/**
+	 * Solves the contacts one after another in the order of the pairs, which is what the
+	 * islands should add up to.
+	 */
+	private static int serialSolve(AABB[] boxes, double[] inverseMasses, IntList pairs,
+			int iterations, double relaxation, double slop) {
+		int count = 0;
+		int[] as = new int[pairs.size() / 2], bs = new int[as.length];
+		double[] nxs = new double[as.length], nys = new double[as.length], extents = new double[as.length];
+		for(int i = 0; i + 1 < pairs.size(); i += 2) {
+			int a = pairs.get(i), b = pairs.get(i + 1);
+			if(inverseMasses != null && inverseMasses[a] == 0 && inverseMasses[b] == 0) continue;
+			double overlapX = boxes[a].getOverlapX(boxes[b]), overlapY = boxes[a].getOverlapY(boxes[b]);
+			if(overlapX <= 0 || overlapY <= 0) continue;
+			as[count] = a;
+			bs[count] = b;
+			if(overlapX < overlapY) {
+				nxs[count] = boxes[a].x < boxes[b].x ? 1 : -1;
+				extents[count] = (boxes[a].width + boxes[b].width) / 2;
+			} else {
+				nys[count] = boxes[a].y < boxes[b].y ? 1 : -1;
+				extents[count] = (boxes[a].height + boxes[b].height) / 2;
+			}
+			count++;
+		}
+		for(int iteration = 0; iteration < iterations; iteration++) {
+			for(int contact = 0; contact < count; contact++) {
+				AABB a = boxes[as[contact]], b = boxes[bs[contact]];
+				double nx = nxs[contact], ny = nys[contact];
+				double overlap = extents[contact] - ((b.x - a.x) * nx + (b.y - a.y) * ny) - slop;
+				if(overlap <= 0) continue;
+				double inverseA = inverseMasses == null ? 1 : inverseMasses[as[contact]];
+				double inverseB = inverseMasses == null ? 1 : inverseMasses[bs[contact]];
+				double correction = overlap * relaxation / (inverseA + inverseB);
+				a.x -= nx * correction * inverseA;
+				a.y -= ny * correction * inverseA;
+				b.x += nx * correction * inverseB;
+				b.y += ny * correction * inverseB;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Counts the groups of moving boxes joined by the solver's contacts, where static boxes
+	 * don't join anything.
+	 */
+	private static int countIslands(int count, AABBSolver solver, double[] inverseMasses) {
+		int[] groups = new int[count];
+		for(int i = 0; i < count; i++) {
+			groups[i] = i;
+		}
+		boolean[] used = new boolean[count];
+		for(int contact = 0; contact < solver.getContactCount(); contact++) {
+			int a = solver.getContactA(contact), b = solver.getContactB(contact);
+			boolean staticA = inverseMasses != null && inverseMasses[a] == 0;
+			boolean staticB = inverseMasses != null && inverseMasses[b] == 0;
+			if(!staticA) used[a] = true;
+			if(!staticB) used[b] = true;
+			if(!staticA && !staticB) {
+				// relabel one group as the other
+				int from = groups[b], to = groups[a];
+				for(int i = 0; i < count; i++) {
+					if(groups[i] == from) groups[i] = to;
+				}
+			}
+		}
+		int islands = 0;
+		boolean[] seen = new boolean[count];
+		for(int i = 0; i < count; i++) {
+			if(used[i] && !seen[groups[i]]) {
+				seen[groups[i]] = true;
+				islands++;
+			}
+		}
+		return islands;
+	}
+}
@@ -0,0 +1,55 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link AABBSweeper} stops fast boxes at thin walls, and lets boxes slide along
+ * surfaces they are only touching.
+ * @author Quackmatic
+ */
+public class AABBSweeperTest {
+	private static final double EPSILON = 1e-9;
+	
+	@Test
+	public void fastBoxStopsAtAThinWall() {
+		SpatialHash world = new SpatialHash(4);
+		int wall = world.insert(new AABB(50, 0, 0.1, 10));
+		AABB box = new AABB(0, 0, 1, 1);
+		int mover = world.insert(box);
+		IntList movers = new IntList().add(mover);
+		Vec2Array velocities = new Vec2Array(1);
+		// in one tick, this would jump from well before the wall to well past it
+		velocities.push(1000, 0);
+		AABBSweeper sweeper = new AABBSweeper(world);
+		assertEquals(1, sweeper.sweep(movers, velocities, 1.0 / 10));
+		assertEquals(wall, sweeper.getHit(0));
+		assertEquals((50 - 0.55) / 100, sweeper.getTime(0), EPSILON);
+		Vec2 normal = sweeper.getNormal(0, new Vec2());
+		assertEquals(-1, normal.x, EPSILON);
+		assertEquals(0, normal.y, EPSILON);
+		assertEquals(50 - 0.55, box.x, EPSILON);
+		assertEquals(0, velocities.xs[0], EPSILON);
+		
+		// pressed up against the wall, it can't get through on the next tick either
+		velocities.xs[0] = 1000;
+		assertEquals(1, sweeper.sweep(movers, velocities, 1.0 / 10));
+		assertEquals(50 - 0.55, box.x, EPSILON);
+	}
+	
+	@Test
+	public void boxSlidesAlongAFloorItIsTouching() {
+		SpatialHash world = new SpatialHash(4);
+		world.insert(new AABB(0, -1, 100, 2));
+		AABB box = new AABB(0, 0.5, 1, 1);
+		int mover = world.insert(box);
+		Vec2Array velocities = new Vec2Array(1);
+		velocities.push(10, 0);
+		AABBSweeper sweeper = new AABBSweeper(world);
+		// touching the floor isn't a hit, so it moves the whole way
+		assertEquals(0, sweeper.sweep(new IntList().add(mover), velocities, 1));
+		assertEquals(10, box.x, EPSILON);
+		assertEquals(0.5, box.y, EPSILON);
+	}
+}
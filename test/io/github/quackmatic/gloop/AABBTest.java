@@ -0,0 +1,97 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Pins down how {@link AABB} treats its fields: x and y are the centre, and width and height
+ * are the full extents. Before this was made consistent, <i>colliding</i> and <i>deintersect</i>
+ * compared the difference of the sizes and OR'd the two axes; the cases which changed
+ * are marked as such.
+ * @author Quackmatic
+ */
+public class AABBTest {
+	private static final double EPSILON = 1e-9;
+	
+	@Test
+	public void overlappingBoxesCollide() {
+		// same result before and after
+		assertTrue(new AABB(0, 0, 2, 2).colliding(new AABB(1, 0.5, 2, 2)));
+		assertTrue(new AABB(0, 0, 10, 10).colliding(new AABB(1, 1, 2, 2)));
+		assertTrue(new AABB(1, 1, 2, 2).colliding(new AABB(0, 0, 10, 10)));
+	}
+	
+	@Test
+	public void separateBoxesOfTheSameSizeDontCollide() {
+		// same result before and after
+		assertFalse(new AABB(0, 0, 2, 2).colliding(new AABB(5, 5, 2, 2)));
+	}
+	
+	@Test
+	public void separateBoxesOfDifferentSizesDontCollide() {
+		// changed: these used to collide, because the y axis alone counted as overlapping
+		assertFalse(new AABB(0, 0, 2, 2).colliding(new AABB(10, 0, 4, 4)));
+	}
+	
+	@Test
+	public void boxesOverlappingOnOneAxisOnlyDontCollide() {
+		// changed: overlapping on either axis used to count as colliding
+		assertFalse(new AABB(0, 0, 2, 2).colliding(new AABB(0, 10, 20, 2)));
+	}
+	
+	@Test
+	public void touchingBoxesDontCollide() {
+		assertFalse(new AABB(0, 0, 2, 2).colliding(new AABB(2, 0, 2, 2)));
+		assertFalse(new AABB(0, 0, 2, 2).colliding(new AABB(0, 2, 2, 2)));
+	}
+	
+	@Test
+	public void overlapIsMeasuredFromCentresAndFullExtents() {
+		AABB a = new AABB(0, 0, 2, 4), b = new AABB(1.5, 1, 2, 2);
+		assertEquals(0.5, a.getOverlapX(b), EPSILON);
+		assertEquals(2.0, a.getOverlapY(b), EPSILON);
+		assertEquals(-1.0, a.getMinX(), EPSILON);
+		assertEquals(2.0, a.getMaxY(), EPSILON);
+	}
+	
+	@Test
+	public void deintersectPushesOutAlongTheLeastOverlappingAxis() {
+		// changed: these overlap by 0.5 on x but are closer on y than on x, so they used to stay put
+		AABB a = new AABB(0, 0, 2, 2), b = new AABB(1.5, 0.25, 2, 2);
+		a.deintersect(b);
+		assertEquals(-0.5, a.x, EPSILON);
+		assertEquals(0.0, a.y, EPSILON);
+		assertFalse(a.colliding(b));
+	}
+	
+	@Test
+	public void deintersectPushesAwayFromTheOtherBox() {
+		AABB a = new AABB(0, 1.5, 2, 2), b = new AABB(0.25, 0, 2, 2);
+		a.deintersect(b);
+		assertEquals(0.0, a.x, EPSILON);
+		assertEquals(2.0, a.y, EPSILON);
+		assertFalse(a.colliding(b));
+	}
+	
+	@Test
+	public void deintersectLeavesSeparateBoxesAlone() {
+		// changed: this used to move the box on y, even though the boxes don't touch
+		AABB a = new AABB(0, 0, 2, 2), b = new AABB(10, 0, 4, 4);
+		a.deintersect(b);
+		assertEquals(0.0, a.x, EPSILON);
+		assertEquals(0.0, a.y, EPSILON);
+	}
+	
+	@Test
+	public void penetrationMatchesDeintersect() {
+		AABB a = new AABB(0, 0, 2, 2), b = new AABB(1.5, 0.25, 2, 2);
+		Vec2 penetration = a.getPenetration(b, new Vec2());
+		a.deintersect(b);
+		assertEquals(penetration.x, a.x, EPSILON);
+		assertEquals(penetration.y, a.y, EPSILON);
+		assertEquals(0.0, new AABB(0, 0, 2, 2).getPenetration(new AABB(5, 5, 2, 2), penetration).mag(), EPSILON);
+	}
+}
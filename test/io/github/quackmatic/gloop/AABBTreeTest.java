@@ -0,0 +1,163 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link AABBTree} against a brute-force search over the same boxes, as boxes are
+ * inserted, moved and removed, and that the tree stays balanced.
+ * @author Quackmatic
+ */
+public class AABBTreeTest {
+	private static final double EPSILON = 1e-9;
+	
+	@Test
+	public void matchesBruteForceAsBoxesChange() {
+		Random random = new Random(18);
+		AABBTree tree = new AABBTree(0.5);
+		AABB[] boxes = new AABB[200];
+		int[] handles = new int[boxes.length];
+		Arrays.fill(handles, -1);
+		IntList out = new IntList();
+		Ray.RayIntersection intersection = new Ray.RayIntersection();
+		for(int step = 0; step < 3000; step++) {
+			int i = random.nextInt(boxes.length);
+			if(handles[i] < 0) {
+				// a mix of small boxes and a few large ones, which is what the tree is for
+				boxes[i] = randomBox(random, random.nextInt(10) == 0 ? 40 : 6);
+				handles[i] = tree.insert(boxes[i]);
+			} else if(random.nextInt(4) == 0) {
+				tree.remove(handles[i]);
+				handles[i] = -1;
+			} else {
+				AABB box = boxes[i];
+				box.x += random.nextDouble() * 4 - 2;
+				box.y += random.nextDouble() * 4 - 2;
+				tree.move(handles[i]);
+			}
+			if(step % 25 == 0) {
+				assertEquals(live(handles), tree.size());
+				assertEquals(bruteForcePairs(boxes, handles), pairs(tree.findPairs(out)));
+				AABB region = randomBox(random, 20);
+				assertEquals(bruteForceRegion(boxes, handles, region), sorted(tree.queryRegion(region, out)));
+				Vec2 point = new Vec2(region.x, region.y);
+				assertEquals(bruteForcePoint(boxes, handles, point), sorted(tree.queryPoint(point, out)));
+				
+				Ray ray = new Ray(new Vec2(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100),
+						random.nextDouble() * Math.PI * 2);
+				double maxDistance = random.nextDouble() * 150;
+				double expected = Double.POSITIVE_INFINITY;
+				for(int j = 0; j < boxes.length; j++) {
+					if(handles[j] >= 0) expected = Math.min(expected, distance(ray, boxes[j]));
+				}
+				int hit = tree.raycast(ray, maxDistance, intersection);
+				if(expected <= maxDistance) {
+					assertTrue(hit >= 0);
+					assertEquals(expected, intersection.distance, EPSILON);
+					assertEquals(expected, distance(ray, tree.get(hit)), EPSILON);
+				} else {
+					assertEquals(-1, hit);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void staysBalancedWhenBoxesArriveInOrder() {
+		AABBTree tree = new AABBTree(0);
+		int[] handles = new int[1024];
+		for(int i = 0; i < handles.length; i++) {
+			handles[i] = tree.insert(new AABB(i * 2, 0, 1, 1));
+		}
+		// a perfectly balanced tree of 1024 leaves has height 10
+		assertTrue("height " + tree.getHeight(), tree.getHeight() <= 20);
+		for(int i = 0; i < handles.length; i += 2) {
+			tree.remove(handles[i]);
+		}
+		assertTrue("height " + tree.getHeight(), tree.getHeight() <= 18);
+		for(int i = 1; i < handles.length; i += 2) {
+			AABB box = tree.get(handles[i]);
+			box.y = i;
+			tree.move(handles[i]);
+		}
+		assertTrue("height " + tree.getHeight(), tree.getHeight() <= 18);
+		assertEquals(handles.length / 2, tree.size());
+	}
+	
+	@Test
+	public void smallMovesStayInTheFattenedBounds() {
+		AABBTree tree = new AABBTree(1);
+		AABB box = new AABB(0, 0, 2, 2);
+		int handle = tree.insert(box);
+		box.x = 0.5;
+		assertEquals(false, tree.move(handle));
+		box.x = 1.5;
+		assertEquals(true, tree.move(handle));
+		assertEquals("[" + handle + "]", sorted(tree.queryPoint(new Vec2(2.4, 0), new IntList())));
+	}
+	
+	private static double distance(Ray ray, AABB box) {
+		return ray.intersectBounds(box.getMinX(), box.getMinY(), box.getMaxX(), box.getMaxY());
+	}
+	
+	private static int live(int[] handles) {
+		int count = 0;
+		for(int handle : handles) {
+			if(handle >= 0) count++;
+		}
+		return count;
+	}
+	
+	private static AABB randomBox(Random random, double maxSize) {
+		return new AABB(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50,
+				random.nextDouble() * maxSize, random.nextDouble() * maxSize);
+	}
+	
+	private static String bruteForcePairs(AABB[] boxes, int[] handles) {
+		IntList out = new IntList();
+		for(int i = 0; i < boxes.length; i++) {
+			for(int j = 0; j < boxes.length; j++) {
+				if(handles[i] >= 0 && handles[j] >= 0 && handles[i] < handles[j] && boxes[i].colliding(boxes[j])) {
+					out.add(handles[i], handles[j]);
+				}
+			}
+		}
+		return pairs(out);
+	}
+	
+	private static String bruteForceRegion(AABB[] boxes, int[] handles, AABB region) {
+		IntList out = new IntList();
+		for(int i = 0; i < boxes.length; i++) {
+			if(handles[i] >= 0 && boxes[i].colliding(region)) out.add(handles[i]);
+		}
+		return sorted(out);
+	}
+	
+	private static String bruteForcePoint(AABB[] boxes, int[] handles, Vec2 point) {
+		IntList out = new IntList();
+		for(int i = 0; i < boxes.length; i++) {
+			if(handles[i] >= 0 && boxes[i].contains(point)) out.add(handles[i]);
+		}
+		return sorted(out);
+	}
+	
+	private static String sorted(IntList list) {
+		int[] values = list.toArray();
+		Arrays.sort(values);
+		return Arrays.toString(values);
+	}
+	
+	private static String pairs(IntList list) {
+		long[] values = new long[list.size() / 2];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = ((long)list.get(i * 2) << 32) | list.get(i * 2 + 1);
+		}
+		Arrays.sort(values);
+		return Arrays.toString(values);
+	}
+}
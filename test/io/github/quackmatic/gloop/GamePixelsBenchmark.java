@@ -0,0 +1,123 @@
+package io.github.quackmatic.gloop;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compares the bulk operations of {@link GamePixels} with the equivalent {@link Graphics2D}
+ * calls on the same unmanaged 640x480 buffer. Run it headless, with nothing else busy:
+ * <pre>java -Djava.awt.headless=true io.github.quackmatic.gloop.GamePixelsBenchmark</pre>
+ * Each operation is warmed up, then timed over several rounds, and the best round is printed.
+ * @author Quackmatic
+ */
+public class GamePixelsBenchmark {
+	private static final int WIDTH = 640, HEIGHT = 480;
+	private static final int ROUNDS = 10, REPEATS = 200;
+	
+	private interface Operation {
+		public void run(int i);
+	}
+	
+	public static void main(String[] args) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		final GamePixels pixels = GamePixels.of(image);
+		final Graphics2D graphics = image.createGraphics();
+		
+		// a 32x32 sprite with a mix of opaque, clear and translucent pixels
+		final BufferedImage spriteImage = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+		final GamePixels sprite = GamePixels.of(spriteImage);
+		Random random = new Random(1);
+		for(int i = 0; i < sprite.data.length; i++) {
+			int alpha = i % 3 == 0 ? 0xFF : i % 3 == 1 ? 0 : random.nextInt(256);
+			sprite.data[i] = (alpha << 24) | (random.nextInt() & 0xFFFFFF);
+		}
+		final int[] spriteXs = new int[256], spriteYs = new int[256];
+		for(int i = 0; i < spriteXs.length; i++) {
+			spriteXs[i] = random.nextInt(WIDTH - 32);
+			spriteYs[i] = random.nextInt(HEIGHT - 32);
+		}
+		final Color color = new Color(0x336699);
+		
+		compare("full-screen clear",
+			new Operation() {
+				public void run(int i) {
+					pixels.clear(0x336699);
+				}
+			},
+			new Operation() {
+				public void run(int i) {
+					graphics.setColor(color);
+					graphics.fillRect(0, 0, WIDTH, HEIGHT);
+				}
+			});
+		compare("100x100 fillRect",
+			new Operation() {
+				public void run(int i) {
+					pixels.fillRect(i % 500, i % 350, 100, 100, 0x336699);
+				}
+			},
+			new Operation() {
+				public void run(int i) {
+					graphics.setColor(color);
+					graphics.fillRect(i % 500, i % 350, 100, 100);
+				}
+			});
+		compare("256 opaque 32x32 sprites",
+			new Operation() {
+				public void run(int i) {
+					for(int j = 0; j < spriteXs.length; j++) {
+						pixels.copy(sprite, spriteXs[j], spriteYs[j]);
+					}
+				}
+			},
+			new Operation() {
+				public void run(int i) {
+					graphics.setComposite(AlphaComposite.Src);
+					for(int j = 0; j < spriteXs.length; j++) {
+						graphics.drawImage(spriteImage, spriteXs[j], spriteYs[j], null);
+					}
+					graphics.setComposite(AlphaComposite.SrcOver);
+				}
+			});
+		compare("256 blended 32x32 sprites",
+			new Operation() {
+				public void run(int i) {
+					for(int j = 0; j < spriteXs.length; j++) {
+						pixels.blend(sprite, spriteXs[j], spriteYs[j]);
+					}
+				}
+			},
+			new Operation() {
+				public void run(int i) {
+					for(int j = 0; j < spriteXs.length; j++) {
+						graphics.drawImage(spriteImage, spriteXs[j], spriteYs[j], null);
+					}
+				}
+			});
+		graphics.dispose();
+	}
+	
+	private static void compare(String name, Operation direct, Operation java2d) {
+		double directTime = time(direct), java2dTime = time(java2d);
+		System.out.printf("%-26s GamePixels %8.1fus   Graphics2D %8.1fus   %5.2fx%n",
+				name, directTime, java2dTime, java2dTime / directTime);
+	}
+	
+	private static double time(Operation operation) {
+		for(int i = 0; i < REPEATS * 5; i++) {
+			operation.run(i);
+		}
+		long best = Long.MAX_VALUE;
+		for(int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for(int i = 0; i < REPEATS; i++) {
+				operation.run(i);
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return (double)best / REPEATS / 1e+3;
+	}
+}
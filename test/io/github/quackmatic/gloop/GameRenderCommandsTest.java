@@ -0,0 +1,86 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Checks the drawing order that {@link GameRenderCommands#sort()} gives: by layer, including
+ * negative layers, then in recording order, or grouped by image when batching.
+ * @author Quackmatic
+ */
+public class GameRenderCommandsTest {
+	@Test
+	public void layersOfBothSignsSortInOrder() {
+		GameRenderCommands commands = new GameRenderCommands();
+		commands.setLayer(5).rect(0, 0, 0, 1, 1);
+		commands.setLayer(-5).rect(0, 0, 0, 1, 1);
+		commands.setLayer(0).rect(0, 0, 0, 1, 1);
+		commands.setLayer(Short.MAX_VALUE).rect(0, 0, 0, 1, 1);
+		commands.setLayer(Short.MIN_VALUE).rect(0, 0, 0, 1, 1);
+		assertEquals("[4, 1, 2, 0, 3]", order(commands.sort()));
+	}
+	
+	@Test
+	public void commandsInALayerKeepRecordingOrder() {
+		BufferedImage a = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage b = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		GameRenderCommands commands = new GameRenderCommands();
+		commands.setLayer(1).sprite(a, 0, 0, 1, 1).sprite(b, 0, 0, 1, 1).rect(0, 0, 0, 1, 1).sprite(a, 0, 0, 1, 1);
+		commands.setLayer(-1).sprite(b, 0, 0, 1, 1).line(0, 0, 0, 1, 1);
+		assertFalse(commands.isBatching());
+		assertEquals("[4, 5, 0, 1, 2, 3]", order(commands.sort()));
+	}
+	
+	@Test
+	public void batchingGroupsSpritesWithinEachLayer() {
+		BufferedImage[] images = new BufferedImage[4];
+		for(int i = 0; i < images.length; i++) {
+			images[i] = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		}
+		GameRenderCommands commands = new GameRenderCommands().setBatching(true);
+		int[] layers = { 3, -3, 0 };
+		for(int i = 0; i < 24; i++) {
+			commands.setLayer(layers[i % 3]).sprite(images[(i * 7) % 4], 0, 0, 1, 1);
+		}
+		commands.sort();
+		
+		int lastLayer = Integer.MIN_VALUE;
+		boolean[] finished = new boolean[images.length];
+		int lastImage = -1, lastCommand = -1;
+		for(int position = 0; position < commands.size(); position++) {
+			int command = commands.getOrder(position);
+			int layer = layers[command % 3];
+			int image = (command * 7) % 4;
+			assertTrue(layer >= lastLayer);
+			if(layer != lastLayer) {
+				finished = new boolean[images.length];
+				lastImage = -1;
+			}
+			if(image != lastImage) {
+				// each image's sprites in a layer are drawn in one run
+				assertFalse(finished[image]);
+				if(lastImage >= 0) finished[lastImage] = true;
+			} else {
+				// and in recording order within the run
+				assertTrue(command > lastCommand);
+			}
+			lastLayer = layer;
+			lastImage = image;
+			lastCommand = command;
+		}
+	}
+	
+	private static String order(GameRenderCommands commands) {
+		int[] order = new int[commands.size()];
+		for(int position = 0; position < order.length; position++) {
+			order[position] = commands.getOrder(position);
+		}
+		return Arrays.toString(order);
+	}
+}
@@ -0,0 +1,39 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks that a {@link GameTimerHybridPacer} goes back to sleeping or parking after a single
+ * huge overshoot, such as a GC pause, rather than spinning through every wait from then on.
+ * @author Quackmatic
+ */
+public class GameTimerHybridPacerTest {
+	private static final long INTERVAL = 5000000l;
+	private static final long OUTLIER = 1000000000l;
+	
+	@Test(timeout = 10000)
+	public void sleepingResumesAfterAnOutlier() throws InterruptedException {
+		GameTimerHybridPacer pacer = new GameTimerHybridPacer(GameTimerHybridPacer.Mode.SLEEP_SPIN);
+		pacer.sleepOvershoot = OUTLIER;
+		runFrames(pacer);
+		// timers here can overshoot by a few frames' worth, but never by anything like the outlier
+		assertTrue("sleep overshoot " + pacer.getSleepOvershoot(), pacer.getSleepOvershoot() < INTERVAL * 10);
+	}
+	
+	@Test(timeout = 10000)
+	public void parkingResumesAfterAnOutlier() throws InterruptedException {
+		GameTimerHybridPacer pacer = new GameTimerHybridPacer(GameTimerHybridPacer.Mode.PARK_YIELD);
+		pacer.parkOvershoot = OUTLIER;
+		runFrames(pacer);
+		assertTrue("park overshoot " + pacer.getParkOvershoot(), pacer.getParkOvershoot() < INTERVAL * 10);
+	}
+	
+	private static void runFrames(GameTimerHybridPacer pacer) throws InterruptedException {
+		long deadline = System.nanoTime();
+		for(int frame = 0; frame < 200; frame++) {
+			pacer.waitUntil(deadline += INTERVAL);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link GameWorkers#forRange(int, int, int, GameWorkers.RangeTask)} covers every
+ * index once, and that a caller doesn't wait on helpers stuck behind other work in a busy pool.
+ * @author Quackmatic
+ */
+public class GameWorkersTest {
+	@Test(timeout = 10000)
+	public void coversEveryIndexOnce() {
+		final int[] counts = new int[10007];
+		GameWorkers.forRange(0, counts.length, 13, new GameWorkers.RangeTask() {
+			@Override
+			public void run(int start, int end) {
+				for(int i = start; i < end; i++) {
+					counts[i]++;
+				}
+			}
+		});
+		for(int i = 0; i < counts.length; i++) {
+			assertEquals("index " + i, 1, counts[i]);
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void finishesWhileThePoolIsSaturated() throws InterruptedException {
+		final int parallelism = GameWorkers.getParallelism();
+		final CountDownLatch entered = new CountDownLatch(parallelism), release = new CountDownLatch(1);
+		// another caller whose chunks block every worker thread until released
+		Thread blocker = new Thread() {
+			@Override
+			public void run() {
+				GameWorkers.forRange(0, parallelism, 1, new GameWorkers.RangeTask() {
+					@Override
+					public void run(int start, int end) {
+						entered.countDown();
+						try {
+							release.await();
+						} catch(InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+			}
+		};
+		blocker.start();
+		try {
+			assertTrue(entered.await(5, TimeUnit.SECONDS));
+			final AtomicLong sum = new AtomicLong();
+			GameWorkers.forRange(0, 1000, 10, new GameWorkers.RangeTask() {
+				@Override
+				public void run(int start, int end) {
+					for(int i = start; i < end; i++) {
+						sum.addAndGet(i);
+					}
+				}
+			});
+			// the caller did every chunk itself, without waiting for the blocked workers
+			assertEquals(999 * 1000 / 2, sum.get());
+			assertEquals(1, release.getCount());
+		} finally {
+			release.countDown();
+			blocker.join();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link LooseQuadtree} against a brute-force search over the same points and boxes, as
+ * they are built, inserted, moved, resized and removed.
+ * @author Quackmatic
+ */
+public class LooseQuadtreeTest {
+	private static final int CAPACITY = 4096;
+	
+	private final double[] xs = new double[CAPACITY], ys = new double[CAPACITY];
+	private final double[] halfWidths = new double[CAPACITY], halfHeights = new double[CAPACITY];
+	private final boolean[] alive = new boolean[CAPACITY];
+	
+	@Test
+	public void growingInPlaceIsStillFound() {
+		LooseQuadtree tree = new LooseQuadtree(new AABB(100, 100, 200, 200), 2);
+		int handle = tree.insert(new Vec2(100.5, 101));
+		// the box stays in the same node as the point, but now reaches past the node's cell
+		tree.update(handle, 100.5, 101, 4, 4);
+		IntList out = new IntList();
+		assertEquals(1, tree.queryPoint(new Vec2(99, 101), out).size());
+		assertEquals(1, tree.queryRegion(new AABB(98, 101, 1, 1), out).size());
+		assertEquals(1, tree.queryRadius(new Vec2(97, 101), 2, out).size());
+		assertEquals(1, tree.queryNearest(new Vec2(99, 101), 1, 0.5, out).size());
+	}
+	
+	@Test
+	public void matchesBruteForceWithDeepTree() {
+		checkAgainstBruteForce(new Random(23), 8, false);
+	}
+	
+	@Test
+	public void matchesBruteForceWithShallowTree() {
+		checkAgainstBruteForce(new Random(1023), 2, false);
+	}
+	
+	@Test
+	public void matchesBruteForceWhenPointsGrow() {
+		// built from points, nothing reaches out of its node until it is updated into a box
+		checkAgainstBruteForce(new Random(2023), 3, true);
+	}
+	
+	private void checkAgainstBruteForce(Random random, int maxDepth, boolean points) {
+		LooseQuadtree tree = new LooseQuadtree(new AABB(0, 0, 200, 200), maxDepth);
+		Arrays.fill(alive, false);
+		int built = 300;
+		if(points) {
+			Vec2Array positions = new Vec2Array(built);
+			for(int i = 0; i < built; i++) {
+				positions.push(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100);
+				record(i, positions.xs[i], positions.ys[i], 0, 0);
+			}
+			tree.build(positions);
+		} else {
+			AABB[] boxes = new AABB[built];
+			for(int i = 0; i < built; i++) {
+				boxes[i] = randomBox(random);
+				record(i, boxes[i].x, boxes[i].y, boxes[i].width, boxes[i].height);
+			}
+			tree.build(boxes);
+		}
+		check(tree, random);
+		
+		int[] handles = new int[500];
+		for(int i = 0; i < handles.length; i++) {
+			handles[i] = i < built ? i : -1;
+		}
+		for(int step = 0; step < 3000; step++) {
+			int i = random.nextInt(handles.length);
+			if(handles[i] < 0) {
+				AABB box = randomBox(random);
+				handles[i] = tree.insert(box);
+				record(handles[i], box.x, box.y, box.width, box.height);
+			} else if(random.nextInt(5) == 0) {
+				tree.remove(handles[i]);
+				alive[handles[i]] = false;
+				handles[i] = -1;
+			} else {
+				// mostly small moves and size changes, which often leave it in the same node
+				int handle = handles[i];
+				double x = xs[handle] + random.nextDouble() * 4 - 2, y = ys[handle] + random.nextDouble() * 4 - 2;
+				double width = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 12;
+				double height = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 12;
+				tree.update(handle, x, y, width, height);
+				record(handle, x, y, width, height);
+			}
+			if(points || step % 10 == 0) check(tree, random);
+		}
+	}
+	
+	private void record(int handle, double x, double y, double width, double height) {
+		xs[handle] = x;
+		ys[handle] = y;
+		halfWidths[handle] = width / 2;
+		halfHeights[handle] = height / 2;
+		alive[handle] = true;
+	}
+	
+	private void check(LooseQuadtree tree, Random random) {
+		IntList out = new IntList(), expected = new IntList();
+		AABB region = randomBox(random);
+		double minX = region.getMinX(), minY = region.getMinY(), maxX = region.getMaxX(), maxY = region.getMaxY();
+		Vec2 point = new Vec2(region.x, region.y);
+		double radius = random.nextDouble() * 20;
+		
+		expected.clear();
+		for(int handle = 0; handle < CAPACITY; handle++) {
+			if(alive[handle] && xs[handle] - halfWidths[handle] <= maxX && xs[handle] + halfWidths[handle] >= minX &&
+					ys[handle] - halfHeights[handle] <= maxY && ys[handle] + halfHeights[handle] >= minY) {
+				expected.add(handle);
+			}
+		}
+		assertEquals(sorted(expected), sorted(tree.queryRegion(region, out)));
+		
+		expected.clear();
+		for(int handle = 0; handle < CAPACITY; handle++) {
+			if(alive[handle] && distanceSquared(handle, point) == 0) expected.add(handle);
+		}
+		assertEquals(sorted(expected), sorted(tree.queryPoint(point, out)));
+		
+		expected.clear();
+		for(int handle = 0; handle < CAPACITY; handle++) {
+			if(alive[handle] && distanceSquared(handle, point) <= radius * radius) expected.add(handle);
+		}
+		assertEquals(sorted(expected), sorted(tree.queryRadius(point, radius, out)));
+		
+		// nearest results can tie, so compare the distances found rather than the handles
+		int count = 1 + random.nextInt(10);
+		double maxDistance = random.nextBoolean() ? Double.POSITIVE_INFINITY : radius;
+		double[] distances = new double[CAPACITY];
+		int found = 0;
+		for(int handle = 0; handle < CAPACITY; handle++) {
+			double distance = alive[handle] ? distanceSquared(handle, point) : Double.NaN;
+			if(distance <= maxDistance * maxDistance) distances[found++] = distance;
+		}
+		Arrays.sort(distances, 0, found);
+		double[] nearest = new double[Math.min(count, found)];
+		tree.queryNearest(point, count, maxDistance, out);
+		assertEquals(nearest.length, out.size());
+		for(int i = 0; i < nearest.length; i++) {
+			nearest[i] = distanceSquared(out.get(i), point);
+		}
+		assertEquals(Arrays.toString(Arrays.copyOf(distances, nearest.length)), Arrays.toString(nearest));
+	}
+	
+	private double distanceSquared(int handle, Vec2 point) {
+		double dx = Math.max(Math.abs(point.x - xs[handle]) - halfWidths[handle], 0);
+		double dy = Math.max(Math.abs(point.y - ys[handle]) - halfHeights[handle], 0);
+		return dx * dx + dy * dy;
+	}
+	
+	private static AABB randomBox(Random random) {
+		// some just outside the tree's area, which are kept at the root
+		double x = random.nextDouble() * 220 - 110, y = random.nextDouble() * 220 - 110;
+		return random.nextInt(3) == 0 ? new AABB(x, y, 0, 0) : new AABB(x, y, random.nextDouble() * 12, random.nextDouble() * 12);
+	}
+	
+	private static String sorted(IntList list) {
+		int[] values = list.toArray();
+		Arrays.sort(values);
+		return Arrays.toString(values);
+	}
+}
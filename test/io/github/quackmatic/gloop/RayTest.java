@@ -0,0 +1,83 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the two ways of casting a {@link Ray} at an {@link AABB} agree on what counts as
+ * a hit, including rays which only touch a face or a corner.
+ * @author Quackmatic
+ */
+public class RayTest {
+	private static final double EPSILON = 1e-9;
+	
+	@Test
+	public void hittingAFaceAgrees() {
+		Ray ray = new Ray(new Vec2(-5, 0.5), new Vec2(1, 0));
+		AABB box = new AABB(0, 0, 2, 2);
+		Ray.RayIntersection intersection = new Ray.RayIntersection();
+		AABB.Impact impact = new AABB.Impact();
+		assertTrue(ray.intersectAABB(box, intersection));
+		assertTrue(ray.impactAABB(box, impact));
+		assertEquals(4, intersection.distance, EPSILON);
+		assertEquals(4, impact.time, EPSILON);
+		assertEquals(-1, impact.normal.x, EPSILON);
+		assertEquals(0, impact.normal.y, EPSILON);
+	}
+	
+	@Test
+	public void touchingIsAMissForBoth() {
+		AABB box = new AABB(0, 0, 2, 2);
+		// along the top face
+		assertMiss(new Ray(new Vec2(-5, 1), new Vec2(1, 0)), box);
+		// through the top-right corner only
+		assertMiss(new Ray(new Vec2(0, 2), new Vec2(1, -1)), box);
+		// behind the ray
+		assertMiss(new Ray(new Vec2(5, 0), new Vec2(1, 0)), box);
+	}
+	
+	@Test
+	public void startingInsideIsAHitAtZeroForBoth() {
+		Ray ray = new Ray(new Vec2(0.5, 0), new Vec2(0, 1));
+		AABB box = new AABB(0, 0, 2, 2);
+		Ray.RayIntersection intersection = new Ray.RayIntersection();
+		AABB.Impact impact = new AABB.Impact();
+		assertTrue(ray.intersectAABB(box, intersection));
+		assertTrue(ray.impactAABB(box, impact));
+		assertEquals(0, intersection.distance, EPSILON);
+		assertEquals(0, impact.time, EPSILON);
+		assertEquals(1, impact.normal.x, EPSILON);
+	}
+	
+	@Test
+	public void randomRaysAgree() {
+		Random random = new Random(22);
+		Ray.RayIntersection intersection = new Ray.RayIntersection();
+		AABB.Impact impact = new AABB.Impact();
+		int hits = 0;
+		for(int i = 0; i < 10000; i++) {
+			// whole numbers, so that rays often run exactly along faces and through corners
+			double dx = random.nextInt(5) - 2, dy = random.nextInt(5) - 2;
+			if(dx == 0 && dy == 0) continue;
+			Ray ray = new Ray(new Vec2(random.nextInt(11) - 5, random.nextInt(11) - 5), new Vec2(dx, dy));
+			AABB box = new AABB(random.nextInt(5) - 2, random.nextInt(5) - 2, random.nextInt(4), random.nextInt(4));
+			boolean hit = ray.intersectAABB(box, intersection);
+			assertEquals(hit, ray.impactAABB(box, impact));
+			if(hit) {
+				assertEquals(intersection.distance, impact.time, EPSILON);
+				hits++;
+			}
+		}
+		assertTrue("hits " + hits, hits > 500);
+	}
+	
+	private static void assertMiss(Ray ray, AABB box) {
+		assertFalse(ray.intersectAABB(box, new Ray.RayIntersection()));
+		assertFalse(ray.impactAABB(box, new AABB.Impact()));
+	}
+}
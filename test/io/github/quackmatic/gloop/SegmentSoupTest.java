@@ -0,0 +1,86 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that ray casts against a built {@link SegmentSoup} find the same nearest hit as
+ * testing every segment, and that building copes with many long segments.
+ * @author Quackmatic
+ */
+public class SegmentSoupTest {
+	private static final double EPSILON = 1e-7;
+	
+	@Test
+	public void randomSegmentsMatchBruteForce() {
+		Random random = new Random(19);
+		SegmentSoup soup = new SegmentSoup();
+		for(int i = 0; i < 300; i++) {
+			double x = random.nextDouble() * 200 - 100, y = random.nextDouble() * 200 - 100;
+			// mostly short segments, with some long ones crossing many cells
+			double length = random.nextInt(5) == 0 ? 150 : 8;
+			soup.add(x, y, x + (random.nextDouble() * 2 - 1) * length, y + (random.nextDouble() * 2 - 1) * length);
+		}
+		checkAgainstBruteForce(soup.build(), random);
+		checkAgainstBruteForce(soup.build(3), random);
+	}
+	
+	@Test
+	public void boxEdgesOnCellBoundariesMatchBruteForce() {
+		Random random = new Random(1019);
+		SegmentSoup soup = new SegmentSoup();
+		for(int x = 0; x < 10; x++) {
+			for(int y = 0; y < 10; y++) {
+				if(random.nextBoolean()) soup.add(new AABB(x * 8 + 4, y * 8 + 4, 4, 4));
+			}
+		}
+		// segments along cell edges, and exactly through cell corners
+		soup.add(0, 0, 80, 80);
+		soup.add(0, 80, 80, 0);
+		checkAgainstBruteForce(soup.build(4), random);
+	}
+	
+	@Test(timeout = 10000)
+	public void manyLongSegmentsBuild() {
+		// filed by bounding box, these would cover 3000 * 1024 * 1024 cells and overflow
+		SegmentSoup soup = new SegmentSoup();
+		for(int i = 0; i < 3000; i++) {
+			soup.add(0, i * 0.01, 1024, 1024 - i * 0.01);
+		}
+		soup.build(1);
+		assertTrue(soup.isBuilt());
+		Ray.RayIntersection intersection = new Ray.RayIntersection();
+		int hit = soup.castRay(new Ray(new Vec2(-10, 512), new Vec2(1, 0)), 10000, intersection);
+		assertTrue(hit >= 0);
+		// every segment passes through the middle of the grid
+		assertEquals(522, intersection.distance, EPSILON);
+	}
+	
+	private static void checkAgainstBruteForce(SegmentSoup soup, Random random) {
+		Ray.RayIntersection intersection = new Ray.RayIntersection(), expected = new Ray.RayIntersection();
+		for(int i = 0; i < 2000; i++) {
+			Ray ray = new Ray(new Vec2(random.nextDouble() * 240 - 120, random.nextDouble() * 240 - 120),
+					random.nextDouble() * Math.PI * 2);
+			double maxDistance = random.nextInt(4) == 0 ? random.nextDouble() * 50 : Double.POSITIVE_INFINITY;
+			double best = maxDistance;
+			boolean hit = false;
+			for(int segment = 0; segment < soup.size(); segment++) {
+				if(ray.intersectLine(
+						new Vec2(soup.x1s[segment], soup.y1s[segment]),
+						new Vec2(soup.x2s[segment], soup.y2s[segment]), expected) && expected.distance <= best) {
+					best = expected.distance;
+					hit = true;
+				}
+			}
+			int segment = soup.castRay(ray, maxDistance, intersection);
+			assertEquals("ray " + i + " hit", hit, segment >= 0);
+			if(hit) {
+				assertEquals("ray " + i + " distance", best, intersection.distance, EPSILON);
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link SpatialHash} against a brute-force search over the same boxes, as boxes are
+ * inserted, moved and removed, and that boxes which would loop over the whole int range of
+ * cells are either clamped or rejected.
+ * @author Quackmatic
+ */
+public class SpatialHashTest {
+	@Test
+	public void matchesBruteForceAsBoxesChange() {
+		Random random = new Random(17);
+		SpatialHash hash = new SpatialHash(4);
+		AABB[] boxes = new AABB[200];
+		int[] handles = new int[boxes.length];
+		Arrays.fill(handles, -1);
+		IntList out = new IntList();
+		for(int step = 0; step < 2000; step++) {
+			int i = random.nextInt(boxes.length);
+			if(handles[i] < 0) {
+				boxes[i] = randomBox(random);
+				handles[i] = hash.insert(boxes[i]);
+			} else if(random.nextInt(4) == 0) {
+				hash.remove(handles[i]);
+				handles[i] = -1;
+			} else {
+				AABB box = boxes[i];
+				box.x += random.nextDouble() * 6 - 3;
+				box.y += random.nextDouble() * 6 - 3;
+				box.width = random.nextDouble() * 10;
+				box.height = random.nextDouble() * 10;
+				hash.move(handles[i]);
+			}
+			if(step % 20 == 0) {
+				assertEquals(bruteForcePairs(boxes, handles), pairs(hash.findPairs(out)));
+				AABB region = randomBox(random);
+				assertEquals(bruteForceRegion(boxes, handles, region), sorted(hash.queryRegion(region, out)));
+				Vec2 point = new Vec2(region.x, region.y);
+				assertEquals(bruteForcePoint(boxes, handles, point), sorted(hash.queryPoint(point, out)));
+			}
+		}
+	}
+	
+	@Test(timeout = 5000)
+	public void boxesFarOutsideTheGridAreClamped() {
+		SpatialHash hash = new SpatialHash(1);
+		int far = hash.insert(new AABB(1e12, -1e12, 1, 1));
+		int near = hash.insert(new AABB(0, 0, 1, 1));
+		IntList out = new IntList();
+		assertEquals("[" + far + "]", sorted(hash.queryPoint(new Vec2(1e12, -1e12), out)));
+		assertEquals("[" + far + "]", sorted(hash.queryRegion(new AABB(1e12, -1e12, 10, 10), out)));
+		hash.get(far).x = -1e300;
+		hash.move(far);
+		assertEquals("[" + far + ", " + near + "]", sorted(hash.queryRegion(
+				new AABB(0, 0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY), out)));
+		assertEquals("[]", pairs(hash.findPairs(out)));
+		hash.remove(far);
+		assertEquals(1, hash.size());
+	}
+	
+	@Test
+	public void nonFiniteBoxesAreRejected() {
+		SpatialHash hash = new SpatialHash(1);
+		expectError(hash, new AABB(Double.POSITIVE_INFINITY, 0, 1, 1));
+		expectError(hash, new AABB(0, Double.NaN, 1, 1));
+		expectError(hash, new AABB(0, 0, Double.POSITIVE_INFINITY, 1));
+		expectError(hash, new AABB(0, 0, 1e12, 1e12));
+		assertEquals(0, hash.size());
+		
+		int handle = hash.insert(new AABB(0, 0, 1, 1));
+		hash.get(handle).width = Double.POSITIVE_INFINITY;
+		try {
+			hash.move(handle);
+			fail("Moving to infinite bounds should throw.");
+		} catch(Error e) {
+			// expected
+		}
+		hash.get(handle).width = 1;
+		hash.remove(handle);
+		assertEquals(0, hash.getCellCount());
+	}
+	
+	private static void expectError(SpatialHash hash, AABB box) {
+		try {
+			hash.insert(box);
+			fail("Inserting " + box.x + ", " + box.y + ", " + box.width + ", " + box.height + " should throw.");
+		} catch(Error e) {
+			if(e instanceof AssertionError) throw e;
+		}
+	}
+	
+	private static AABB randomBox(Random random) {
+		return new AABB(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50,
+				random.nextDouble() * 10, random.nextDouble() * 10);
+	}
+	
+	private static boolean overlaps(AABB a, AABB b) {
+		return a.getMinX() < b.getMaxX() && b.getMinX() < a.getMaxX() &&
+				a.getMinY() < b.getMaxY() && b.getMinY() < a.getMaxY();
+	}
+	
+	private static String bruteForcePairs(AABB[] boxes, int[] handles) {
+		IntList out = new IntList();
+		for(int i = 0; i < boxes.length; i++) {
+			for(int j = 0; j < boxes.length; j++) {
+				if(handles[i] >= 0 && handles[j] >= 0 && handles[i] < handles[j] && overlaps(boxes[i], boxes[j])) {
+					out.add(handles[i], handles[j]);
+				}
+			}
+		}
+		return pairs(out);
+	}
+	
+	private static String bruteForceRegion(AABB[] boxes, int[] handles, AABB region) {
+		IntList out = new IntList();
+		for(int i = 0; i < boxes.length; i++) {
+			if(handles[i] >= 0 && overlaps(boxes[i], region)) out.add(handles[i]);
+		}
+		return sorted(out);
+	}
+	
+	private static String bruteForcePoint(AABB[] boxes, int[] handles, Vec2 point) {
+		IntList out = new IntList();
+		for(int i = 0; i < boxes.length; i++) {
+			AABB box = boxes[i];
+			if(handles[i] >= 0 && box.getMinX() <= point.x && point.x <= box.getMaxX() &&
+					box.getMinY() <= point.y && point.y <= box.getMaxY()) {
+				out.add(handles[i]);
+			}
+		}
+		return sorted(out);
+	}
+	
+	private static String sorted(IntList list) {
+		int[] values = list.toArray();
+		Arrays.sort(values);
+		return Arrays.toString(values);
+	}
+	
+	private static String pairs(IntList list) {
+		long[] values = new long[list.size() / 2];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = ((long)list.get(i * 2) << 32) | list.get(i * 2 + 1);
+		}
+		Arrays.sort(values);
+		return Arrays.toString(values);
+	}
+}
@@ -0,0 +1,141 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link SweepAndPrune} against a brute-force search over the same boxes, as boxes are
+ * inserted, moved and removed one at a time and in bulk, and that its begin and end events
+ * account for every change to the set of pairs.
+ * @author Quackmatic
+ */
+public class SweepAndPruneTest {
+	@Test
+	public void matchesBruteForceAsBoxesChange() {
+		Random random = new Random(20);
+		SweepAndPrune broadphase = new SweepAndPrune();
+		AABB[] boxes = new AABB[300];
+		int[] handles = new int[boxes.length];
+		Arrays.fill(handles, -1);
+		IntList out = new IntList();
+		TreeSet<Long> expected = new TreeSet<Long>();
+		int rebuilds = 0;
+		for(int step = 0; step < 1500; step++) {
+			int operation = random.nextInt(20);
+			if(operation == 0) {
+				// empty most of the slots and fill them again, which is enough at once to rebuild from scratch
+				for(int i = 0; i < boxes.length; i++) {
+					if(handles[i] >= 0 && random.nextInt(3) > 0) {
+						broadphase.remove(handles[i]);
+						handles[i] = -1;
+					}
+				}
+				int inserted = 0;
+				for(int i = 0; i < boxes.length; i++) {
+					if(handles[i] < 0) {
+						boxes[i] = randomBox(random);
+						handles[i] = broadphase.insert(boxes[i]);
+						inserted++;
+					}
+				}
+				rebuilds += inserted > SweepAndPrune.REBUILD_THRESHOLD ? 1 : 0;
+			} else if(operation == 1) {
+				// move lots of boxes a little, then update them all together
+				for(int i = 0; i < boxes.length; i++) {
+					if(handles[i] >= 0) {
+						boxes[i].x += random.nextDouble() * 2 - 1;
+						boxes[i].y += random.nextDouble() * 2 - 1;
+					}
+				}
+				broadphase.update();
+			} else {
+				int i = random.nextInt(boxes.length);
+				if(handles[i] < 0) {
+					boxes[i] = randomBox(random);
+					handles[i] = broadphase.insert(boxes[i]);
+				} else if(operation < 6) {
+					broadphase.remove(handles[i]);
+					handles[i] = -1;
+				} else {
+					AABB box = boxes[i];
+					box.x += random.nextDouble() * 10 - 5;
+					box.y += random.nextDouble() * 10 - 5;
+					box.width = random.nextDouble() * 8;
+					box.height = random.nextDouble() * 8;
+					broadphase.move(handles[i]);
+				}
+			}
+			
+			TreeSet<Long> actual = bruteForcePairs(boxes, handles);
+			assertEquals(actual, pairSet(broadphase.getPairs(out)));
+			assertEquals(actual.size(), broadphase.getPairCount());
+			// replaying the events onto the last set of pairs gives the new set
+			IntList begins = broadphase.getBeginEvents(), ends = broadphase.getEndEvents();
+			for(int e = 0; e < ends.size(); e += 2) {
+				assertEquals(true, expected.remove(pairKey(ends.get(e), ends.get(e + 1))));
+			}
+			for(int e = 0; e < begins.size(); e += 2) {
+				assertEquals(true, expected.add(pairKey(begins.get(e), begins.get(e + 1))));
+			}
+			assertEquals(actual, expected);
+			broadphase.clearEvents();
+			
+			int a = handles[random.nextInt(boxes.length)], b = handles[random.nextInt(boxes.length)];
+			if(a >= 0 && b >= 0 && a != b) {
+				assertEquals(actual.contains(pairKey(a, b)), broadphase.isOverlapping(a, b));
+			}
+		}
+		assertEquals(true, rebuilds > 10);
+	}
+	
+	@Test
+	public void touchingBoxesDontOverlap() {
+		SweepAndPrune broadphase = new SweepAndPrune();
+		int a = broadphase.insert(new AABB(0, 0, 2, 2));
+		int b = broadphase.insert(new AABB(2, 0, 2, 2));
+		assertEquals(false, broadphase.isOverlapping(a, b));
+		broadphase.get(b).x = 1.5;
+		broadphase.move(b);
+		assertEquals(true, broadphase.isOverlapping(a, b));
+		assertEquals(1, broadphase.getBeginEvents().size() / 2);
+		broadphase.remove(a);
+		assertEquals(0, broadphase.getPairCount());
+		assertEquals(1, broadphase.getEndEvents().size() / 2);
+	}
+	
+	private static AABB randomBox(Random random) {
+		return new AABB(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50,
+				random.nextDouble() * 8, random.nextDouble() * 8);
+	}
+	
+	private static long pairKey(int a, int b) {
+		return a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+	}
+	
+	private static TreeSet<Long> bruteForcePairs(AABB[] boxes, int[] handles) {
+		TreeSet<Long> pairs = new TreeSet<Long>();
+		for(int i = 0; i < boxes.length; i++) {
+			for(int j = i + 1; j < boxes.length; j++) {
+				if(handles[i] >= 0 && handles[j] >= 0 && boxes[i].colliding(boxes[j])) {
+					pairs.add(pairKey(handles[i], handles[j]));
+				}
+			}
+		}
+		return pairs;
+	}
+	
+	private static TreeSet<Long> pairSet(IntList list) {
+		TreeSet<Long> pairs = new TreeSet<Long>();
+		for(int i = 0; i < list.size(); i += 2) {
+			// pairs are reported lower handle first
+			assertEquals(true, list.get(i) < list.get(i + 1));
+			assertEquals(true, pairs.add(pairKey(list.get(i), list.get(i + 1))));
+		}
+		return pairs;
+	}
+}
@@ -0,0 +1,152 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the order in which {@link Transform2}s compose, that inverting one undoes it, that
+ * transformed boxes bound their transformed corners, and that flattening a hierarchy rejects
+ * children listed before their parents.
+ * @author Quackmatic
+ */
+public class Transform2Test {
+	private static final double EPSILON = 1e-9;
+	
+	@Test
+	public void mulAppliesTheSecondTransformFirst() {
+		Transform2 translate = new Transform2().setTranslation(10, 0);
+		Transform2 rotate = new Transform2().setRotation(Math.PI / 2);
+		// rotate (1, 0) to (0, 1), then move it along
+		assertVec(10, 1, translate.mul(rotate).apply(new Vec2(1, 0), new Vec2()));
+		// move (1, 0) to (11, 0), then rotate it
+		assertVec(0, 11, rotate.mul(translate).apply(new Vec2(1, 0), new Vec2()));
+		
+		Random random = new Random(24);
+		for(int i = 0; i < 100; i++) {
+			Transform2 t1 = randomTransform(random), t2 = randomTransform(random);
+			Vec2 point = new Vec2(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+			Vec2 expected = t1.apply(t2.apply(point, new Vec2()), new Vec2());
+			assertVec(expected.x, expected.y, t1.mul(t2).apply(point, new Vec2()));
+			// the in-place forms give the same answer when the output is one of the inputs
+			assertVec(expected.x, expected.y, new Transform2(t1).mulLocal(t2).apply(point, new Vec2()));
+			assertVec(expected.x, expected.y, new Transform2(t2).preMulLocal(t1).apply(point, new Vec2()));
+		}
+	}
+	
+	@Test
+	public void invertRoundTrips() {
+		Random random = new Random(1024);
+		for(int i = 0; i < 100; i++) {
+			Transform2 t = randomTransform(random);
+			Vec2 point = new Vec2(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+			Vec2 moved = t.apply(point, new Vec2());
+			assertVec(point.x, point.y, t.invert().apply(moved, new Vec2()));
+			assertVec(point.x, point.y, new Transform2(t).invertLocal().apply(moved, new Vec2()));
+			assertIdentity(t.mul(t.invert()));
+			assertIdentity(t.invert().mul(t));
+			assertIdentity(t.invert().invert().mul(t.invert()));
+		}
+		try {
+			new Transform2().setScale(2, 0).invert();
+			fail("Inverting a singular transform should throw.");
+		} catch(Error e) {
+			if(e instanceof AssertionError) throw e;
+		}
+	}
+	
+	@Test
+	public void boxesBoundTheirCornersUnderRotationAndScale() {
+		// stretch 4x2 to 8x2, then stand it on end and move it
+		Transform2 t = new Transform2(5, -3, Math.PI / 2, 2, 1);
+		AABB box = t.apply(new AABB(1, 0, 4, 2), new AABB());
+		assertEquals(5, box.x, EPSILON);
+		assertEquals(-1, box.y, EPSILON);
+		assertEquals(2, box.width, EPSILON);
+		assertEquals(8, box.height, EPSILON);
+		
+		Random random = new Random(2024);
+		for(int i = 0; i < 100; i++) {
+			t = randomTransform(random);
+			AABB in = new AABB(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10,
+					random.nextDouble() * 5, random.nextDouble() * 5);
+			double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for(int corner = 0; corner < 4; corner++) {
+				Vec2 point = t.apply(new Vec2(
+						corner % 2 == 0 ? in.getMinX() : in.getMaxX(),
+						corner / 2 == 0 ? in.getMinY() : in.getMaxY()), new Vec2());
+				minX = Math.min(minX, point.x);
+				minY = Math.min(minY, point.y);
+				maxX = Math.max(maxX, point.x);
+				maxY = Math.max(maxY, point.y);
+			}
+			AABB out = t.apply(in, new AABB());
+			assertEquals(minX, out.getMinX(), EPSILON);
+			assertEquals(minY, out.getMinY(), EPSILON);
+			assertEquals(maxX, out.getMaxX(), EPSILON);
+			assertEquals(maxY, out.getMaxY(), EPSILON);
+		}
+	}
+	
+	@Test
+	public void flattenComposesDownTheHierarchy() {
+		Transform2[] locals = {
+				new Transform2().setTranslation(10, 0),
+				new Transform2().setRotation(Math.PI / 2),
+				new Transform2().setTranslation(1, 0),
+				new Transform2().setScale(3, 3)
+		};
+		int[] parents = { -1, 0, 1, 0 };
+		Transform2[] worlds = { new Transform2(), new Transform2(), new Transform2(), new Transform2() };
+		Transform2.flatten(locals, parents, worlds, locals.length);
+		assertVec(10, 0, worlds[0].apply(new Vec2(), new Vec2()));
+		assertVec(10, 1, worlds[1].apply(new Vec2(1, 0), new Vec2()));
+		// one along the rotated x axis, which now points up
+		assertVec(10, 1, worlds[2].apply(new Vec2(), new Vec2()));
+		assertVec(13, 0, worlds[3].apply(new Vec2(1, 0), new Vec2()));
+	}
+	
+	@Test
+	public void flattenRejectsChildrenBeforeTheirParents() {
+		Transform2[] locals = { new Transform2(), new Transform2(), new Transform2() };
+		Transform2[] worlds = { new Transform2(), new Transform2(), new Transform2() };
+		expectError(locals, new int[] { -1, 2, 0 }, worlds);
+		// a transform can't be its own parent either
+		expectError(locals, new int[] { -1, 1, 0 }, worlds);
+	}
+	
+	private static void expectError(Transform2[] locals, int[] parents, Transform2[] worlds) {
+		try {
+			Transform2.flatten(locals, parents, worlds, locals.length);
+			fail("Flattening with a parent after its child should throw.");
+		} catch(Error e) {
+			if(e instanceof AssertionError) throw e;
+		}
+	}
+	
+	private static Transform2 randomTransform(Random random) {
+		// scales of either sign, but never close enough to 0 to lose precision when inverted
+		double scaleX = (0.25 + random.nextDouble() * 3) * (random.nextBoolean() ? 1 : -1);
+		double scaleY = (0.25 + random.nextDouble() * 3) * (random.nextBoolean() ? 1 : -1);
+		return new Transform2(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10,
+				random.nextDouble() * Math.PI * 2, scaleX, scaleY);
+	}
+	
+	private static void assertVec(double x, double y, Vec2 v) {
+		assertEquals(x, v.x, EPSILON);
+		assertEquals(y, v.y, EPSILON);
+	}
+	
+	private static void assertIdentity(Transform2 t) {
+		assertEquals(1, t.m00, EPSILON);
+		assertEquals(0, t.m01, EPSILON);
+		assertEquals(0, t.m02, EPSILON);
+		assertEquals(0, t.m10, EPSILON);
+		assertEquals(1, t.m11, EPSILON);
+		assertEquals(0, t.m12, EPSILON);
+	}
+}
@@ -0,0 +1,104 @@
+package io.github.quackmatic.gloop;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures how many bytes the common {@link Vec2}, {@link AABB} and {@link Ray} operations
+ * allocate per call, comparing the allocating forms with the in-place and out-parameter forms.
+ * This needs a JVM which reports per-thread allocation, such as HotSpot:
+ * <pre>java io.github.quackmatic.gloop.Vec2AllocationBenchmark</pre>
+ * Each operation is warmed up first, so that escape analysis has had a chance to run.
+ * @author Quackmatic
+ */
+public class Vec2AllocationBenchmark {
+	private static final int WARMUP = 200000, ITERATIONS = 1000000;
+	
+	private interface Operation {
+		public void run(int i);
+	}
+	
+	private static double sink;
+	
+	public static void main(String[] args) {
+		final Vec2 a = new Vec2(1, 2), b = new Vec2(3, -1), c = new Vec2(0.5, 0.5), out = new Vec2();
+		final AABB box = new AABB(0, 0, 2, 2), other = new AABB(1.5, 0.25, 2, 2), moving = new AABB();
+		final Ray ray = new Ray(new Vec2(-5, 0.1), new Vec2(1, 0));
+		final Ray.RayIntersection hit = new Ray.RayIntersection();
+		
+		measure("Vec2.add", new Operation() {
+			public void run(int i) {
+				sink += Vec2.add(a, b).x;
+			}
+		});
+		measure("Vec2.add(out)", new Operation() {
+			public void run(int i) {
+				sink += Vec2.add(a, b, out).x;
+			}
+		});
+		measure("rotate about point", new Operation() {
+			public void run(int i) {
+				sink += a.rotate(i * 1e-3, c).x;
+			}
+		});
+		measure("rotate about point (out)", new Operation() {
+			public void run(int i) {
+				sink += Vec2.rotate(a, i * 1e-3, c, out).x;
+			}
+		});
+		measure("unit", new Operation() {
+			public void run(int i) {
+				sink += b.unit().x;
+			}
+		});
+		measure("unitLocal", new Operation() {
+			public void run(int i) {
+				sink += out.set(b).unitLocal().x;
+			}
+		});
+		measure("clockwiseABC", new Operation() {
+			public void run(int i) {
+				sink += Vec2.clockwiseABC(a, b, c) ? 1 : 0;
+			}
+		});
+		measure("scratch push/release", new Operation() {
+			public void run(int i) {
+				Vec2.Scratch scratch = Vec2.scratch();
+				int mark = scratch.mark();
+				sink += scratch.push(a).addLocal(b).mulLocal(0.5).x;
+				scratch.release(mark);
+			}
+		});
+		measure("AABB.getPenetration(out)", new Operation() {
+			public void run(int i) {
+				sink += box.getPenetration(other, out).x;
+			}
+		});
+		measure("AABB.deintersect", new Operation() {
+			public void run(int i) {
+				moving.set(box);
+				moving.deintersect(other);
+				sink += moving.x;
+			}
+		});
+		measure("Ray.intersectLine(out)", new Operation() {
+			public void run(int i) {
+				sink += ray.intersectLine(a, b, hit) ? hit.distance : 0;
+			}
+		});
+		System.out.println("(checksum " + sink + ")");
+	}
+	
+	private static void measure(String name, Operation operation) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for(int i = 0; i < WARMUP; i++) {
+			operation.run(i);
+		}
+		long before = threads.getThreadAllocatedBytes(thread);
+		for(int i = 0; i < ITERATIONS; i++) {
+			operation.run(i);
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		System.out.printf("%-26s %8.2f bytes/call%n", name, (double)allocated / ITERATIONS);
+	}
+}
@@ -0,0 +1,40 @@
+package io.github.quackmatic.gloop;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests resizing a {@link Vec2Array}.
+ * @author Quackmatic
+ */
+public class Vec2ArrayTest {
+	@Test
+	public void growingZeroesNewVectors() {
+		Vec2Array array = new Vec2Array(2);
+		array.push(1, 2);
+		array.push(3, 4);
+		array.setSize(1).setSize(5);
+		assertEquals(5, array.size());
+		assertEquals(1.0, array.xs[0], 0.0);
+		assertEquals(0.0, array.xs[1], 0.0);
+		assertEquals(0.0, array.ys[4], 0.0);
+	}
+	
+	@Test(expected = Error.class)
+	public void negativeSizeIsRejected() {
+		new Vec2Array().setSize(-1);
+	}
+	
+	@Test
+	public void negativeSizeLeavesArrayAlone() {
+		Vec2Array array = new Vec2Array();
+		array.push(1, 2);
+		try {
+			array.setSize(-3);
+		} catch(Error e) {
+			// expected
+		}
+		assertEquals(1, array.size());
+	}
+}